@@ -0,0 +1,73 @@
+package io.pivotal.pal.wehaul.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of one endpoint, recorded concurrently by every virtual user.
+ */
+class EndpointStats {
+
+    enum Outcome {
+        OK,
+        /** The app turned the request down for a business reason, such as no truck being rentable. */
+        REFUSED,
+        /** Transport failure, timeout, or any other non-2xx response. */
+        ERROR
+    }
+
+    private final String endpoint;
+    // Microseconds, to three significant digits
+    private final Recorder recorder = new Recorder(3);
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    void record(long elapsedNanos, Outcome outcome) {
+        switch (outcome) {
+            case OK:
+                recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+                break;
+            case REFUSED:
+                refused.increment();
+                break;
+            default:
+                errors.increment();
+        }
+    }
+
+    /**
+     * Drops everything recorded so far, at the end of the warm-up.
+     */
+    void reset() {
+        recorder.getIntervalHistogram();
+        refused.reset();
+        errors.reset();
+    }
+
+    LoadTestReport.EndpointSummary summarize(double elapsedSeconds) {
+        Histogram histogram = recorder.getIntervalHistogram();
+        return new LoadTestReport.EndpointSummary(
+            endpoint,
+            histogram.getTotalCount(),
+            refused.sum(),
+            errors.sum(),
+            histogram.getTotalCount() / elapsedSeconds,
+            millis(histogram.getValueAtPercentile(50)),
+            millis(histogram.getValueAtPercentile(90)),
+            millis(histogram.getValueAtPercentile(99)),
+            millis(histogram.getValueAtPercentile(99.9)),
+            millis(histogram.getMaxValue())
+        );
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,135 @@
+package io.pivotal.pal.wehaul.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Drives a running WeHaul app with closed-loop virtual users, then reports and checks the results.
+ * <p>
+ * Seeds a rentable fleet first, so runs against a fresh database behave like runs against a busy one. Every
+ * run uses new VINs and customer names, so it can be pointed at the same database again.
+ */
+public class LoadTest {
+
+    private static final int SEED_BATCH_SIZE = 500;
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        if (options.getMix().values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("The workload mix needs at least one operation with a weight");
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        WeHaulClient client = new WeHaulClient(options.getBaseUrl(), objectMapper);
+        ReplayScript replayScript = options.getReplayFile() == null
+            ? null
+            : ReplayScript.load(options.getReplayFile(), objectMapper);
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+
+        List<String> seededVins = replayScript == null
+            ? seed(client, runId, options.getSeedTrucks())
+            : new ArrayList<>();
+        System.out.printf("Seeded %d trucks, running %d users for %d s after a %d s warm-up against %s%n",
+            seededVins.size(), options.getUsers(), options.getDurationSeconds(), options.getWarmupSeconds(),
+            options.getBaseUrl());
+
+        ConcurrentMap<String, EndpointStats> statsByEndpoint = new ConcurrentHashMap<>();
+        long stopAtNanos = System.nanoTime()
+            + TimeUnit.SECONDS.toNanos(options.getWarmupSeconds() + options.getDurationSeconds());
+        List<VirtualUser> users = new ArrayList<>();
+        for (int i = 0; i < options.getUsers(); i++) {
+            users.add(new VirtualUser(
+                i,
+                runId,
+                client,
+                endpoint -> statsByEndpoint.computeIfAbsent(endpoint, EndpointStats::new),
+                options.getMix(),
+                replayScript,
+                stopAtNanos
+            ));
+        }
+        for (int i = 0; i < seededVins.size(); i++) {
+            users.get(i % users.size()).adopt(seededVins.get(i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(options.getUsers());
+        users.forEach(executor::execute);
+
+        TimeUnit.SECONDS.sleep(options.getWarmupSeconds());
+        statsByEndpoint.values().forEach(EndpointStats::reset);
+        long measureStart = System.nanoTime();
+
+        executor.shutdown();
+        if (!executor.awaitTermination(options.getDurationSeconds() + 60, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+        double elapsedSeconds = (System.nanoTime() - measureStart) / 1e9;
+
+        LoadTestReport report = new LoadTestReport(
+            elapsedSeconds,
+            statsByEndpoint.values().stream()
+                .map(stats -> stats.summarize(elapsedSeconds))
+                .sorted(Comparator.comparing(LoadTestReport.EndpointSummary::getEndpoint))
+                .collect(Collectors.toList())
+        );
+        report.print(System.out);
+        if (options.getReportFile() != null) {
+            File reportFile = new File(options.getReportFile());
+            reportFile.getAbsoluteFile().getParentFile().mkdirs();
+            objectMapper.writer(SerializationFeature.INDENT_OUTPUT).writeValue(reportFile, report);
+        }
+
+        List<String> violations = report.violations(options);
+        if (!violations.isEmpty()) {
+            System.out.println();
+            violations.forEach(violation -> System.out.println("FAILED: " + violation));
+            System.exit(1);
+        }
+    }
+
+    // Buys trucks in batches and returns them from their first inspection, leaving them rentable
+    private static List<String> seed(WeHaulClient client, String runId, int count) throws IOException {
+        List<String> vins = new ArrayList<>();
+        for (int start = 0; start < count; start += SEED_BATCH_SIZE) {
+            StringBuilder trucks = new StringBuilder();
+            List<Map<String, Object>> inspections = new ArrayList<>();
+            for (int i = start; i < Math.min(count, start + SEED_BATCH_SIZE); i++) {
+                String vin = String.format("lt-%s-seed-%d", runId, i);
+                trucks.append(String.format("{\"vin\":\"%s\",\"odometerReading\":0}%n", vin));
+
+                Map<String, Object> inspection = new LinkedHashMap<>();
+                inspection.put("vin", vin);
+                inspection.put("notes", "loadtest");
+                inspection.put("odometerReading", 0);
+                inspections.add(inspection);
+                vins.add(vin);
+            }
+
+            WeHaulClient.Response bought = client.send("POST", "/trucks/batch", trucks.toString());
+            if (!bought.isSuccessful()) {
+                throw new IllegalStateException(String.format("Could not seed trucks: %s", bought.errorMessage()));
+            }
+            WeHaulClient.Response returned = client.post("/trucks/return-from-inspection", inspections);
+            if (!returned.isSuccessful()) {
+                throw new IllegalStateException(
+                    String.format("Could not make seeded trucks rentable: %s", returned.errorMessage())
+                );
+            }
+        }
+        return vins;
+    }
+}
@@ -0,0 +1,133 @@
+package io.pivotal.pal.wehaul.loadtest;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options, each given as {@code --name=value}.
+ */
+class LoadTestOptions {
+
+    private String baseUrl = "http://localhost:8080";
+    private int users = 32;
+    private int warmupSeconds = 10;
+    private int durationSeconds = 60;
+    private int seedTrucks = 200;
+    private Map<Operation, Integer> mix = parseMix("rent=50,inspect=15,buy=5,list=20,counts=10");
+    private String replayFile;
+    private Double maxP99Millis;
+    private Double minThroughput;
+    private double maxErrorRate = 0.01;
+    private String reportFile;
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException(String.format("Expected --name=value but got %s", arg));
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        LoadTestOptions options = new LoadTestOptions();
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            switch (value.getKey()) {
+                case "url":
+                    options.baseUrl = value.getValue();
+                    break;
+                case "users":
+                    options.users = Integer.parseInt(value.getValue());
+                    break;
+                case "warmup-seconds":
+                    options.warmupSeconds = Integer.parseInt(value.getValue());
+                    break;
+                case "duration-seconds":
+                    options.durationSeconds = Integer.parseInt(value.getValue());
+                    break;
+                case "seed-trucks":
+                    options.seedTrucks = Integer.parseInt(value.getValue());
+                    break;
+                case "mix":
+                    options.mix = parseMix(value.getValue());
+                    break;
+                case "replay":
+                    options.replayFile = value.getValue();
+                    break;
+                case "max-p99-ms":
+                    options.maxP99Millis = Double.parseDouble(value.getValue());
+                    break;
+                case "min-throughput":
+                    options.minThroughput = Double.parseDouble(value.getValue());
+                    break;
+                case "max-error-rate":
+                    options.maxErrorRate = Double.parseDouble(value.getValue());
+                    break;
+                case "report-file":
+                    options.reportFile = value.getValue();
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown option --%s", value.getKey()));
+            }
+        }
+        return options;
+    }
+
+    // e.g. "rent=50,inspect=15,buy=5,list=20,counts=10"; operations left out are not run
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String weight : mix.split(",")) {
+            String[] parts = weight.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException(String.format("Malformed mix entry: %s", weight));
+            }
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    String getBaseUrl() {
+        return baseUrl;
+    }
+
+    int getUsers() {
+        return users;
+    }
+
+    int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    int getSeedTrucks() {
+        return seedTrucks;
+    }
+
+    Map<Operation, Integer> getMix() {
+        return mix;
+    }
+
+    String getReplayFile() {
+        return replayFile;
+    }
+
+    Double getMaxP99Millis() {
+        return maxP99Millis;
+    }
+
+    Double getMinThroughput() {
+        return minThroughput;
+    }
+
+    double getMaxErrorRate() {
+        return maxErrorRate;
+    }
+
+    String getReportFile() {
+        return reportFile;
+    }
+}
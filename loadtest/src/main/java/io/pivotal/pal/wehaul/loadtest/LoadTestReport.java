@@ -0,0 +1,158 @@
+package io.pivotal.pal.wehaul.loadtest;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Throughput and latency percentiles per endpoint over the measured part of a run.
+ */
+class LoadTestReport {
+
+    private final double elapsedSeconds;
+    private final List<EndpointSummary> endpoints;
+
+    LoadTestReport(double elapsedSeconds, List<EndpointSummary> endpoints) {
+        this.elapsedSeconds = elapsedSeconds;
+        this.endpoints = endpoints;
+    }
+
+    public double getElapsedSeconds() {
+        return elapsedSeconds;
+    }
+
+    public List<EndpointSummary> getEndpoints() {
+        return endpoints;
+    }
+
+    public double getThroughput() {
+        return endpoints.stream().mapToLong(EndpointSummary::getCount).sum() / elapsedSeconds;
+    }
+
+    public double getErrorRate() {
+        long errors = endpoints.stream().mapToLong(EndpointSummary::getErrors).sum();
+        long total = endpoints.stream().mapToLong(e -> e.getCount() + e.getRefused() + e.getErrors()).sum();
+        return total == 0 ? 0 : (double) errors / total;
+    }
+
+    /**
+     * @return a line per missed threshold, empty when the run passes
+     */
+    List<String> violations(LoadTestOptions options) {
+        List<String> violations = new ArrayList<>();
+        if (options.getMaxP99Millis() != null) {
+            for (EndpointSummary endpoint : endpoints) {
+                if (endpoint.getCount() > 0 && endpoint.getP99Millis() > options.getMaxP99Millis()) {
+                    violations.add(String.format(
+                        "%s p99 %.1f ms is over %.1f ms",
+                        endpoint.getEndpoint(),
+                        endpoint.getP99Millis(),
+                        options.getMaxP99Millis()
+                    ));
+                }
+            }
+        }
+        if (options.getMinThroughput() != null && getThroughput() < options.getMinThroughput()) {
+            violations.add(String.format(
+                "throughput %.1f req/s is under %.1f req/s",
+                getThroughput(),
+                options.getMinThroughput()
+            ));
+        }
+        if (getErrorRate() > options.getMaxErrorRate()) {
+            violations.add(String.format(
+                "error rate %.4f is over %.4f",
+                getErrorRate(),
+                options.getMaxErrorRate()
+            ));
+        }
+        return violations;
+    }
+
+    void print(PrintStream out) {
+        out.printf("%-28s %9s %8s %7s %10s %9s %9s %9s %9s %9s%n",
+            "endpoint", "ok", "refused", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (EndpointSummary endpoint : endpoints) {
+            out.printf("%-28s %9d %8d %7d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                endpoint.getEndpoint(),
+                endpoint.getCount(),
+                endpoint.getRefused(),
+                endpoint.getErrors(),
+                endpoint.getThroughput(),
+                endpoint.getP50Millis(),
+                endpoint.getP90Millis(),
+                endpoint.getP99Millis(),
+                endpoint.getP999Millis(),
+                endpoint.getMaxMillis());
+        }
+        out.printf("%nTotal %.1f req/s over %.0f s, error rate %.4f%n", getThroughput(), elapsedSeconds, getErrorRate());
+    }
+
+    static class EndpointSummary {
+
+        private final String endpoint;
+        private final long count;
+        private final long refused;
+        private final long errors;
+        private final double throughput;
+        private final double p50Millis;
+        private final double p90Millis;
+        private final double p99Millis;
+        private final double p999Millis;
+        private final double maxMillis;
+
+        EndpointSummary(String endpoint, long count, long refused, long errors, double throughput,
+                        double p50Millis, double p90Millis, double p99Millis, double p999Millis, double maxMillis) {
+            this.endpoint = endpoint;
+            this.count = count;
+            this.refused = refused;
+            this.errors = errors;
+            this.throughput = throughput;
+            this.p50Millis = p50Millis;
+            this.p90Millis = p90Millis;
+            this.p99Millis = p99Millis;
+            this.p999Millis = p999Millis;
+            this.maxMillis = maxMillis;
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getRefused() {
+            return refused;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP90Millis() {
+            return p90Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        public double getP999Millis() {
+            return p999Millis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+    }
+}
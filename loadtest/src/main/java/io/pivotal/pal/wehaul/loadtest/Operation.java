@@ -0,0 +1,17 @@
+package io.pivotal.pal.wehaul.loadtest;
+
+/**
+ * What a virtual user does on each turn of the synthetic workload.
+ */
+enum Operation {
+    /** Create a rental, pick it up and drop it off. */
+    RENT,
+    /** Send one of the user's trucks for inspection and return it. */
+    INSPECT,
+    /** Buy a truck and return it from its first inspection, growing the fleet. */
+    BUY,
+    /** Read a page of trucks or rentals. */
+    LIST,
+    /** Read the per-status truck counts. */
+    COUNTS
+}
@@ -0,0 +1,87 @@
+package io.pivotal.pal.wehaul.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recorded traffic to replay instead of the synthetic workload: one JSON object per line with an
+ * {@code endpoint} name to report under, a {@code method}, a {@code path} and an optional {@code body}.
+ * Virtual users take lines in turn, starting over at the end of the file.
+ */
+class ReplayScript {
+
+    private final List<Request> requests;
+    private final AtomicLong next = new AtomicLong();
+
+    private ReplayScript(List<Request> requests) {
+        this.requests = requests;
+    }
+
+    static ReplayScript load(String file, ObjectMapper objectMapper) throws IOException {
+        List<Request> requests = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                JsonNode request = objectMapper.readTree(line);
+                JsonNode body = request.get("body");
+                requests.add(new Request(
+                    request.path("endpoint").asText(request.path("path").asText()),
+                    request.path("method").asText("GET"),
+                    request.path("path").asText(),
+                    body == null || body.isNull() ? null : objectMapper.writeValueAsString(body)
+                ));
+            }
+        }
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException(String.format("No requests to replay in %s", file));
+        }
+        return new ReplayScript(requests);
+    }
+
+    Request next() {
+        return requests.get((int) (next.getAndIncrement() % requests.size()));
+    }
+
+    static class Request {
+
+        private final String endpoint;
+        private final String method;
+        private final String path;
+        private final String body;
+
+        Request(String endpoint, String method, String path, String body) {
+            this.endpoint = endpoint;
+            this.method = method;
+            this.path = path;
+            this.body = body;
+        }
+
+        String getEndpoint() {
+            return endpoint;
+        }
+
+        String getMethod() {
+            return method;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        String getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package io.pivotal.pal.wehaul.loadtest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * One simulated client, issuing a request as soon as the previous one completes until the run ends.
+ */
+class VirtualUser implements Runnable {
+
+    // Messages of requests the app turned down because another user got to a truck first
+    private static final List<String> REFUSALS = Arrays.asList(
+        "No trucks available",
+        "while truck is",
+        "Odometer reading cannot be less",
+        "already been picked up",
+        "already dropped off",
+        "reservation has expired"
+    );
+
+    // Far more than a truck is driven between two of its inspections in a run
+    private static final int ODOMETER_STEP = 100000;
+
+    private final int id;
+    private final String runId;
+    private final WeHaulClient client;
+    private final Function<String, EndpointStats> statsByEndpoint;
+    private final Map<Operation, Integer> mix;
+    private final ReplayScript replayScript;
+    private final long stopAtNanos;
+
+    private final Map<String, Integer> odometerByVin = new LinkedHashMap<>();
+    private final List<String> vins = new ArrayList<>();
+    private final Set<String> inInspection = new HashSet<>();
+    private int boughtCount;
+
+    VirtualUser(int id,
+                String runId,
+                WeHaulClient client,
+                Function<String, EndpointStats> statsByEndpoint,
+                Map<Operation, Integer> mix,
+                ReplayScript replayScript,
+                long stopAtNanos) {
+        this.id = id;
+        this.runId = runId;
+        this.client = client;
+        this.statsByEndpoint = statsByEndpoint;
+        this.mix = new HashMap<>(mix);
+        this.replayScript = replayScript;
+        this.stopAtNanos = stopAtNanos;
+    }
+
+    /**
+     * Gives this user a seeded, rentable truck to send for inspection.
+     */
+    void adopt(String vin) {
+        odometerByVin.put(vin, 0);
+        vins.add(vin);
+    }
+
+    @Override
+    public void run() {
+        while (System.nanoTime() < stopAtNanos) {
+            if (replayScript != null) {
+                ReplayScript.Request request = replayScript.next();
+                call(
+                    request.getEndpoint(),
+                    () -> client.send(request.getMethod(), request.getPath(), request.getBody())
+                );
+                continue;
+            }
+            switch (nextOperation()) {
+                case RENT:
+                    rent();
+                    break;
+                case INSPECT:
+                    inspect();
+                    break;
+                case BUY:
+                    buy();
+                    break;
+                case LIST:
+                    list();
+                    break;
+                case COUNTS:
+                    call("status-counts", () -> client.get("/trucks/status-counts"));
+                    break;
+            }
+        }
+    }
+
+    private Operation nextOperation() {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for (Map.Entry<Operation, Integer> weight : mix.entrySet()) {
+            pick -= weight.getValue();
+            if (pick < 0) {
+                return weight.getKey();
+            }
+        }
+        throw new IllegalStateException("Workload mix has no operations");
+    }
+
+    private void rent() {
+        WeHaulClient.Response created = call("create-rental", () -> client.post(
+            "/rentals",
+            singletonBody("customerName", String.format("loadtest-%s-%d", runId, id))
+        ));
+        if (created == null || !created.isSuccessful()) {
+            return;
+        }
+        String confirmationNumber;
+        try {
+            confirmationNumber = created.json().get("confirmationNumber").asText();
+        } catch (IOException | NullPointerException e) {
+            statsByEndpoint.apply("create-rental").record(0, EndpointStats.Outcome.ERROR);
+            return;
+        }
+
+        WeHaulClient.Response pickedUp = call(
+            "pick-up-rental",
+            () -> client.post(String.format("/rentals/%s/pick-up", confirmationNumber), null)
+        );
+        if (pickedUp == null || !pickedUp.isSuccessful()) {
+            return;
+        }
+        int distanceTraveled = 1 + ThreadLocalRandom.current().nextInt(200);
+        call("drop-off-rental", () -> client.post(
+            String.format("/rentals/%s/drop-off", confirmationNumber),
+            singletonBody("distanceTraveled", distanceTraveled)
+        ));
+    }
+
+    private void inspect() {
+        if (vins.isEmpty()) {
+            buy();
+            return;
+        }
+        String vin = vins.get(ThreadLocalRandom.current().nextInt(vins.size()));
+        if (!inInspection.contains(vin)) {
+            WeHaulClient.Response sent = call(
+                "send-for-inspection",
+                () -> client.post(String.format("/trucks/%s/send-for-inspection", vin), null)
+            );
+            if (sent == null || !sent.isSuccessful()) {
+                return;
+            }
+            inInspection.add(vin);
+        }
+        returnFromInspection(vin, odometerByVin.get(vin) + ODOMETER_STEP);
+    }
+
+    private void buy() {
+        String vin = String.format("lt-%s-%d-%d", runId, id, boughtCount++);
+        Map<String, Object> truck = new LinkedHashMap<>();
+        truck.put("vin", vin);
+        truck.put("odometerReading", 0);
+        WeHaulClient.Response bought = call("buy-truck", () -> client.post("/trucks", truck));
+        if (bought == null || !bought.isSuccessful()) {
+            return;
+        }
+        odometerByVin.put(vin, 0);
+        vins.add(vin);
+        inInspection.add(vin);
+        returnFromInspection(vin, 0);
+    }
+
+    private void returnFromInspection(String vin, int odometerReading) {
+        Map<String, Object> inspection = new LinkedHashMap<>();
+        inspection.put("notes", "loadtest");
+        inspection.put("odometerReading", odometerReading);
+        WeHaulClient.Response returned = call(
+            "return-from-inspection",
+            () -> client.post(String.format("/trucks/%s/return-from-inspection", vin), inspection)
+        );
+        // A refused return is retried on a later turn, with a reading further ahead
+        odometerByVin.put(vin, odometerReading);
+        if (returned != null && returned.isSuccessful()) {
+            inInspection.remove(vin);
+        }
+    }
+
+    private void list() {
+        if (ThreadLocalRandom.current().nextBoolean()) {
+            call("list-trucks", () -> client.get("/trucks?limit=50"));
+        } else {
+            call("list-rentals", () -> client.get("/rentals?limit=50"));
+        }
+    }
+
+    /**
+     * @return the response, or null when the request did not complete
+     */
+    private WeHaulClient.Response call(String endpoint, Request request) {
+        EndpointStats stats = statsByEndpoint.apply(endpoint);
+        long start = System.nanoTime();
+        try {
+            WeHaulClient.Response response = request.send();
+            long elapsed = System.nanoTime() - start;
+            if (response.isSuccessful()) {
+                stats.record(elapsed, EndpointStats.Outcome.OK);
+            } else if (isRefusal(response)) {
+                stats.record(elapsed, EndpointStats.Outcome.REFUSED);
+            } else {
+                stats.record(elapsed, EndpointStats.Outcome.ERROR);
+            }
+            return response;
+        } catch (IOException e) {
+            stats.record(System.nanoTime() - start, EndpointStats.Outcome.ERROR);
+            return null;
+        }
+    }
+
+    private static boolean isRefusal(WeHaulClient.Response response) {
+        if (response.getStatus() == 503) {
+            return false;
+        }
+        String message = response.errorMessage();
+        return REFUSALS.stream().anyMatch(message::contains);
+    }
+
+    private static Map<String, Object> singletonBody(String name, Object value) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put(name, value);
+        return body;
+    }
+
+    private interface Request {
+
+        WeHaulClient.Response send() throws IOException;
+    }
+}
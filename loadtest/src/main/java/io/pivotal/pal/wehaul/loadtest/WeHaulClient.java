@@ -0,0 +1,102 @@
+package io.pivotal.pal.wehaul.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal blocking HTTP client. Reads every response to the end so that the JDK can reuse the connection.
+ */
+class WeHaulClient {
+
+    private static final int TIMEOUT_MILLIS = 30000;
+
+    private final String baseUrl;
+    private final ObjectMapper objectMapper;
+
+    WeHaulClient(String baseUrl, ObjectMapper objectMapper) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.objectMapper = objectMapper;
+    }
+
+    Response get(String path) throws IOException {
+        return send("GET", path, null);
+    }
+
+    Response post(String path, Object body) throws IOException {
+        return send("POST", path, body == null ? null : objectMapper.writeValueAsString(body));
+    }
+
+    Response send(String method, String path, String jsonBody) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        connection.setRequestProperty("Accept", "application/json");
+        if (jsonBody != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(jsonBody.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        String body = "";
+        if (in != null) {
+            try (InputStream stream = in) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                byte[] chunk = new byte[4096];
+                int read;
+                while ((read = stream.read(chunk)) != -1) {
+                    buffer.write(chunk, 0, read);
+                }
+                body = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+            }
+        }
+        return new Response(status, body);
+    }
+
+    class Response {
+
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        int getStatus() {
+            return status;
+        }
+
+        boolean isSuccessful() {
+            return status >= 200 && status < 300;
+        }
+
+        JsonNode json() throws IOException {
+            return objectMapper.readTree(body);
+        }
+
+        /**
+         * @return the message of a Spring Boot error response, or the raw body
+         */
+        String errorMessage() {
+            try {
+                JsonNode message = json().get("message");
+                return message == null ? body : message.asText();
+            } catch (IOException e) {
+                return body;
+            }
+        }
+    }
+}
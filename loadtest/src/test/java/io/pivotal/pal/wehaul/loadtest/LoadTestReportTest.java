@@ -0,0 +1,72 @@
+package io.pivotal.pal.wehaul.loadtest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class LoadTestReportTest {
+
+    @Test
+    public void violations_whenWithinThresholds() {
+        LoadTestOptions options = LoadTestOptions.parse(new String[]{
+            "--max-p99-ms=50",
+            "--min-throughput=1"
+        });
+
+        assertThat(report(TimeUnit.MILLISECONDS.toNanos(10)).violations(options)).isEmpty();
+    }
+
+    @Test
+    public void violations_whenThresholdsMissed() {
+        LoadTestOptions options = LoadTestOptions.parse(new String[]{
+            "--max-p99-ms=5",
+            "--min-throughput=1000",
+            "--max-error-rate=0"
+        });
+
+        List<String> violations = report(TimeUnit.MILLISECONDS.toNanos(10)).violations(options);
+
+        assertThat(violations).hasSize(3);
+        assertThat(violations.get(0)).startsWith("create-rental p99");
+        assertThat(violations.get(1)).startsWith("throughput");
+        assertThat(violations.get(2)).startsWith("error rate");
+    }
+
+    @Test
+    public void refusals_areNotErrors() {
+        EndpointStats stats = new EndpointStats("create-rental");
+        stats.record(TimeUnit.MILLISECONDS.toNanos(1), EndpointStats.Outcome.OK);
+        stats.record(TimeUnit.MILLISECONDS.toNanos(1), EndpointStats.Outcome.REFUSED);
+
+        LoadTestReport report = new LoadTestReport(1, Arrays.asList(stats.summarize(1)));
+
+        assertThat(report.getErrorRate()).isEqualTo(0);
+        assertThat(report.getEndpoints().get(0).getRefused()).isEqualTo(1);
+    }
+
+    @Test
+    public void parseMix() {
+        assertThat(LoadTestOptions.parseMix("rent=3, counts=1"))
+            .containsEntry(Operation.RENT, 3)
+            .containsEntry(Operation.COUNTS, 1)
+            .hasSize(2);
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> LoadTestOptions.parseMix("rent"))
+            .withMessage("Malformed mix entry: rent");
+    }
+
+    private static LoadTestReport report(long latencyNanos) {
+        EndpointStats stats = new EndpointStats("create-rental");
+        for (int i = 0; i < 99; i++) {
+            stats.record(latencyNanos, EndpointStats.Outcome.OK);
+        }
+        stats.record(0, EndpointStats.Outcome.ERROR);
+        return new LoadTestReport(10, Arrays.asList(stats.summarize(10)));
+    }
+}
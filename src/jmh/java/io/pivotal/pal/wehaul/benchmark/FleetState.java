@@ -0,0 +1,84 @@
+package io.pivotal.pal.wehaul.benchmark;
+
+import io.pivotal.pal.wehaul.WehaulApplication;
+import io.pivotal.pal.wehaul.domain.Truck;
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.repository.FleetBatchRepository;
+import io.pivotal.pal.wehaul.service.FleetTruckService;
+import io.pivotal.pal.wehaul.service.RentalService;
+import io.pivotal.pal.wehaul.service.TruckStatusIndex;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Boots the application against a private embedded H2 database holding {@code fleetSize} rentable trucks.
+ */
+@State(Scope.Benchmark)
+public class FleetState {
+
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int fleetSize;
+
+    public ConfigurableApplicationContext context;
+    public RentalService rentalService;
+    public FleetTruckService fleetTruckService;
+
+    @Setup(Level.Trial)
+    public void bootApplication() {
+        context = new SpringApplicationBuilder(WehaulApplication.class)
+            .web(false)
+            .properties(
+                "spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "spring.jpa.show-sql=false",
+                "logging.level.root=WARN"
+            )
+            .run();
+        rentalService = bean(RentalService.class);
+        fleetTruckService = bean(FleetTruckService.class);
+
+        FleetBatchRepository fleetBatchRepository = bean(FleetBatchRepository.class);
+        List<Truck> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < fleetSize; i++) {
+            Truck truck = new Truck(vin(i), 0);
+            truck.setStatus(TruckStatus.RENTABLE);
+            batch.add(truck);
+            if (batch.size() == INSERT_BATCH_SIZE) {
+                fleetBatchRepository.insertTrucks(batch);
+                batch.clear();
+            }
+        }
+        fleetBatchRepository.insertTrucks(batch);
+
+        bean(TruckStatusIndex.class).reconcile();
+    }
+
+    @TearDown(Level.Trial)
+    public void closeApplication() {
+        context.close();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public JdbcOperations jdbcOperations() {
+        return bean(JdbcOperations.class);
+    }
+
+    public static String vin(int i) {
+        return String.format("bench-%07d", i);
+    }
+}
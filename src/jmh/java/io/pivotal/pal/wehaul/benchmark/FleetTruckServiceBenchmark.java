@@ -0,0 +1,85 @@
+package io.pivotal.pal.wehaul.benchmark;
+
+import io.pivotal.pal.wehaul.domain.BatchItemResult;
+import io.pivotal.pal.wehaul.domain.Truck;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FleetTruckServiceBenchmark {
+
+    private static final int BUY_BATCH_SIZE = 1000;
+
+    /**
+     * A truck owned by one benchmark thread, sent for inspection before every invocation.
+     */
+    @State(Scope.Thread)
+    public static class TruckInInspection {
+
+        String vin;
+        int odometerReading;
+
+        @Setup(Level.Trial)
+        public void buyTruck(FleetState fleet) {
+            vin = "bench-inspection-" + UUID.randomUUID();
+            fleet.fleetTruckService.buyTruck(vin, 0);
+            fleet.fleetTruckService.returnFromInspection(vin, "bought", 0);
+        }
+
+        @Setup(Level.Invocation)
+        public void sendForInspection(FleetState fleet) {
+            fleet.fleetTruckService.sendForInspection(vin);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class NewVins {
+
+        private final String prefix = "bench-new-" + UUID.randomUUID() + "-";
+        private long next;
+
+        String next() {
+            return prefix + next++;
+        }
+    }
+
+    @Benchmark
+    public void returnFromInspection(FleetState fleet, TruckInInspection truck) {
+        fleet.fleetTruckService.returnFromInspection(truck.vin, "benchmark notes", ++truck.odometerReading);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void returnFromInspectionConcurrent(FleetState fleet, TruckInInspection truck) {
+        returnFromInspection(fleet, truck);
+    }
+
+    @Benchmark
+    public void buyTruck(FleetState fleet, NewVins vins) {
+        fleet.fleetTruckService.buyTruck(vins.next(), 0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BUY_BATCH_SIZE)
+    public List<BatchItemResult> buyTrucks(FleetState fleet, NewVins vins) {
+        List<Truck> trucks = new ArrayList<>(BUY_BATCH_SIZE);
+        for (int i = 0; i < BUY_BATCH_SIZE; i++) {
+            trucks.add(new Truck(vins.next(), 0));
+        }
+        return fleet.fleetTruckService.buyTrucks(trucks.iterator());
+    }
+}
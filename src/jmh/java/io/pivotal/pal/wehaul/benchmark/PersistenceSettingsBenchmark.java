@@ -0,0 +1,156 @@
+package io.pivotal.pal.wehaul.benchmark;
+
+import io.pivotal.pal.wehaul.WehaulApplication;
+import io.pivotal.pal.wehaul.domain.TimeOrderedUuid;
+import io.pivotal.pal.wehaul.domain.TruckInspection;
+import io.pivotal.pal.wehaul.repository.TruckInspectionRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the settings of the {@code perf} profile one step at a time, each against a private H2 database.
+ * <p>
+ * {@code defaults} is Hibernate without batching and the Tomcat pool, {@code batching} adds JDBC batching with
+ * ordered inserts and updates, and {@code perf} is the whole profile including the Hikari pool.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PersistenceSettingsBenchmark {
+
+    private static final int INSPECTIONS_PER_TRANSACTION = 100;
+    private static final int PREFILLED_INSPECTIONS = 200_000;
+
+    @State(Scope.Benchmark)
+    public static class Application {
+
+        @Param({"defaults", "batching", "perf"})
+        public String settings;
+
+        ConfigurableApplicationContext context;
+        TruckInspectionRepository truckInspectionRepository;
+        TransactionTemplate transactionTemplate;
+
+        @Setup(Level.Trial)
+        public void bootApplication() {
+            SpringApplicationBuilder builder = new SpringApplicationBuilder(WehaulApplication.class)
+                .web(false)
+                .properties(
+                    "spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                    "spring.jpa.show-sql=false",
+                    "logging.level.root=WARN"
+                );
+            switch (settings) {
+                case "defaults":
+                    builder.properties(
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=0",
+                        "spring.jpa.properties.hibernate.order_inserts=false"
+                    );
+                    break;
+                case "batching":
+                    builder.properties(
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+                        "spring.jpa.properties.hibernate.jdbc.batch_versioned_data=true",
+                        "spring.jpa.properties.hibernate.order_inserts=true",
+                        "spring.jpa.properties.hibernate.order_updates=true"
+                    );
+                    break;
+                default:
+                    builder.profiles("perf");
+            }
+            context = builder.run();
+            truckInspectionRepository = context.getBean(TruckInspectionRepository.class);
+            transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        }
+
+        @TearDown(Level.Trial)
+        public void closeApplication() {
+            context.close();
+        }
+    }
+
+    /**
+     * An inspection table already holding many rows, keyed by either kind of id.
+     */
+    @State(Scope.Benchmark)
+    public static class InspectionTable {
+
+        @Param({"random", "time-ordered"})
+        public String idKind;
+
+        JdbcOperations jdbcOperations;
+
+        @Setup(Level.Trial)
+        public void prefill(Application application) {
+            jdbcOperations = application.context.getBean(JdbcOperations.class);
+            List<Object[]> rows = new ArrayList<>();
+            for (int i = 0; i < PREFILLED_INSPECTIONS; i++) {
+                rows.add(new Object[]{nextId(), "bench-prefill", i, "prefilled"});
+                if (rows.size() == 10_000) {
+                    insert(rows);
+                    rows.clear();
+                }
+            }
+            insert(rows);
+        }
+
+        UUID nextId() {
+            return "random".equals(idKind) ? UUID.randomUUID() : TimeOrderedUuid.generate();
+        }
+
+        void insert(List<Object[]> rows) {
+            jdbcOperations.batchUpdate(
+                "INSERT INTO truck_inspection (id, truck_vin, odometer_reading, notes) VALUES (?, ?, ?, ?)",
+                rows
+            );
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSPECTIONS_PER_TRANSACTION)
+    public Object saveInspections(Application application) {
+        List<TruckInspection> inspections = new ArrayList<>(INSPECTIONS_PER_TRANSACTION);
+        for (int i = 0; i < INSPECTIONS_PER_TRANSACTION; i++) {
+            inspections.add(new TruckInspection("bench-0000001", i, "benchmark notes"));
+        }
+        return application.transactionTemplate.execute(
+            status -> application.truckInspectionRepository.save(inspections)
+        );
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    @OperationsPerInvocation(INSPECTIONS_PER_TRANSACTION)
+    public Object saveInspectionsConcurrent(Application application) {
+        return saveInspections(application);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSPECTIONS_PER_TRANSACTION)
+    public void insertInspections(InspectionTable table) {
+        List<Object[]> rows = new ArrayList<>(INSPECTIONS_PER_TRANSACTION);
+        for (int i = 0; i < INSPECTIONS_PER_TRANSACTION; i++) {
+            rows.add(new Object[]{table.nextId(), "bench-0000001", i, "benchmark notes"});
+        }
+        table.insert(rows);
+    }
+}
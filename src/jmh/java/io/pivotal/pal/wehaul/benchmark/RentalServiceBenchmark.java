@@ -0,0 +1,111 @@
+package io.pivotal.pal.wehaul.benchmark;
+
+import io.pivotal.pal.wehaul.domain.Rental;
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.domain.TruckStatusChangedEvent;
+import io.pivotal.pal.wehaul.service.TruckStatusIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each rental transition is measured on its own; the steps needed to get a rental into (and back out of)
+ * the right state run in per-invocation fixtures, which JMH leaves out of the measurement.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RentalServiceBenchmark {
+
+    @State(Scope.Thread)
+    public static class CreatedRental {
+
+        Rental rental;
+
+        @TearDown(Level.Invocation)
+        public void releaseTruck(FleetState fleet) {
+            fleet.jdbcOperations().update(
+                "DELETE FROM rental WHERE confirmation_number = ?",
+                rental.getConfirmationNumber()
+            );
+            fleet.jdbcOperations().update(
+                "UPDATE truck SET status = ? WHERE vin = ?",
+                TruckStatus.RENTABLE.name(),
+                rental.getTruckVin()
+            );
+            fleet.bean(TruckStatusIndex.class).onStatusChanged(
+                new TruckStatusChangedEvent(rental.getTruckVin(), TruckStatus.RESERVED, TruckStatus.RENTABLE)
+            );
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ReservedRental {
+
+        Rental rental;
+
+        @Setup(Level.Invocation)
+        public void reserve(FleetState fleet) {
+            rental = fleet.rentalService.createRental("benchmark-customer");
+        }
+
+        @TearDown(Level.Invocation)
+        public void returnTruck(FleetState fleet) {
+            fleet.rentalService.dropOff(rental.getConfirmationNumber(), 0);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PickedUpRental {
+
+        Rental rental;
+
+        @Setup(Level.Invocation)
+        public void pickUp(FleetState fleet) {
+            rental = fleet.rentalService.createRental("benchmark-customer");
+            fleet.rentalService.pickUp(rental.getConfirmationNumber());
+        }
+    }
+
+    @Benchmark
+    public Rental createRental(FleetState fleet, CreatedRental created) {
+        created.rental = fleet.rentalService.createRental("benchmark-customer");
+        return created.rental;
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Rental createRentalConcurrent(FleetState fleet, CreatedRental created) {
+        return createRental(fleet, created);
+    }
+
+    @Benchmark
+    public void pickUp(FleetState fleet, ReservedRental reserved) {
+        fleet.rentalService.pickUp(reserved.rental.getConfirmationNumber());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void pickUpConcurrent(FleetState fleet, ReservedRental reserved) {
+        pickUp(fleet, reserved);
+    }
+
+    @Benchmark
+    public void dropOff(FleetState fleet, PickedUpRental pickedUp) {
+        fleet.rentalService.dropOff(pickedUp.rental.getConfirmationNumber(), 10);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void dropOffConcurrent(FleetState fleet, PickedUpRental pickedUp) {
+        dropOff(fleet, pickedUp);
+    }
+}
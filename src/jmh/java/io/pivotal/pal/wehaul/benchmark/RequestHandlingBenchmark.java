@@ -0,0 +1,121 @@
+package io.pivotal.pal.wehaul.benchmark;
+
+import io.pivotal.pal.wehaul.WehaulApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Compares thread-per-request handling with the bounded blocking-call pool over HTTP, with more client
+ * threads than Tomcat workers. Requests turned away with a 503 are counted as returned, not as failures.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(64)
+public class RequestHandlingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        @Param({"false", "true"})
+        public boolean asyncEnabled;
+
+        @Param({"16"})
+        public int tomcatThreads;
+
+        ConfigurableApplicationContext context;
+        RestTemplate restTemplate;
+        String baseUrl;
+
+        @Setup(Level.Trial)
+        public void start() {
+            context = new SpringApplicationBuilder(WehaulApplication.class)
+                .properties(
+                    "server.port=0",
+                    "server.tomcat.max-threads=" + tomcatThreads,
+                    "wehaul.async.enabled=" + asyncEnabled,
+                    "spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                    "spring.jpa.show-sql=false",
+                    "logging.level.root=WARN"
+                )
+                .run();
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            restTemplate = new RestTemplate();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class NewVins {
+
+        private final String prefix = "bench-http-" + UUID.randomUUID() + "-";
+        private long next;
+
+        String next() {
+            return prefix + next++;
+        }
+    }
+
+    @Benchmark
+    public HttpStatus buyTruck(Server server, NewVins vins) {
+        return exchange(() -> server.restTemplate.postForEntity(
+            server.baseUrl + "/trucks",
+            new BuyTruckRequest(vins.next(), 0),
+            Void.class
+        ));
+    }
+
+    @Benchmark
+    public HttpStatus listTruckPage(Server server) {
+        return exchange(() -> server.restTemplate.getForEntity(server.baseUrl + "/trucks?limit=100", String.class));
+    }
+
+    private static HttpStatus exchange(Supplier<ResponseEntity<?>> request) {
+        try {
+            return request.get().getStatusCode();
+        } catch (HttpStatusCodeException e) {
+            return e.getStatusCode();
+        }
+    }
+
+    public static class BuyTruckRequest {
+
+        private final String vin;
+        private final int odometerReading;
+
+        BuyTruckRequest(String vin, int odometerReading) {
+            this.vin = vin;
+            this.odometerReading = odometerReading;
+        }
+
+        public String getVin() {
+            return vin;
+        }
+
+        public int getOdometerReading() {
+            return odometerReading;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.pivotal.pal.wehaul.benchmark;
+
+import io.pivotal.pal.wehaul.domain.TruckSinceInspection;
+import io.pivotal.pal.wehaul.repository.TruckSinceInspectionRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TruckSinceInspectionRepositoryBenchmark {
+
+    private static final int INSPECTIONS_PER_TRUCK = 2;
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    @State(Scope.Benchmark)
+    public static class InspectedFleet {
+
+        TruckSinceInspectionRepository repository;
+
+        @Setup(Level.Trial)
+        public void inspectEveryTruck(FleetState fleet) {
+            List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+            for (int i = 0; i < fleet.fleetSize; i++) {
+                for (int j = 0; j < INSPECTIONS_PER_TRUCK; j++) {
+                    batch.add(new Object[]{UUID.randomUUID(), FleetState.vin(i), j * 1000, "benchmark notes"});
+                }
+                if (batch.size() >= INSERT_BATCH_SIZE) {
+                    insertInspections(fleet, batch);
+                    batch.clear();
+                }
+            }
+            insertInspections(fleet, batch);
+
+            repository = fleet.bean(TruckSinceInspectionRepository.class);
+            repository.rebuildProjection();
+        }
+
+        private void insertInspections(FleetState fleet, List<Object[]> batch) {
+            fleet.jdbcOperations().batchUpdate(
+                "INSERT INTO truck_inspection (id, truck_vin, odometer_reading, notes) VALUES (?, ?, ?, ?)",
+                batch
+            );
+        }
+    }
+
+    @Benchmark
+    public Collection<TruckSinceInspection> findAllTruckSinceInspections(InspectedFleet fleet) {
+        return fleet.repository.findAllTruckSinceInspections();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Collection<TruckSinceInspection> findAllTruckSinceInspectionsConcurrent(InspectedFleet fleet) {
+        return findAllTruckSinceInspections(fleet);
+    }
+}
@@ -16,13 +16,18 @@ public class DatabasePopulator {
         this.truckRepository = truckRepository;
     }
 
+    // Only seeds trucks that are missing, since saving over a truck that has changed would be a stale write
     @PostConstruct
     public void populateDatabase() {
-        Truck truck = new Truck("test-0001", 0);
-        truckRepository.save(truck);
+        if (!truckRepository.exists("test-0001")) {
+            Truck truck = new Truck("test-0001", 0);
+            truckRepository.save(truck);
+        }
 
-        Truck truck2 = new Truck("test-0002", 0);
-        truck2.setStatus(TruckStatus.RENTABLE);
-        truckRepository.save(truck2);
+        if (!truckRepository.exists("test-0002")) {
+            Truck truck2 = new Truck("test-0002", 0);
+            truck2.setStatus(TruckStatus.RENTABLE);
+            truckRepository.save(truck2);
+        }
     }
 }
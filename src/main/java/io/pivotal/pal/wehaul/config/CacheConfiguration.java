@@ -0,0 +1,38 @@
+package io.pivotal.pal.wehaul.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caches trucks and rentals by id in memory. Puts and evictions made inside a transaction are applied
+ * once it commits, so a rolled back write never evicts. A reader outside any transaction that loaded the row
+ * before the commit can still put the old value back after the evict. It then stays until the
+ * {@code expireAfterWrite} in {@code wehaul.cache.spec}; the conditional updates check state in the database,
+ * so a stale read never lets a transition through.
+ */
+@EnableCaching
+@Configuration
+public class CacheConfiguration {
+
+    public static final String TRUCKS = "trucks";
+    public static final String RENTALS = "rentals";
+
+    /**
+     * Leaves out misses, and rows loaded in a read-only transaction: those may come from a lagging replica, and
+     * would keep being served stale from the cache after it caught up.
+     */
+    public static final String UNLESS_MISSING_OR_READ_ONLY = "#result == null or " +
+        "T(org.springframework.transaction.support.TransactionSynchronizationManager).isCurrentTransactionReadOnly()";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${wehaul.cache.spec:maximumSize=10000,recordStats}") String spec) {
+        CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager(TRUCKS, RENTALS);
+        caffeineCacheManager.setCacheSpecification(spec);
+        return new TransactionAwareCacheManagerProxy(caffeineCacheManager);
+    }
+}
@@ -0,0 +1,56 @@
+package io.pivotal.pal.wehaul.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.binder.jpa.HibernateMetrics;
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.service.TruckStatusCounters;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Service timers come from {@code @Timed}; HTTP, JVM and connection pool metrics are bound by
+ * micrometer-spring-legacy. Everything is scraped from {@code /prometheus}.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public MeterBinder truckStatusMetrics(TruckStatusCounters truckStatusCounters) {
+        return registry -> {
+            for (TruckStatus status : TruckStatus.values()) {
+                Gauge.builder("wehaul.trucks", truckStatusCounters, counters -> counters.count(status))
+                    .tag("status", status.name())
+                    .description("Trucks currently in each status")
+                    .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder hibernateMetrics(EntityManagerFactory entityManagerFactory) {
+        return registry -> HibernateMetrics.monitor(registry, entityManagerFactory, "entityManagerFactory");
+    }
+
+    @Bean
+    public MeterBinder cacheMetrics(CacheManager cacheManager) {
+        return registry -> {
+            for (String name : cacheManager.getCacheNames()) {
+                com.github.benmanes.caffeine.cache.Cache<?, ?> cache =
+                    (com.github.benmanes.caffeine.cache.Cache<?, ?>) cacheManager.getCache(name).getNativeCache();
+                CaffeineCacheMetrics.monitor(registry, cache, name);
+            }
+        };
+    }
+}
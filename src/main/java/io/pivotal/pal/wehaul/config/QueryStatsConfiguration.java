@@ -0,0 +1,69 @@
+package io.pivotal.pal.wehaul.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.pivotal.pal.wehaul.jdbc.QueryCountingDataSource;
+import io.pivotal.pal.wehaul.jdbc.ReplicaRoutingDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.metadata.DataSourcePoolMetadataProvider;
+import org.springframework.boot.autoconfigure.jdbc.metadata.HikariDataSourcePoolMetadata;
+import org.springframework.boot.autoconfigure.jdbc.metadata.TomcatDataSourcePoolMetadata;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the data source in a {@link QueryCountingDataSource}, so statements are counted per request and per
+ * service call. Turned off with {@code wehaul.query-stats.enabled=false}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "wehaul.query-stats.enabled", matchIfMissing = true)
+public class QueryStatsConfiguration {
+
+    @Bean
+    public static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof QueryCountingDataSource)) {
+                    return new QueryCountingDataSource((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Looks through the wrapper, so connection pool metrics are still reported. With read replicas, only the
+     * primary's pool is reported.
+     */
+    @Bean
+    public DataSourcePoolMetadataProvider queryCountingDataSourcePoolMetadataProvider() {
+        return dataSource -> {
+            if (!(dataSource instanceof QueryCountingDataSource)) {
+                return null;
+            }
+            DataSource target = ((QueryCountingDataSource) dataSource).getTargetDataSource();
+            while (target instanceof DelegatingDataSource) {
+                target = ((DelegatingDataSource) target).getTargetDataSource();
+            }
+            if (target instanceof ReplicaRoutingDataSource) {
+                target = ((ReplicaRoutingDataSource) target).getPrimary();
+            }
+            if (target instanceof HikariDataSource) {
+                return new HikariDataSourcePoolMetadata((HikariDataSource) target);
+            }
+            if (target instanceof org.apache.tomcat.jdbc.pool.DataSource) {
+                return new TomcatDataSourcePoolMetadata((org.apache.tomcat.jdbc.pool.DataSource) target);
+            }
+            return null;
+        };
+    }
+}
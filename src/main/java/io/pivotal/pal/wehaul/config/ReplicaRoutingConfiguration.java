@@ -0,0 +1,97 @@
+package io.pivotal.pal.wehaul.config;
+
+import io.pivotal.pal.wehaul.jdbc.ReplicaRoutingDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * With {@code wehaul.datasource.replicas.urls} set, routes read-only transactions to those replicas through a
+ * {@link ReplicaRoutingDataSource}. Each replica gets a pool of the same type as the primary, connecting with
+ * the primary's driver and credentials unless {@code wehaul.datasource.replicas.username} and
+ * {@code password} are given.
+ */
+@Configuration
+@ConditionalOnProperty("wehaul.datasource.replicas.urls")
+public class ReplicaRoutingConfiguration {
+
+    @Bean
+    public static BeanPostProcessor replicaRoutingDataSourcePostProcessor(Environment environment) {
+        return new RoutingPostProcessor(environment);
+    }
+
+    // Ordered, so it sees the pool before the query counting wrapper does
+    private static class RoutingPostProcessor implements BeanPostProcessor, Ordered {
+
+        private final Environment environment;
+
+        private RoutingPostProcessor(Environment environment) {
+            this.environment = environment;
+        }
+
+        @Override
+        public Object postProcessBeforeInitialization(Object bean, String beanName) {
+            return bean;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource) || bean instanceof LazyConnectionDataSourceProxy) {
+                return bean;
+            }
+            DataSource primary = (DataSource) bean;
+
+            Map<String, DataSource> replicas = new LinkedHashMap<>();
+            String[] urls = environment.getProperty("wehaul.datasource.replicas.urls", String[].class);
+            for (int i = 0; i < urls.length; i++) {
+                replicas.put("replica-" + i, DataSourceBuilder.create(getClass().getClassLoader())
+                    .type(primary.getClass())
+                    .driverClassName(environment.getProperty("spring.datasource.driver-class-name"))
+                    .url(urls[i].trim())
+                    .username(environment.getProperty(
+                        "wehaul.datasource.replicas.username",
+                        environment.getProperty("spring.datasource.username")
+                    ))
+                    .password(environment.getProperty(
+                        "wehaul.datasource.replicas.password",
+                        environment.getProperty("spring.datasource.password")
+                    ))
+                    .build());
+            }
+            long maxLagMillis = environment.getProperty("wehaul.datasource.replicas.max-lag-ms", Long.class, 5000L);
+
+            return new ClosingLazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primary, replicas, maxLagMillis)
+            );
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+
+    // Spring closes the data source bean through a close method, which the plain proxy lacks
+    private static class ClosingLazyConnectionDataSourceProxy extends LazyConnectionDataSourceProxy {
+
+        private final ReplicaRoutingDataSource replicaRoutingDataSource;
+
+        private ClosingLazyConnectionDataSourceProxy(ReplicaRoutingDataSource replicaRoutingDataSource) {
+            super(replicaRoutingDataSource);
+            this.replicaRoutingDataSource = replicaRoutingDataSource;
+        }
+
+        public void close() {
+            replicaRoutingDataSource.close();
+        }
+    }
+}
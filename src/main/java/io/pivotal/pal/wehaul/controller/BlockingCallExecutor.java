@@ -0,0 +1,128 @@
+package io.pivotal.pal.wehaul.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import io.pivotal.pal.wehaul.jdbc.QueryStats;
+import io.pivotal.pal.wehaul.jdbc.QueryStatsContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking service call behind an endpoint, capping how many may run at once per endpoint.
+ * <p>
+ * With {@code wehaul.async.enabled=true} calls run on a bounded pool, so servlet threads are released while
+ * JDBC blocks and a full queue is turned away with a 503 rather than piling up. Otherwise calls run on the
+ * servlet thread as before, only subject to the per-endpoint caps.
+ */
+@Component
+public class BlockingCallExecutor {
+
+    private final boolean async;
+    private final int defaultMaxConcurrent;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolTaskExecutor taskExecutor;
+    private final ConcurrentMap<String, Semaphore> permitsByEndpoint = new ConcurrentHashMap<>();
+
+    public BlockingCallExecutor(@Value("${wehaul.async.enabled:false}") boolean async,
+                                @Value("${wehaul.async.pool-size:32}") int poolSize,
+                                @Value("${wehaul.async.queue-capacity:256}") int queueCapacity,
+                                @Value("${wehaul.async.max-concurrent-per-endpoint:128}") int defaultMaxConcurrent,
+                                Environment environment,
+                                MeterRegistry meterRegistry) {
+        this.async = async;
+        this.defaultMaxConcurrent = defaultMaxConcurrent;
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+
+        if (async) {
+            taskExecutor = new ThreadPoolTaskExecutor();
+            taskExecutor.setCorePoolSize(poolSize);
+            taskExecutor.setMaxPoolSize(poolSize);
+            taskExecutor.setQueueCapacity(queueCapacity);
+            taskExecutor.setThreadNamePrefix("wehaul-blocking-");
+            taskExecutor.initialize();
+            ExecutorServiceMetrics.monitor(
+                meterRegistry,
+                taskExecutor.getThreadPoolExecutor(),
+                "wehaul.blocking",
+                Collections.emptyList()
+            );
+        } else {
+            taskExecutor = null;
+        }
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * @param endpoint names the endpoint, for its concurrency cap
+     *                 ({@code wehaul.async.endpoints.<endpoint>.max-concurrent}) and rejection metrics
+     * @throws ServiceOverloadedException when the endpoint is at its cap or the queue is full
+     */
+    public <T> CompletableFuture<T> submit(String endpoint, Supplier<T> call) {
+        Semaphore permits = permitsByEndpoint.computeIfAbsent(endpoint, this::createPermits);
+        if (!permits.tryAcquire()) {
+            throw rejected(endpoint);
+        }
+
+        if (!async) {
+            try {
+                return CompletableFuture.completedFuture(call.get());
+            } finally {
+                permits.release();
+            }
+        }
+
+        // Statements run on the pool still count towards the request that submitted them
+        List<QueryStats> queryStats = QueryStatsContext.current();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            taskExecutor.execute(() -> {
+                try (QueryStatsContext.Scope ignored = QueryStatsContext.attach(queryStats)) {
+                    result.complete(call.get());
+                } catch (Throwable e) {
+                    // Errors too, or the request would hang until the async timeout
+                    result.completeExceptionally(e);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (TaskRejectedException e) {
+            permits.release();
+            throw rejected(endpoint);
+        }
+        return result;
+    }
+
+    private Semaphore createPermits(String endpoint) {
+        String property = String.format("wehaul.async.endpoints.%s.max-concurrent", endpoint);
+        return new Semaphore(environment.getProperty(property, Integer.class, defaultMaxConcurrent));
+    }
+
+    private ServiceOverloadedException rejected(String endpoint) {
+        meterRegistry.counter("wehaul.requests.rejected", "endpoint", endpoint).increment();
+        return new ServiceOverloadedException(String.format("Too many concurrent %s requests", endpoint));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (taskExecutor != null) {
+            taskExecutor.shutdown();
+        }
+    }
+}
@@ -2,63 +2,348 @@ package io.pivotal.pal.wehaul.controller;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.pivotal.pal.wehaul.domain.BatchItemResult;
+import io.pivotal.pal.wehaul.domain.InspectionSearchHit;
 import io.pivotal.pal.wehaul.domain.Truck;
+import io.pivotal.pal.wehaul.domain.TruckInspection;
 import io.pivotal.pal.wehaul.domain.TruckSinceInspection;
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.journal.EventJournal;
+import io.pivotal.pal.wehaul.journal.JournalEntry;
 import io.pivotal.pal.wehaul.service.FleetTruckService;
+import io.pivotal.pal.wehaul.service.TruckStatusCounters;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @RestController
 public class FleetTruckController {
 
+    // Deep pages of a ranked search cost as much as every page before them
+    private static final int MAX_SEARCH_OFFSET = 10000;
+
     private final FleetTruckService fleetTruckService;
+    private final ObjectMapper objectMapper;
+    private final BlockingCallExecutor blockingCallExecutor;
+    private final EventJournal eventJournal;
+    private final TruckStatusCounters truckStatusCounters;
 
-    public FleetTruckController(FleetTruckService fleetTruckService) {
+    public FleetTruckController(FleetTruckService fleetTruckService,
+                                ObjectMapper objectMapper,
+                                BlockingCallExecutor blockingCallExecutor,
+                                EventJournal eventJournal,
+                                TruckStatusCounters truckStatusCounters) {
         this.fleetTruckService = fleetTruckService;
+        this.objectMapper = objectMapper;
+        this.blockingCallExecutor = blockingCallExecutor;
+        this.eventJournal = eventJournal;
+        this.truckStatusCounters = truckStatusCounters;
     }
 
     @PostMapping("/trucks")
-    public ResponseEntity<Void> buyTruck(@RequestBody BuyTruckDto buyTruckDto) {
+    public CompletableFuture<ResponseEntity<Void>> buyTruck(@RequestBody BuyTruckDto buyTruckDto) {
 
-        fleetTruckService.buyTruck(
-            buyTruckDto.getVin(),
-            buyTruckDto.getOdometerReading()
-        );
-        return ResponseEntity.ok().build();
+        return blockingCallExecutor.submit("buy-truck", () -> {
+            fleetTruckService.buyTruck(
+                buyTruckDto.getVin(),
+                buyTruckDto.getOdometerReading()
+            );
+            return ResponseEntity.ok().build();
+        });
+    }
+
+    // The body is read as the trucks are bought, so on the executor too; the request stays open until then
+    @PostMapping(value = "/trucks/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<List<BatchItemResult>>> buyTrucks(InputStream body) {
+
+        return blockingCallExecutor.submit("buy-truck-batch", () -> {
+            try (MappingIterator<BuyTruckDto> buyTruckDtos =
+                     objectMapper.readerFor(BuyTruckDto.class).readValues(body)) {
+                return ResponseEntity.ok(fleetTruckService.buyTrucks(new JsonTruckIterator(buyTruckDtos)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @PostMapping(value = "/trucks/batch", consumes = "text/csv")
+    public CompletableFuture<ResponseEntity<List<BatchItemResult>>> buyTrucksFromCsv(InputStream body) {
+
+        return blockingCallExecutor.submit("buy-truck-batch", () -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                Iterator<String> lines = reader.lines()
+                    .filter(line -> !line.trim().isEmpty() && !line.startsWith("vin,"))
+                    .iterator();
+                // Parsed in next(), so a malformed row is rejected on its own and the rows after it still read
+                Iterator<Truck> trucks = new Iterator<Truck>() {
+                    @Override
+                    public boolean hasNext() {
+                        return lines.hasNext();
+                    }
+
+                    @Override
+                    public Truck next() {
+                        return parseCsvTruck(lines.next());
+                    }
+                };
+
+                return ResponseEntity.ok(fleetTruckService.buyTrucks(trucks));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
     @GetMapping("/trucks")
-    public ResponseEntity<Collection<Truck>> getAllTrucks() {
-        Collection<Truck> trucks = fleetTruckService.findAll();
-        return ResponseEntity.ok(trucks);
+    public CompletableFuture<ResponseEntity<Collection<Truck>>> getAllTrucks(
+        @RequestParam(required = false) String after,
+        @RequestParam(required = false) Integer limit
+    ) {
+        UriComponentsBuilder currentRequest = ServletUriComponentsBuilder.fromCurrentRequest();
+        return blockingCallExecutor.submit("list-trucks", () -> {
+            if (after == null && limit == null) {
+                Collection<Truck> trucks = fleetTruckService.findAll();
+                return ResponseEntity.ok(trucks);
+            }
+
+            int pageSize = KeysetResponses.pageSize(limit);
+            return KeysetResponses.page(
+                currentRequest,
+                fleetTruckService.findPage(after, pageSize),
+                pageSize,
+                Truck::getVin
+            );
+        });
+    }
+
+    @GetMapping("/trucks/{vin}/inspections")
+    public CompletableFuture<ResponseEntity<Collection<TruckInspection>>> getTruckInspections(
+        @PathVariable String vin,
+        @RequestParam(required = false) UUID after,
+        @RequestParam(required = false) Integer limit
+    ) {
+        UriComponentsBuilder currentRequest = ServletUriComponentsBuilder.fromCurrentRequest();
+        return blockingCallExecutor.submit("list-truck-inspections", () -> {
+            int pageSize = KeysetResponses.pageSize(limit);
+            return KeysetResponses.page(
+                currentRequest,
+                fleetTruckService.findInspectionPage(vin, after, pageSize),
+                pageSize,
+                TruckInspection::getId
+            );
+        });
+    }
+
+    @GetMapping(value = "/trucks", produces = KeysetResponses.NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllTrucks() {
+        StreamingResponseBody body =
+            KeysetResponses.ndjson(objectMapper, fleetTruckService::findPage, Truck::getVin);
+        return ResponseEntity.ok(body);
+    }
+
+    // Served from memory, so not worth a trip through the blocking call executor
+    @GetMapping("/trucks/status-counts")
+    public Map<TruckStatus, Long> getTruckStatusCounts() {
+        return truckStatusCounters.counts();
     }
 
     @PostMapping("/trucks/{vin}/send-for-inspection")
-    public ResponseEntity<Void> sendForInspection(@PathVariable String vin) {
+    public CompletableFuture<ResponseEntity<Void>> sendForInspection(@PathVariable String vin) {
 
-        fleetTruckService.sendForInspection(vin);
-        return ResponseEntity.ok().build();
+        return blockingCallExecutor.submit("send-for-inspection", () -> {
+            fleetTruckService.sendForInspection(vin);
+            return ResponseEntity.ok().build();
+        });
     }
 
     @PostMapping("/trucks/{vin}/return-from-inspection")
-    public ResponseEntity<Void> returnFromInspection(
+    public CompletableFuture<ResponseEntity<Void>> returnFromInspection(
         @PathVariable String vin,
         @RequestBody ReturnFromInspectionDto returnFromInspectionDto
     ) {
 
-        fleetTruckService.returnFromInspection(
-            vin,
-            returnFromInspectionDto.getNotes(),
-            returnFromInspectionDto.getOdometerReading()
+        return blockingCallExecutor.submit("return-from-inspection", () -> {
+            if (eventJournal.isEnabled()) {
+                JournalEntry entry = JournalEntry.returnedFromInspection(
+                    vin,
+                    returnFromInspectionDto.getNotes(),
+                    returnFromInspectionDto.getOdometerReading()
+                );
+                return JournalResponses.accepted(eventJournal, entry);
+            }
+
+            fleetTruckService.returnFromInspection(
+                vin,
+                returnFromInspectionDto.getNotes(),
+                returnFromInspectionDto.getOdometerReading()
+            );
+            return ResponseEntity.ok().build();
+        });
+    }
+
+    @PostMapping("/trucks/return-from-inspection")
+    public CompletableFuture<ResponseEntity<List<BatchItemResult>>> returnFromInspections(
+        @RequestBody List<ReturnFromInspectionItemDto> returnFromInspectionDtos
+    ) {
+
+        List<TruckInspection> inspections = returnFromInspectionDtos.stream()
+            .map(dto -> new TruckInspection(dto.getVin(), dto.getOdometerReading(), dto.getNotes()))
+            .collect(Collectors.toList());
+        return blockingCallExecutor.submit(
+            "return-from-inspection-batch",
+            () -> ResponseEntity.ok(fleetTruckService.returnFromInspections(inspections))
         );
-        return ResponseEntity.ok().build();
     }
 
     @GetMapping("/truck-since-inspections")
-    public Collection<TruckSinceInspection> listTruckSinceInspections() {
-        return fleetTruckService.findAllTruckSinceInspections();
+    public CompletableFuture<Collection<TruckSinceInspection>> listTruckSinceInspections() {
+        return blockingCallExecutor.submit(
+            "list-truck-since-inspections",
+            fleetTruckService::findAllTruckSinceInspections
+        );
+    }
+
+    @PostMapping("/truck-since-inspections/rebuild")
+    public CompletableFuture<ResponseEntity<Void>> rebuildTruckSinceInspections() {
+
+        return blockingCallExecutor.submit("rebuild-truck-since-inspections", () -> {
+            fleetTruckService.rebuildTruckSinceInspections();
+            return ResponseEntity.ok().build();
+        });
+    }
+
+    @GetMapping("/truck-since-inspections/inconsistencies")
+    public CompletableFuture<Collection<String>> listTruckSinceInspectionInconsistencies() {
+        return blockingCallExecutor.submit(
+            "list-truck-since-inspection-inconsistencies",
+            fleetTruckService::findInconsistentTruckSinceInspections
+        );
+    }
+
+    @GetMapping("/inspections/search")
+    public CompletableFuture<ResponseEntity<List<InspectionSearchHit>>> searchInspections(
+        @RequestParam String q,
+        @RequestParam(defaultValue = "0") int offset,
+        @RequestParam(required = false) Integer limit
+    ) {
+        if (offset < 0 || offset > MAX_SEARCH_OFFSET) {
+            throw new IllegalArgumentException(
+                String.format("Search offset must be between 0 and %d", MAX_SEARCH_OFFSET)
+            );
+        }
+        UriComponentsBuilder currentRequest = ServletUriComponentsBuilder.fromCurrentRequest();
+        return blockingCallExecutor.submit("search-inspections", () -> {
+            int pageSize = KeysetResponses.pageSize(limit);
+            List<InspectionSearchHit> hits = fleetTruckService.searchInspections(q, offset, pageSize);
+
+            // Ranked results have no stable key to page after, so pages are addressed by offset
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (hits.size() == pageSize && offset + pageSize <= MAX_SEARCH_OFFSET) {
+                String next = currentRequest
+                    .replaceQueryParam("offset", offset + pageSize)
+                    .replaceQueryParam("limit", pageSize)
+                    .toUriString();
+                response.header("Link", "<" + next + ">; rel=\"next\"");
+            }
+            return response.body(hits);
+        });
+    }
+
+    @PostMapping("/inspections/search/rebuild")
+    public CompletableFuture<ResponseEntity<Void>> rebuildInspectionSearchIndex() {
+
+        return blockingCallExecutor.submit("rebuild-inspection-search-index", () -> {
+            fleetTruckService.rebuildInspectionSearchIndex();
+            return ResponseEntity.ok().build();
+        });
+    }
+
+    // Expects "vin,odometerReading" rows, with an optional header row
+    private static Truck parseCsvTruck(String line) {
+        String[] columns = line.split(",");
+        if (columns.length != 2) {
+            throw new IllegalArgumentException(String.format("Malformed CSV row: %s", line));
+        }
+        try {
+            return new Truck(columns[0].trim(), Integer.parseInt(columns[1].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Malformed CSV row: %s", line));
+        }
+    }
+
+    /**
+     * Reads one truck per record, throwing {@link IllegalArgumentException} for a record that cannot be bound so
+     * that it is rejected on its own. A JSON syntax error leaves nothing to carry on from, so it ends the stream
+     * once reported.
+     */
+    private static class JsonTruckIterator implements Iterator<Truck> {
+
+        private final MappingIterator<BuyTruckDto> buyTruckDtos;
+        private String syntaxError;
+        private boolean ended;
+
+        private JsonTruckIterator(MappingIterator<BuyTruckDto> buyTruckDtos) {
+            this.buyTruckDtos = buyTruckDtos;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (ended) {
+                return false;
+            }
+            if (syntaxError != null) {
+                return true;
+            }
+            try {
+                return buyTruckDtos.hasNextValue();
+            } catch (JsonProcessingException e) {
+                syntaxError = String.format("Malformed JSON: %s", e.getOriginalMessage());
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Truck next() {
+            if (syntaxError != null) {
+                ended = true;
+                throw new IllegalArgumentException(syntaxError);
+            }
+            try {
+                BuyTruckDto dto = buyTruckDtos.nextValue();
+                return new Truck(dto.getVin(), dto.getOdometerReading());
+            } catch (JsonParseException e) {
+                ended = true;
+                throw new IllegalArgumentException(String.format("Malformed JSON: %s", e.getOriginalMessage()));
+            } catch (JsonMappingException e) {
+                throw new IllegalArgumentException(String.format("Unreadable truck: %s", e.getOriginalMessage()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 
     private static class ReturnFromInspectionDto {
@@ -92,6 +377,45 @@ public class FleetTruckController {
         }
     }
 
+    private static class ReturnFromInspectionItemDto {
+
+        private final String vin;
+        private final String notes;
+        private final int odometerReading;
+
+        @JsonCreator
+        private ReturnFromInspectionItemDto(
+            @JsonProperty(value = "vin", required = true) String vin,
+            @JsonProperty(value = "notes", required = true) String notes,
+            @JsonProperty(value = "odometerReading", required = true) int odometerReading
+        ) {
+            this.vin = vin;
+            this.notes = notes;
+            this.odometerReading = odometerReading;
+        }
+
+        public String getVin() {
+            return vin;
+        }
+
+        public String getNotes() {
+            return notes;
+        }
+
+        public int getOdometerReading() {
+            return odometerReading;
+        }
+
+        @Override
+        public String toString() {
+            return "ReturnFromInspectionItemDto{" +
+                "vin='" + vin + '\'' +
+                ", notes='" + notes + '\'' +
+                ", odometerReading=" + odometerReading +
+                '}';
+        }
+    }
+
     private static class BuyTruckDto {
 
         private final String vin;
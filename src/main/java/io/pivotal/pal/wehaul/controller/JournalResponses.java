@@ -0,0 +1,21 @@
+package io.pivotal.pal.wehaul.controller;
+
+import io.pivotal.pal.wehaul.journal.EventJournal;
+import io.pivotal.pal.wehaul.journal.JournalEntry;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Answers write-behind requests once their command is durable in the journal, before it reaches the database.
+ */
+final class JournalResponses {
+
+    private JournalResponses() {
+    }
+
+    static ResponseEntity<Void> accepted(EventJournal eventJournal, JournalEntry entry) {
+        if (!eventJournal.append(entry)) {
+            throw new ServiceOverloadedException("Journal is full, try again later");
+        }
+        return ResponseEntity.accepted().build();
+    }
+}
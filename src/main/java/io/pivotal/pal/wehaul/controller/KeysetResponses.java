@@ -0,0 +1,76 @@
+package io.pivotal.pal.wehaul.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Helpers for list endpoints that page by key instead of loading whole tables.
+ */
+final class KeysetResponses {
+
+    static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_PAGE_SIZE = 500;
+
+    private KeysetResponses() {
+    }
+
+    static int pageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Responds with one page and, when there may be more, a Link header pointing at the next one.
+     *
+     * @param currentRequest the request URI, captured on the request thread
+     */
+    static <T> ResponseEntity<Collection<T>> page(UriComponentsBuilder currentRequest,
+                                                  List<T> items,
+                                                  int limit,
+                                                  Function<T, ?> key) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (items.size() == limit) {
+            String next = currentRequest
+                .replaceQueryParam("after", key.apply(items.get(items.size() - 1)))
+                .replaceQueryParam("limit", limit)
+                .toUriString();
+            response.header("Link", "<" + next + ">; rel=\"next\"");
+        }
+        return response.<Collection<T>>body(items);
+    }
+
+    /**
+     * Writes every row as newline-delimited JSON, holding at most one page in memory at a time.
+     */
+    static <T, K> StreamingResponseBody ndjson(ObjectMapper objectMapper,
+                                               BiFunction<K, Integer, List<T>> pageLoader,
+                                               Function<T, K> key) {
+        return outputStream -> {
+            K after = null;
+            List<T> page;
+            do {
+                page = pageLoader.apply(after, STREAM_PAGE_SIZE);
+                for (T item : page) {
+                    outputStream.write(objectMapper.writeValueAsBytes(item));
+                    outputStream.write('\n');
+                }
+                outputStream.flush();
+                if (!page.isEmpty()) {
+                    after = key.apply(page.get(page.size() - 1));
+                }
+            } while (page.size() == STREAM_PAGE_SIZE);
+        };
+    }
+}
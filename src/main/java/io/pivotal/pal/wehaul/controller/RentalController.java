@@ -2,53 +2,126 @@ package io.pivotal.pal.wehaul.controller;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.pivotal.pal.wehaul.domain.Rental;
+import io.pivotal.pal.wehaul.journal.EventJournal;
+import io.pivotal.pal.wehaul.journal.JournalEntry;
 import io.pivotal.pal.wehaul.service.RentalService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 public class RentalController {
 
     private final RentalService rentalService;
-
-    public RentalController(RentalService rentalService) {
+    private final ObjectMapper objectMapper;
+    private final BlockingCallExecutor blockingCallExecutor;
+    private final EventJournal eventJournal;
+
+    public RentalController(RentalService rentalService,
+                            ObjectMapper objectMapper,
+                            BlockingCallExecutor blockingCallExecutor,
+                            EventJournal eventJournal) {
         this.rentalService = rentalService;
+        this.objectMapper = objectMapper;
+        this.blockingCallExecutor = blockingCallExecutor;
+        this.eventJournal = eventJournal;
     }
 
     @PostMapping("/rentals")
-    public ResponseEntity<Void> createRental(@RequestBody CreateRentalDto createRentalDto) {
+    public CompletableFuture<ResponseEntity<Rental>> createRental(@RequestBody CreateRentalDto createRentalDto) {
 
         String customerName = createRentalDto.getCustomerName();
-        rentalService.createRental(customerName);
-
-        return ResponseEntity.ok().build();
+        return blockingCallExecutor.submit(
+            "create-rental",
+            () -> ResponseEntity.ok(rentalService.createRental(customerName))
+        );
     }
 
     @PostMapping("/rentals/{rentalId}/pick-up")
-    public ResponseEntity<Void> pickUpRental(@PathVariable UUID rentalId) {
+    public CompletableFuture<ResponseEntity<Void>> pickUpRental(@PathVariable UUID rentalId) {
 
-        rentalService.pickUp(rentalId);
-        return ResponseEntity.ok().build();
+        return blockingCallExecutor.submit("pick-up-rental", () -> {
+            rentalService.pickUp(rentalId);
+            return ResponseEntity.ok().build();
+        });
     }
 
     @PostMapping("/rentals/{rentalId}/drop-off")
-    public ResponseEntity<Void> dropOffRental(@PathVariable UUID rentalId,
-                                              @RequestBody DropOffRentalDto dropOffRentalDto) {
+    public CompletableFuture<ResponseEntity<Void>> dropOffRental(@PathVariable UUID rentalId,
+                                                                 @RequestBody DropOffRentalDto dropOffRentalDto) {
 
         int distanceTraveled = dropOffRentalDto.getDistanceTraveled();
-        rentalService.dropOff(rentalId, distanceTraveled);
-
-        return ResponseEntity.ok().build();
+        return blockingCallExecutor.submit("drop-off-rental", () -> {
+            if (eventJournal.isEnabled()) {
+                return JournalResponses.accepted(
+                    eventJournal,
+                    JournalEntry.rentalDroppedOff(rentalId, distanceTraveled)
+                );
+            }
+
+            rentalService.dropOff(rentalId, distanceTraveled);
+            return ResponseEntity.ok().build();
+        });
     }
 
     @GetMapping("/rentals")
-    public ResponseEntity<Collection<Rental>> getAllRentals() {
-        Collection<Rental> rentals = rentalService.findAll();
-        return ResponseEntity.ok(rentals);
+    public CompletableFuture<ResponseEntity<Collection<Rental>>> getAllRentals(
+        @RequestParam(required = false) UUID after,
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(required = false) String customerName,
+        @RequestParam(defaultValue = "exact") String match
+    ) {
+        UriComponentsBuilder currentRequest = ServletUriComponentsBuilder.fromCurrentRequest();
+        if (customerName != null) {
+            return blockingCallExecutor.submit("find-customer-rentals", () -> {
+                int pageSize = KeysetResponses.pageSize(limit);
+                List<Rental> rentals;
+                switch (match) {
+                    case "exact":
+                        rentals = rentalService.findPageByCustomerName(customerName, after, pageSize);
+                        break;
+                    case "prefix":
+                        rentals = rentalService.findPageByCustomerNamePrefix(customerName, after, pageSize);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(
+                            String.format("Unknown match %s, expected exact or prefix", match)
+                        );
+                }
+                return KeysetResponses.page(currentRequest, rentals, pageSize, Rental::getConfirmationNumber);
+            });
+        }
+
+        return blockingCallExecutor.submit("list-rentals", () -> {
+            if (after == null && limit == null) {
+                Collection<Rental> rentals = rentalService.findAll();
+                return ResponseEntity.ok(rentals);
+            }
+
+            int pageSize = KeysetResponses.pageSize(limit);
+            return KeysetResponses.page(
+                currentRequest,
+                rentalService.findPage(after, pageSize),
+                pageSize,
+                Rental::getConfirmationNumber
+            );
+        });
+    }
+
+    @GetMapping(value = "/rentals", produces = KeysetResponses.NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllRentals() {
+        StreamingResponseBody body =
+            KeysetResponses.ndjson(objectMapper, rentalService::findPage, Rental::getConfirmationNumber);
+        return ResponseEntity.ok(body);
     }
 
     private static class DropOffRentalDto {
@@ -0,0 +1,64 @@
+package io.pivotal.pal.wehaul.controller;
+
+import io.pivotal.pal.wehaul.domain.TruckStatusChange;
+import io.pivotal.pal.wehaul.domain.TruckStatusSnapshot;
+import io.pivotal.pal.wehaul.service.TruckStatusFeed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+/**
+ * Server-sent events for dashboards: a {@code snapshot} event with every truck's status, then a {@code status}
+ * event per change. Browsers reconnect with the last event id, which resumes without a new snapshot when
+ * possible.
+ * <p>
+ * Sends block until the client takes the event. A client that stops reading is dropped from the feed after
+ * {@code wehaul.status-feed.send-timeout-ms}, and resumes from its last event id once it reconnects.
+ */
+@RestController
+public class TruckStatusFeedController {
+
+    private final TruckStatusFeed truckStatusFeed;
+    private final long timeoutMillis;
+
+    public TruckStatusFeedController(TruckStatusFeed truckStatusFeed,
+                                     @Value("${wehaul.status-feed.timeout-ms:1800000}") long timeoutMillis) {
+        this.truckStatusFeed = truckStatusFeed;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @GetMapping(value = "/trucks/status-feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamTruckStatuses(
+        @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId
+    ) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        TruckStatusFeed.Subscription subscription = truckStatusFeed.subscribe(
+            lastEventId,
+            new TruckStatusFeed.Sink() {
+                @Override
+                public void snapshot(TruckStatusSnapshot snapshot) throws IOException {
+                    emitter.send(SseEmitter.event()
+                        .id(truckStatusFeed.resumeToken(snapshot.getSequence()))
+                        .name("snapshot")
+                        .data(snapshot, MediaType.APPLICATION_JSON));
+                }
+
+                @Override
+                public void change(TruckStatusChange change) throws IOException {
+                    emitter.send(SseEmitter.event()
+                        .id(truckStatusFeed.resumeToken(change.getSequence()))
+                        .name("status")
+                        .data(change, MediaType.APPLICATION_JSON));
+                }
+            }
+        );
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        return emitter;
+    }
+}
@@ -0,0 +1,46 @@
+package io.pivotal.pal.wehaul.domain;
+
+/**
+ * Outcome of one record in a batch request.
+ */
+public class BatchItemResult {
+
+    private final String key;
+    private final boolean accepted;
+    private final String error;
+
+    private BatchItemResult(String key, boolean accepted, String error) {
+        this.key = key;
+        this.accepted = accepted;
+        this.error = error;
+    }
+
+    public static BatchItemResult accepted(String key) {
+        return new BatchItemResult(key, true, null);
+    }
+
+    public static BatchItemResult rejected(String key, String error) {
+        return new BatchItemResult(key, false, error);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public boolean isAccepted() {
+        return accepted;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchItemResult{" +
+            "key=" + key +
+            ", accepted=" + accepted +
+            ", error='" + error + '\'' +
+            '}';
+    }
+}
@@ -0,0 +1,140 @@
+package io.pivotal.pal.wehaul.domain;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Packs one truck's inspections, in odometer order, into a compressed blob.
+ * <p>
+ * Odometer readings and the time-ordered high half of each id are stored as variable-length deltas from the
+ * previous inspection, and notes repeated from the previous inspection are stored as a single byte, before the
+ * whole is deflated.
+ */
+public final class InspectionArchiveCodec {
+
+    private static final int FORMAT_VERSION = 1;
+
+    // Notes are written as a length prefix, offset past these markers
+    private static final int SAME_NOTES = 0;
+    private static final int NULL_NOTES = 1;
+    private static final int NOTES_OFFSET = 2;
+
+    private InspectionArchiveCodec() {
+    }
+
+    public static byte[] encode(String truckVin, List<TruckInspection> inspections) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            out.writeByte(FORMAT_VERSION);
+            writeVarLong(out, inspections.size());
+
+            long previousOdometer = 0;
+            long previousIdHigh = 0;
+            String previousNotes = null;
+            for (TruckInspection inspection : inspections) {
+                if (!truckVin.equals(inspection.getTruckVin())) {
+                    throw new IllegalArgumentException(String.format(
+                        "Cannot archive inspection of truck %s with those of %s", inspection.getTruckVin(), truckVin
+                    ));
+                }
+                writeVarLong(out, zigZag(inspection.getOdometerReading() - previousOdometer));
+                previousOdometer = inspection.getOdometerReading();
+
+                UUID id = inspection.getId();
+                writeVarLong(out, zigZag(id.getMostSignificantBits() - previousIdHigh));
+                previousIdHigh = id.getMostSignificantBits();
+                out.writeLong(id.getLeastSignificantBits());
+
+                String notes = inspection.getNotes();
+                if (notes != null && notes.equals(previousNotes)) {
+                    writeVarLong(out, SAME_NOTES);
+                } else if (notes == null) {
+                    writeVarLong(out, NULL_NOTES);
+                } else {
+                    byte[] utf8 = notes.getBytes(StandardCharsets.UTF_8);
+                    writeVarLong(out, utf8.length + NOTES_OFFSET);
+                    out.write(utf8);
+                }
+                previousNotes = notes;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    public static List<TruckInspection> decode(String truckVin, byte[] archive) {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(archive)))) {
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalStateException(String.format("Unknown inspection archive format %d", version));
+            }
+            long count = readVarLong(in);
+            List<TruckInspection> inspections = new ArrayList<>((int) count);
+
+            long odometer = 0;
+            long idHigh = 0;
+            String notes = null;
+            for (long i = 0; i < count; i++) {
+                odometer += unZigZag(readVarLong(in));
+                idHigh += unZigZag(readVarLong(in));
+                UUID id = new UUID(idHigh, in.readLong());
+
+                long notesLength = readVarLong(in);
+                if (notesLength == NULL_NOTES) {
+                    notes = null;
+                } else if (notesLength != SAME_NOTES) {
+                    byte[] utf8 = new byte[(int) (notesLength - NOTES_OFFSET)];
+                    in.readFully(utf8);
+                    notes = new String(utf8, StandardCharsets.UTF_8);
+                }
+                inspections.add(new TruckInspection(id, truckVin, (int) odometer, notes));
+            }
+            return inspections;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed inspection archive");
+    }
+}
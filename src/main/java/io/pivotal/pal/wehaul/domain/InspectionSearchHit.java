@@ -0,0 +1,45 @@
+package io.pivotal.pal.wehaul.domain;
+
+import java.util.UUID;
+
+/**
+ * An inspection matching a notes search, with its relevance score.
+ */
+public class InspectionSearchHit {
+
+    private final TruckInspection inspection;
+    private final double score;
+
+    public InspectionSearchHit(TruckInspection inspection, double score) {
+        this.inspection = inspection;
+        this.score = score;
+    }
+
+    public UUID getId() {
+        return inspection.getId();
+    }
+
+    public String getTruckVin() {
+        return inspection.getTruckVin();
+    }
+
+    public Integer getOdometerReading() {
+        return inspection.getOdometerReading();
+    }
+
+    public String getNotes() {
+        return inspection.getNotes();
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "InspectionSearchHit{" +
+            "inspection=" + inspection +
+            ", score=" + score +
+            '}';
+    }
+}
@@ -0,0 +1,49 @@
+package io.pivotal.pal.wehaul.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Odometer reading at each truck's most recent inspection, kept alongside the full inspection history.
+ */
+@Entity
+@Table
+public class LastTruckInspection {
+
+    @Id
+    private String truckVin;
+
+    @Column
+    private Integer odometerReading;
+
+    LastTruckInspection() {
+        // default constructor
+    }
+
+    public LastTruckInspection(String truckVin, Integer odometerReading) {
+        this.truckVin = truckVin;
+        this.odometerReading = odometerReading;
+    }
+
+    public String getTruckVin() {
+        return truckVin;
+    }
+
+    public Integer getOdometerReading() {
+        return odometerReading;
+    }
+
+    public void setOdometerReading(Integer odometerReading) {
+        this.odometerReading = odometerReading;
+    }
+
+    @Override
+    public String toString() {
+        return "LastTruckInspection{" +
+            "truckVin=" + truckVin +
+            ", odometerReading=" + odometerReading +
+            '}';
+    }
+}
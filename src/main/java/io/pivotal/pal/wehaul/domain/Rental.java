@@ -4,6 +4,10 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.Version;
+import java.util.Date;
 import java.util.UUID;
 
 @Entity
@@ -22,6 +26,16 @@ public class Rental {
 
     private Integer distanceTraveled;
 
+    // Null for rentals made before reservations could expire
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date reservedAt;
+
+    @Column(nullable = false)
+    private boolean expired;
+
+    @Version
+    private long version;
+
     Rental() {
         // default constructor
     }
@@ -31,6 +45,7 @@ public class Rental {
         this.customerName = customerName;
         this.truckVin = truckVin;
         this.confirmationNumber = UUID.randomUUID();
+        this.reservedAt = new Date();
     }
 
     public UUID getConfirmationNumber() {
@@ -53,6 +68,17 @@ public class Rental {
         this.distanceTraveled = distanceTraveled;
     }
 
+    public Date getReservedAt() {
+        return reservedAt;
+    }
+
+    /**
+     * @return true once the reservation lapsed without a pick-up and its truck went back to the fleet
+     */
+    public boolean isExpired() {
+        return expired;
+    }
+
     @Override
     public String toString() {
         return "Rental{" +
@@ -60,6 +86,8 @@ public class Rental {
             ", customerName='" + customerName + '\'' +
             ", truckVin='" + truckVin + '\'' +
             ", distanceTraveled=" + distanceTraveled +
+            ", reservedAt=" + reservedAt +
+            ", expired=" + expired +
             '}';
     }
 }
@@ -0,0 +1,27 @@
+package io.pivotal.pal.wehaul.domain;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * UUIDs in the version 7 layout: the creation time in milliseconds first, then random bits.
+ * <p>
+ * Ids created close together sort close together, so inserting them touches the last pages of an index rather
+ * than random ones.
+ */
+public final class TimeOrderedUuid {
+
+    private TimeOrderedUuid() {
+    }
+
+    public static UUID generate() {
+        return generate(System.currentTimeMillis());
+    }
+
+    static UUID generate(long epochMillis) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSignificantBits = (epochMillis << 16) | 0x7000L | (random.nextLong() & 0x0FFFL);
+        long leastSignificantBits = 0x8000000000000000L | (random.nextLong() & 0x3FFFFFFFFFFFFFFFL);
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+}
@@ -16,6 +16,9 @@ public class Truck {
     @Column
     private Integer odometerReading;
 
+    @Version
+    private long version;
+
     public Truck(String vin, int odometerReading) {
         this.vin = vin;
         this.odometerReading = odometerReading;
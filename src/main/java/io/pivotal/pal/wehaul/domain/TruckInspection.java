@@ -1,14 +1,24 @@
 package io.pivotal.pal.wehaul.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.data.domain.Persistable;
+
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import java.util.UUID;
 
+/**
+ * Inspections are only ever inserted. Being {@link Persistable} lets a save persist a new one directly instead
+ * of merging it, which would select by id first and break up JDBC batches.
+ */
 @Entity
 @Table
-public class TruckInspection {
+public class TruckInspection implements Persistable<UUID> {
 
     @Id
     @Column(columnDefinition = "uuid")
@@ -23,21 +33,46 @@ public class TruckInspection {
     @Column
     private String notes;
 
+    @Transient
+    private boolean isNew = true;
+
     TruckInspection() {
         // default constructor
     }
 
     public TruckInspection(String truckVin, Integer odometerReading, String notes) {
-        this.id = UUID.randomUUID();
+        this.id = TimeOrderedUuid.generate();
+        this.truckVin = truckVin;
+        this.odometerReading = odometerReading;
+        this.notes = notes;
+    }
+
+    // An inspection that already has an id, read back without JPA
+    public TruckInspection(UUID id, String truckVin, Integer odometerReading, String notes) {
+        this.id = id;
         this.truckVin = truckVin;
         this.odometerReading = odometerReading;
         this.notes = notes;
+        this.isNew = false;
     }
 
+    @Override
     public UUID getId() {
         return id;
     }
 
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+
     public String getTruckVin() {
         return truckVin;
     }
@@ -0,0 +1,48 @@
+package io.pivotal.pal.wehaul.domain;
+
+/**
+ * A committed {@link TruckStatusChangedEvent}, numbered in the order it was seen.
+ */
+public class TruckStatusChange {
+
+    private final long sequence;
+    private final String vin;
+    private final TruckStatus previousStatus;
+    private final TruckStatus status;
+
+    public TruckStatusChange(long sequence, String vin, TruckStatus previousStatus, TruckStatus status) {
+        this.sequence = sequence;
+        this.vin = vin;
+        this.previousStatus = previousStatus;
+        this.status = status;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getVin() {
+        return vin;
+    }
+
+    /**
+     * @return the status the truck left, or null for a newly bought truck
+     */
+    public TruckStatus getPreviousStatus() {
+        return previousStatus;
+    }
+
+    public TruckStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return "TruckStatusChange{" +
+            "sequence=" + sequence +
+            ", vin=" + vin +
+            ", previousStatus=" + previousStatus +
+            ", status=" + status +
+            '}';
+    }
+}
@@ -0,0 +1,38 @@
+package io.pivotal.pal.wehaul.domain;
+
+public class TruckStatusChangedEvent {
+
+    private final String vin;
+    private final TruckStatus previousStatus;
+    private final TruckStatus status;
+
+    public TruckStatusChangedEvent(String vin, TruckStatus previousStatus, TruckStatus status) {
+        this.vin = vin;
+        this.previousStatus = previousStatus;
+        this.status = status;
+    }
+
+    public String getVin() {
+        return vin;
+    }
+
+    /**
+     * @return the status the truck left, or null for a newly bought truck
+     */
+    public TruckStatus getPreviousStatus() {
+        return previousStatus;
+    }
+
+    public TruckStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return "TruckStatusChangedEvent{" +
+            "vin=" + vin +
+            ", previousStatus=" + previousStatus +
+            ", status=" + status +
+            '}';
+    }
+}
@@ -0,0 +1,39 @@
+package io.pivotal.pal.wehaul.domain;
+
+import java.util.Map;
+
+/**
+ * The status of every truck as of a {@link TruckStatusChange} sequence number.
+ */
+public class TruckStatusSnapshot {
+
+    private final long sequence;
+    private final Map<String, TruckStatus> statuses;
+
+    public TruckStatusSnapshot(long sequence, Map<String, TruckStatus> statuses) {
+        this.sequence = sequence;
+        this.statuses = statuses;
+    }
+
+    /**
+     * @return the sequence number of the last change the snapshot is guaranteed to include
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return status by VIN
+     */
+    public Map<String, TruckStatus> getStatuses() {
+        return statuses;
+    }
+
+    @Override
+    public String toString() {
+        return "TruckStatusSnapshot{" +
+            "sequence=" + sequence +
+            ", trucks=" + statuses.size() +
+            '}';
+    }
+}
@@ -0,0 +1,54 @@
+package io.pivotal.pal.wehaul.jdbc;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statements, rows and JDBC time accumulated by one unit of work, such as an HTTP request or a service call.
+ * Safe to update from several threads, for work handed off to a pool.
+ */
+public class QueryStats {
+
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder jdbcNanos = new LongAdder();
+    private final ConcurrentMap<String, LongAdder> executionsBySql = new ConcurrentHashMap<>();
+
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    /**
+     * @return rows read from result sets plus rows reported changed by updates
+     */
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getJdbcNanos() {
+        return jdbcNanos.sum();
+    }
+
+    /**
+     * @return how many times each distinct statement ran, in SQL order
+     */
+    public Map<String, Long> getExecutionsBySql() {
+        Map<String, Long> executions = new TreeMap<>();
+        executionsBySql.forEach((sql, count) -> executions.put(sql, count.sum()));
+        return executions;
+    }
+
+    void statementExecuted(String sql, long elapsedNanos, long rowsChanged) {
+        statements.increment();
+        jdbcNanos.add(elapsedNanos);
+        rows.add(rowsChanged);
+        executionsBySql.computeIfAbsent(sql == null ? "?" : sql, key -> new LongAdder()).increment();
+    }
+
+    void rowRead() {
+        rows.increment();
+    }
+}
@@ -0,0 +1,62 @@
+package io.pivotal.pal.wehaul.jdbc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Tracks which {@link QueryStats} are open on the current thread. A statement counts towards every open one,
+ * so a service call inside a request shows up in both.
+ */
+public final class QueryStatsContext {
+
+    private static final ThreadLocal<Deque<QueryStats>> open = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private QueryStatsContext() {
+    }
+
+    /**
+     * Opens stats on the current thread until the returned scope is closed.
+     */
+    public static Scope begin(QueryStats stats) {
+        open.get().push(stats);
+        return () -> open.get().remove(stats);
+    }
+
+    /**
+     * @return the stats open on the current thread, for {@link #attach} on another thread
+     */
+    public static List<QueryStats> current() {
+        return new ArrayList<>(open.get());
+    }
+
+    /**
+     * Opens stats captured on another thread with {@link #current()}, so work handed off still counts.
+     */
+    public static Scope attach(List<QueryStats> captured) {
+        Deque<QueryStats> stack = open.get();
+        for (int i = captured.size() - 1; i >= 0; i--) {
+            stack.push(captured.get(i));
+        }
+        return () -> captured.forEach(stack::remove);
+    }
+
+    static void statementExecuted(String sql, long elapsedNanos, long rowsChanged) {
+        for (QueryStats stats : open.get()) {
+            stats.statementExecuted(sql, elapsedNanos, rowsChanged);
+        }
+    }
+
+    static void rowRead() {
+        for (QueryStats stats : open.get()) {
+            stats.rowRead();
+        }
+    }
+
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,69 @@
+package io.pivotal.pal.wehaul.jdbc;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Counts the statements issued for each HTTP request, named by method and matched route. Requests that go
+ * async are recorded when they complete, including the service call run on the blocking pool.
+ */
+@Component
+@ConditionalOnProperty(name = "wehaul.query-stats.enabled", matchIfMissing = true)
+public class QueryStatsFilter extends OncePerRequestFilter {
+
+    private final QueryStatsRecorder queryStatsRecorder;
+
+    public QueryStatsFilter(QueryStatsRecorder queryStatsRecorder) {
+        this.queryStatsRecorder = queryStatsRecorder;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        QueryStats stats = new QueryStats();
+        try (QueryStatsContext.Scope ignored = QueryStatsContext.begin(stats)) {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(request, stats);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                record(request, stats);
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, QueryStats stats) {
+        // Set when the request was mapped to a handler, so known by the time it completes
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String name = request.getMethod() + " " + (pattern == null ? "UNMATCHED" : pattern);
+        queryStatsRecorder.record("request", name, stats);
+    }
+}
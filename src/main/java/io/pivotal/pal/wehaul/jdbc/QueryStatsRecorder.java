@@ -0,0 +1,68 @@
+package io.pivotal.pal.wehaul.jdbc;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes finished {@link QueryStats} as {@code wehaul.sql.statements}, {@code wehaul.sql.rows} and
+ * {@code wehaul.sql.time}, tagged by scope ({@code request} or {@code service}) and name, and logs the ones that
+ * look wrong: too many statements, too much JDBC time, or one statement repeated often enough to suggest N+1.
+ */
+@Component
+public class QueryStatsRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryStatsRecorder.class);
+
+    private final MeterRegistry meterRegistry;
+    private final long warnStatements;
+    private final long warnNanos;
+    private final long repeatThreshold;
+
+    public QueryStatsRecorder(MeterRegistry meterRegistry,
+                              @Value("${wehaul.query-stats.warn-statements:25}") long warnStatements,
+                              @Value("${wehaul.query-stats.warn-millis:200}") long warnMillis,
+                              @Value("${wehaul.query-stats.repeat-threshold:10}") long repeatThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.warnStatements = warnStatements;
+        this.warnNanos = TimeUnit.MILLISECONDS.toNanos(warnMillis);
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    public void record(String scope, String name, QueryStats stats) {
+        DistributionSummary.builder("wehaul.sql.statements")
+            .tags("scope", scope, "name", name)
+            .description("SQL statements issued per unit of work")
+            .register(meterRegistry)
+            .record(stats.getStatements());
+        DistributionSummary.builder("wehaul.sql.rows")
+            .tags("scope", scope, "name", name)
+            .description("Rows read or changed per unit of work")
+            .register(meterRegistry)
+            .record(stats.getRows());
+        Timer.builder("wehaul.sql.time")
+            .tags("scope", scope, "name", name)
+            .description("Time spent in JDBC per unit of work")
+            .register(meterRegistry)
+            .record(stats.getJdbcNanos(), TimeUnit.NANOSECONDS);
+
+        if (stats.getStatements() > warnStatements || stats.getJdbcNanos() > warnNanos) {
+            logger.warn("{} {} issued {} statements over {} rows in {} ms of JDBC time",
+                scope, name, stats.getStatements(), stats.getRows(),
+                TimeUnit.NANOSECONDS.toMillis(stats.getJdbcNanos()));
+        }
+        for (Map.Entry<String, Long> execution : stats.getExecutionsBySql().entrySet()) {
+            if (execution.getValue() >= repeatThreshold) {
+                logger.warn("Possible N+1 in {} {}: {} executions of {}",
+                    scope, name, execution.getValue(), execution.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package io.pivotal.pal.wehaul.jdbc;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Checks replica lag on a schedule, and publishes it as {@code wehaul.datasource.replica.lag} along with
+ * {@code wehaul.datasource.connections} tagged by the primary or replica each connection came from.
+ */
+@Component
+@ConditionalOnProperty("wehaul.datasource.replicas.urls")
+public class ReplicaLagMonitor {
+
+    private final ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    public ReplicaLagMonitor(DataSource dataSource, MeterRegistry meterRegistry) {
+        try {
+            this.replicaRoutingDataSource = dataSource.unwrap(ReplicaRoutingDataSource.class);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Replicas are configured but the data source does not route to them", e);
+        }
+
+        FunctionCounter.builder(
+            "wehaul.datasource.connections",
+            replicaRoutingDataSource,
+            routing -> routing.getConnectionCount(ReplicaRoutingDataSource.PRIMARY)
+        )
+            .tag("target", ReplicaRoutingDataSource.PRIMARY)
+            .description("Connections handed out by the routing data source")
+            .register(meterRegistry);
+        for (String replica : replicaRoutingDataSource.getReplicas().keySet()) {
+            FunctionCounter.builder(
+                "wehaul.datasource.connections",
+                replicaRoutingDataSource,
+                routing -> routing.getConnectionCount(replica)
+            )
+                .tag("target", replica)
+                .description("Connections handed out by the routing data source")
+                .register(meterRegistry);
+            // Unknown lag reads as NaN rather than as a huge number of milliseconds
+            Gauge.builder("wehaul.datasource.replica.lag", replicaRoutingDataSource, routing -> {
+                long lagMillis = routing.getLagMillis(replica);
+                return lagMillis == Long.MAX_VALUE ? Double.NaN : lagMillis;
+            })
+                .tag("target", replica)
+                .baseUnit("milliseconds")
+                .description("How far the replica was behind the primary at the last check")
+                .register(meterRegistry);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${wehaul.datasource.replicas.check-interval-ms:1000}")
+    public void checkLag() {
+        replicaRoutingDataSource.checkLag();
+    }
+}
@@ -0,0 +1,137 @@
+package io.pivotal.pal.wehaul.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends connections for read-only transactions to a read replica, and everything else to the primary.
+ * <p>
+ * Replica lag is measured with a heartbeat row the primary writes on every {@link #checkLag()}: a replica
+ * counts as behind by however much older than the previous beat its copy of the row is. Replicas further
+ * behind than the allowed lag, or not yet measured, are skipped, falling back to the primary when none are
+ * left. Must be wrapped in a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, since
+ * transactions fetch their connection before they are marked read-only.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final String SQL_WRITE_HEARTBEAT =
+        "UPDATE replication_heartbeat SET beat_millis = ? WHERE id = 1";
+
+    private static final String SQL_READ_HEARTBEAT =
+        "SELECT beat_millis FROM replication_heartbeat WHERE id = 1";
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final long maxLagMillis;
+    private final Map<String, Long> lagMillisByReplica = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> connectionsByTarget = new HashMap<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private volatile List<String> usableReplicas = Collections.emptyList();
+    private long lastBeatMillis = -1;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, long maxLagMillis) {
+        this.primary = primary;
+        this.replicas = new LinkedHashMap<>(replicas);
+        this.maxLagMillis = maxLagMillis;
+
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+
+        connectionsByTarget.put(PRIMARY, new LongAdder());
+        replicas.keySet().forEach(name -> connectionsByTarget.put(name, new LongAdder()));
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public Map<String, DataSource> getReplicas() {
+        return Collections.unmodifiableMap(replicas);
+    }
+
+    /**
+     * @return how far the replica was behind at the last check, or {@link Long#MAX_VALUE} if not known
+     */
+    public long getLagMillis(String replica) {
+        return lagMillisByReplica.getOrDefault(replica, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return connections handed out from the primary or the named replica
+     */
+    public long getConnectionCount(String target) {
+        return connectionsByTarget.get(target).sum();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String target = PRIMARY;
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            List<String> usable = usableReplicas;
+            if (!usable.isEmpty()) {
+                target = usable.get(Math.floorMod(nextReplica.getAndIncrement(), usable.size()));
+            }
+        }
+        connectionsByTarget.get(target).increment();
+        return target;
+    }
+
+    /**
+     * Measures each replica against the previous heartbeat, then writes the next one to the primary.
+     */
+    public synchronized void checkLag() {
+        List<String> usable = new ArrayList<>();
+        for (Map.Entry<String, DataSource> replica : replicas.entrySet()) {
+            long lagMillis = Long.MAX_VALUE;
+            if (lastBeatMillis >= 0) {
+                try {
+                    Long beatMillis = new JdbcTemplate(replica.getValue())
+                        .queryForObject(SQL_READ_HEARTBEAT, Long.class);
+                    lagMillis = Math.max(0, lastBeatMillis - beatMillis);
+                } catch (DataAccessException e) {
+                    logger.warn(String.format("Could not read the heartbeat of replica %s", replica.getKey()), e);
+                }
+            }
+            lagMillisByReplica.put(replica.getKey(), lagMillis);
+            if (lagMillis <= maxLagMillis) {
+                usable.add(replica.getKey());
+            }
+        }
+        usableReplicas = usable;
+
+        long beatMillis = System.currentTimeMillis();
+        try {
+            new JdbcTemplate(primary).update(SQL_WRITE_HEARTBEAT, beatMillis);
+            lastBeatMillis = beatMillis;
+        } catch (DataAccessException e) {
+            logger.warn("Could not write the replication heartbeat", e);
+        }
+    }
+
+    public void close() {
+        QueryCountingDataSource.closePool(primary);
+        replicas.values().forEach(QueryCountingDataSource::closePool);
+    }
+}
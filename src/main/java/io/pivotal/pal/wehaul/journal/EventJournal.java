@@ -0,0 +1,295 @@
+package io.pivotal.pal.wehaul.journal;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Optional append-only journal of commands, memory mapped from {@code wehaul.journal.directory}. Enabled with
+ * {@code wehaul.journal.enabled=true}.
+ * <p>
+ * Each entry is {@code [payload length][CRC32][payload]}, always followed by a zero length marking the end.
+ * Appenders wait until their entry is fsynced; one of them syncs on behalf of everyone waiting (group commit).
+ * The position applied to the database is kept in a separate checkpoint file, and everything after it is
+ * replayed on restart. Once more than half the journal has been applied, the entries not applied yet are moved
+ * to the front, so appends keep finding room even when the applier never quite catches up.
+ */
+@Component
+public class EventJournal {
+
+    private static final int HEADER_BYTES = 8;
+    private static final int END_MARKER_BYTES = 4;
+
+    private final boolean enabled;
+    private final int capacity;
+    private final Path directory;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition synced = lock.newCondition();
+
+    private FileChannel journalChannel;
+    private FileChannel checkpointChannel;
+    private MappedByteBuffer journal;
+    private MappedByteBuffer checkpoint;
+
+    // guarded by lock
+    private int writePosition;
+    private int durablePosition;
+    private int appliedPosition;
+    private boolean syncing;
+    // Bumped when the journal is compacted, so positions from before then are not waited for
+    private int generation;
+
+    public EventJournal(@Value("${wehaul.journal.enabled:false}") boolean enabled,
+                        @Value("${wehaul.journal.directory:journal}") String directory,
+                        @Value("${wehaul.journal.capacity-bytes:67108864}") int capacity) {
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.directory = Paths.get(directory);
+        if (enabled) {
+            open();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends an entry and returns once it is durable.
+     *
+     * @return false when the journal is full because the applier has fallen behind
+     */
+    public boolean append(JournalEntry entry) {
+        byte[] payload = entry.encode();
+        int size = HEADER_BYTES + payload.length;
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        int end;
+        int appendGeneration;
+        lock.lock();
+        try {
+            if (writePosition + size + END_MARKER_BYTES > capacity) {
+                return false;
+            }
+            int position = writePosition;
+            journal.putInt(position + size, 0);
+            journal.putInt(position + 4, (int) crc.getValue());
+            ByteBuffer payloadBuffer = journal.duplicate();
+            payloadBuffer.position(position + HEADER_BYTES);
+            payloadBuffer.put(payload);
+            // Written last, so a torn entry is never mistaken for a complete one
+            journal.putInt(position, payload.length);
+
+            writePosition += size;
+            end = writePosition;
+            appendGeneration = generation;
+        } finally {
+            lock.unlock();
+        }
+
+        awaitDurable(appendGeneration, end);
+        return true;
+    }
+
+    private void awaitDurable(int positionGeneration, int position) {
+        lock.lock();
+        try {
+            // Once the journal has been compacted, the entry was applied or moved, and is durable either way
+            while (generation == positionGeneration && durablePosition < position) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+
+                // Nobody is syncing: sync everything written so far, including other appenders' entries
+                syncing = true;
+                int target = writePosition;
+                boolean forced = false;
+                lock.unlock();
+                try {
+                    journal.force();
+                    forced = true;
+                } finally {
+                    lock.lock();
+                    syncing = false;
+                    if (forced && generation == positionGeneration) {
+                        durablePosition = Math.max(durablePosition, target);
+                    }
+                    synced.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads durable entries that have not been applied yet, oldest first.
+     */
+    public List<JournalRecord> readUnapplied(int maxEntries) {
+        int from;
+        int to;
+        lock.lock();
+        try {
+            from = appliedPosition;
+            to = durablePosition;
+        } finally {
+            lock.unlock();
+        }
+
+        List<JournalRecord> records = new ArrayList<>();
+        ByteBuffer buffer = journal.duplicate();
+        int position = from;
+        while (position < to && records.size() < maxEntries) {
+            int length = buffer.getInt(position);
+            byte[] payload = new byte[length];
+            buffer.position(position + HEADER_BYTES);
+            buffer.get(payload);
+            position += HEADER_BYTES + length;
+            records.add(new JournalRecord(JournalEntry.decode(payload), position));
+        }
+        return records;
+    }
+
+    /**
+     * Records that everything up to the record has been applied. Survives a process crash straight away, and
+     * an operating system crash once {@link #checkpoint()} has run.
+     */
+    public void markApplied(JournalRecord record) {
+        lock.lock();
+        try {
+            appliedPosition = record.getEndPosition();
+            checkpoint.putInt(0, appliedPosition);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Syncs the applied position and, once more than half the journal has been applied, moves the entries not
+     * applied yet to the front. Only to be called by the applier between batches, as it moves the entries the
+     * applier has read.
+     */
+    public void checkpoint() {
+        lock.lock();
+        try {
+            checkpoint.force();
+            if (appliedPosition > capacity / 2) {
+                compact();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Copies the unapplied entries, which are shorter than the applied prefix and so do not overlap their copy, to
+    // the front. They are synced there before the checkpoint moves to them: recovery starts from the checkpoint,
+    // so a crash on either side of it finds a complete journal.
+    private void compact() {
+        int pending = writePosition - appliedPosition;
+        ByteBuffer source = journal.duplicate();
+        source.limit(writePosition);
+        source.position(appliedPosition);
+        ByteBuffer target = journal.duplicate();
+        target.position(0);
+        target.put(source);
+        journal.putInt(pending, 0);
+        journal.force();
+        checkpoint.putInt(0, 0);
+        checkpoint.force();
+
+        writePosition = pending;
+        durablePosition = pending;
+        appliedPosition = 0;
+        generation++;
+        synced.signalAll();
+    }
+
+    public int getPendingBytes() {
+        lock.lock();
+        try {
+            return writePosition - appliedPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void open() {
+        try {
+            Files.createDirectories(directory);
+            journalChannel = FileChannel.open(
+                directory.resolve("journal.dat"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+            );
+            checkpointChannel = FileChannel.open(
+                directory.resolve("checkpoint.dat"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+            );
+            journal = journalChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            checkpoint = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, 4);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int applied = checkpoint.getInt(0);
+        appliedPosition = applied < 0 || applied > capacity - END_MARKER_BYTES ? 0 : applied;
+        writePosition = recoverEnd(appliedPosition);
+        durablePosition = writePosition;
+    }
+
+    // Finds the end of the last complete entry after the applied ones, ignoring anything torn by a crash mid-append
+    private int recoverEnd(int from) {
+        ByteBuffer buffer = journal.duplicate();
+        int position = from;
+        while (position + HEADER_BYTES <= capacity - END_MARKER_BYTES) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > capacity - END_MARKER_BYTES) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.position(position + HEADER_BYTES);
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            position += HEADER_BYTES + length;
+        }
+        journal.putInt(position, 0);
+        return position;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            journal.force();
+            checkpoint.force();
+            journalChannel.close();
+            checkpointChannel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package io.pivotal.pal.wehaul.journal;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.pal.wehaul.service.FleetTruckService;
+import io.pivotal.pal.wehaul.service.RentalService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.util.List;
+
+/**
+ * Applies journaled commands to the database in the background, in the order they were accepted.
+ * <p>
+ * Commands the services refuse are logged and skipped, as the client has already been answered. A failure that
+ * may clear up, such as a conflict, a timeout or the database being unreachable, stops the batch so that the
+ * remaining commands are retried, still in order, on the next run. Any other failure, including a constraint
+ * violation, is counted as a rejection too, so one bad command cannot stop the journal for good.
+ */
+@Component
+public class JournalApplier {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalApplier.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private final EventJournal eventJournal;
+    private final FleetTruckService fleetTruckService;
+    private final RentalService rentalService;
+    private final MeterRegistry meterRegistry;
+
+    public JournalApplier(EventJournal eventJournal,
+                          FleetTruckService fleetTruckService,
+                          RentalService rentalService,
+                          MeterRegistry meterRegistry) {
+        this.eventJournal = eventJournal;
+        this.fleetTruckService = fleetTruckService;
+        this.rentalService = rentalService;
+        this.meterRegistry = meterRegistry;
+
+        if (eventJournal.isEnabled()) {
+            Gauge.builder("wehaul.journal.pending", eventJournal, EventJournal::getPendingBytes)
+                .baseUnit("bytes")
+                .description("Journaled commands not yet applied to the database")
+                .register(meterRegistry);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${wehaul.journal.apply-interval-ms:50}")
+    public void applyPending() {
+        if (!eventJournal.isEnabled()) {
+            return;
+        }
+
+        List<JournalRecord> records;
+        do {
+            records = eventJournal.readUnapplied(BATCH_SIZE);
+            for (JournalRecord record : records) {
+                try {
+                    apply(record.getEntry());
+                    count(record, "applied");
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    logger.warn("Skipping journaled {}: {}", record.getEntry(), e.getMessage());
+                    count(record, "rejected");
+                } catch (TransientDataAccessException | RecoverableDataAccessException |
+                    DataAccessResourceFailureException | CannotCreateTransactionException e) {
+                    // Conflicts, timeouts and an unreachable database may clear up; the rest of the batch waits
+                    logger.warn("Could not apply journaled {}, will retry", record.getEntry(), e);
+                    eventJournal.checkpoint();
+                    return;
+                } catch (NonTransientDataAccessException e) {
+                    // Fails the same way every time, such as notes too long for their column
+                    logger.warn("Skipping journaled {} the database refused", record.getEntry(), e);
+                    count(record, "rejected");
+                } catch (RuntimeException e) {
+                    logger.error("Skipping journaled {} after unexpected failure", record.getEntry(), e);
+                    count(record, "rejected");
+                }
+                eventJournal.markApplied(record);
+            }
+            eventJournal.checkpoint();
+        } while (records.size() == BATCH_SIZE);
+    }
+
+    private void apply(JournalEntry entry) {
+        switch (entry.getType()) {
+            case RETURNED_FROM_INSPECTION:
+                fleetTruckService.returnFromInspection(
+                    entry.getTruckVin(),
+                    entry.getNotes(),
+                    entry.getOdometerReading()
+                );
+                break;
+            case RENTAL_DROPPED_OFF:
+                rentalService.dropOff(entry.getConfirmationNumber(), entry.getDistanceTraveled());
+                break;
+        }
+    }
+
+    private void count(JournalRecord record, String outcome) {
+        meterRegistry.counter(
+            "wehaul.journal.entries",
+            "type", record.getEntry().getType().name(),
+            "outcome", outcome
+        ).increment();
+    }
+}
@@ -0,0 +1,120 @@
+package io.pivotal.pal.wehaul.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+
+/**
+ * A command accepted into the {@link EventJournal}, to be applied to the database later.
+ */
+public class JournalEntry {
+
+    public enum Type {
+        RETURNED_FROM_INSPECTION,
+        RENTAL_DROPPED_OFF
+    }
+
+    private final Type type;
+    private final String truckVin;
+    private final String notes;
+    private final UUID confirmationNumber;
+    private final int distance;
+
+    private JournalEntry(Type type, String truckVin, String notes, UUID confirmationNumber, int distance) {
+        this.type = type;
+        this.truckVin = truckVin;
+        this.notes = notes;
+        this.confirmationNumber = confirmationNumber;
+        this.distance = distance;
+    }
+
+    public static JournalEntry returnedFromInspection(String truckVin, String notes, int odometerReading) {
+        return new JournalEntry(Type.RETURNED_FROM_INSPECTION, truckVin, notes, null, odometerReading);
+    }
+
+    public static JournalEntry rentalDroppedOff(UUID confirmationNumber, int distanceTraveled) {
+        return new JournalEntry(Type.RENTAL_DROPPED_OFF, null, null, confirmationNumber, distanceTraveled);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getTruckVin() {
+        return truckVin;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+
+    public int getOdometerReading() {
+        return distance;
+    }
+
+    public UUID getConfirmationNumber() {
+        return confirmationNumber;
+    }
+
+    public int getDistanceTraveled() {
+        return distance;
+    }
+
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type.ordinal());
+            switch (type) {
+                case RETURNED_FROM_INSPECTION:
+                    out.writeUTF(truckVin);
+                    out.writeBoolean(notes != null);
+                    if (notes != null) {
+                        out.writeUTF(notes);
+                    }
+                    break;
+                case RENTAL_DROPPED_OFF:
+                    out.writeLong(confirmationNumber.getMostSignificantBits());
+                    out.writeLong(confirmationNumber.getLeastSignificantBits());
+                    break;
+            }
+            out.writeInt(distance);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static JournalEntry decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            Type type = Type.values()[in.readByte()];
+            switch (type) {
+                case RETURNED_FROM_INSPECTION:
+                    String truckVin = in.readUTF();
+                    String notes = in.readBoolean() ? in.readUTF() : null;
+                    return returnedFromInspection(truckVin, notes, in.readInt());
+                case RENTAL_DROPPED_OFF:
+                    UUID confirmationNumber = new UUID(in.readLong(), in.readLong());
+                    return rentalDroppedOff(confirmationNumber, in.readInt());
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown journal entry type %s", type));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JournalEntry{" +
+            "type=" + type +
+            ", truckVin=" + truckVin +
+            ", notes='" + notes + '\'' +
+            ", confirmationNumber=" + confirmationNumber +
+            ", distance=" + distance +
+            '}';
+    }
+}
@@ -0,0 +1,31 @@
+package io.pivotal.pal.wehaul.journal;
+
+/**
+ * An entry read back from the journal, with the position just after it.
+ */
+public class JournalRecord {
+
+    private final JournalEntry entry;
+    private final int endPosition;
+
+    JournalRecord(JournalEntry entry, int endPosition) {
+        this.entry = entry;
+        this.endPosition = endPosition;
+    }
+
+    public JournalEntry getEntry() {
+        return entry;
+    }
+
+    public int getEndPosition() {
+        return endPosition;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalRecord{" +
+            "entry=" + entry +
+            ", endPosition=" + endPosition +
+            '}';
+    }
+}
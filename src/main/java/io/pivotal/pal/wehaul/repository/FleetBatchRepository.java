@@ -0,0 +1,225 @@
+package io.pivotal.pal.wehaul.repository;
+
+import io.pivotal.pal.wehaul.config.CacheConfiguration;
+import io.pivotal.pal.wehaul.domain.Rental;
+import io.pivotal.pal.wehaul.domain.Truck;
+import io.pivotal.pal.wehaul.domain.TruckInspection;
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes many rows per round trip with JDBC batches, for bulk fleet operations. Bypasses JPA, so evicts the
+ * cached trucks and rentals it writes itself.
+ */
+@Repository
+public class FleetBatchRepository {
+
+    private static final String SQL_INSERT_TRUCK =
+        "INSERT INTO truck (vin, status, odometer_reading, version) VALUES (?, ?, ?, 0)";
+
+    private static final String SQL_ADD_DISTANCE =
+        "UPDATE truck SET odometer_reading = odometer_reading + ?, version = version + 1 WHERE vin = ?";
+
+    private static final String SQL_RETURN_FROM_INSPECTION =
+        "UPDATE truck SET status = ?, odometer_reading = ?, version = version + 1 " +
+            "WHERE vin = ? AND status = ? AND odometer_reading <= ?";
+
+    private static final String SQL_INSERT_INSPECTION =
+        "INSERT INTO truck_inspection (id, truck_vin, odometer_reading, notes) VALUES (?, ?, ?, ?)";
+
+    private static final String SQL_UPDATE_LAST_INSPECTION =
+        "UPDATE last_truck_inspection SET odometer_reading = ? WHERE truck_vin = ?";
+
+    private static final String SQL_INSERT_LAST_INSPECTION =
+        "INSERT INTO last_truck_inspection (truck_vin, odometer_reading) VALUES (?, ?)";
+
+    private static final String SQL_EXPIRE_RESERVATION =
+        "UPDATE rental SET expired = TRUE, version = version + 1 " +
+            "WHERE confirmation_number = ? AND distance_traveled IS NULL AND expired = FALSE";
+
+    private static final String SQL_RELEASE_TRUCK =
+        "UPDATE truck SET status = ?, version = version + 1 WHERE vin = ? AND status = ?";
+
+    private final JdbcOperations jdbcOperations;
+    private final Cache truckCache;
+    private final Cache rentalCache;
+
+    public FleetBatchRepository(JdbcOperations jdbcOperations, CacheManager cacheManager) {
+        this.jdbcOperations = jdbcOperations;
+        this.truckCache = cacheManager.getCache(CacheConfiguration.TRUCKS);
+        this.rentalCache = cacheManager.getCache(CacheConfiguration.RENTALS);
+    }
+
+    @Transactional
+    public void insertTrucks(List<Truck> trucks) {
+        if (trucks.isEmpty()) {
+            return;
+        }
+        jdbcOperations.batchUpdate(
+            SQL_INSERT_TRUCK,
+            trucks,
+            trucks.size(),
+            (ps, truck) -> {
+                ps.setString(1, truck.getVin());
+                ps.setString(2, truck.getStatus().name());
+                ps.setInt(3, truck.getOdometerReading());
+            }
+        );
+        trucks.forEach(truck -> truckCache.evict(truck.getVin()));
+    }
+
+    /**
+     * Returns trucks from inspection with the same guards as {@link TruckRepository#updateStatusAndOdometer},
+     * recording the inspections of those that were returned.
+     *
+     * @return for each inspection, in order, whether its truck was returned
+     */
+    @Transactional
+    public boolean[] returnFromInspections(List<TruckInspection> inspections) {
+        boolean[] returned = new boolean[inspections.size()];
+        if (inspections.isEmpty()) {
+            return returned;
+        }
+
+        int[][] updateCounts = jdbcOperations.batchUpdate(
+            SQL_RETURN_FROM_INSPECTION,
+            inspections,
+            inspections.size(),
+            (ps, inspection) -> {
+                ps.setString(1, TruckStatus.RENTABLE.name());
+                ps.setInt(2, inspection.getOdometerReading());
+                ps.setString(3, inspection.getTruckVin());
+                ps.setString(4, TruckStatus.IN_INSPECTION.name());
+                ps.setInt(5, inspection.getOdometerReading());
+            }
+        );
+        List<TruckInspection> returnedInspections = new ArrayList<>();
+        for (int i = 0; i < inspections.size(); i++) {
+            returned[i] = updateCounts[0][i] == 1;
+            if (returned[i]) {
+                returnedInspections.add(inspections.get(i));
+            }
+        }
+        inspections.forEach(inspection -> truckCache.evict(inspection.getTruckVin()));
+        if (returnedInspections.isEmpty()) {
+            return returned;
+        }
+
+        jdbcOperations.batchUpdate(
+            SQL_INSERT_INSPECTION,
+            returnedInspections,
+            returnedInspections.size(),
+            (ps, inspection) -> {
+                ps.setObject(1, inspection.getId());
+                ps.setString(2, inspection.getTruckVin());
+                ps.setInt(3, inspection.getOdometerReading());
+                ps.setString(4, inspection.getNotes());
+            }
+        );
+
+        int[][] lastInspectionCounts = jdbcOperations.batchUpdate(
+            SQL_UPDATE_LAST_INSPECTION,
+            returnedInspections,
+            returnedInspections.size(),
+            (ps, inspection) -> {
+                ps.setInt(1, inspection.getOdometerReading());
+                ps.setString(2, inspection.getTruckVin());
+            }
+        );
+        List<TruckInspection> firstInspections = new ArrayList<>();
+        for (int i = 0; i < returnedInspections.size(); i++) {
+            if (lastInspectionCounts[0][i] == 0) {
+                firstInspections.add(returnedInspections.get(i));
+            }
+        }
+        if (!firstInspections.isEmpty()) {
+            jdbcOperations.batchUpdate(
+                SQL_INSERT_LAST_INSPECTION,
+                firstInspections,
+                firstInspections.size(),
+                (ps, inspection) -> {
+                    ps.setString(1, inspection.getTruckVin());
+                    ps.setInt(2, inspection.getOdometerReading());
+                }
+            );
+        }
+        return returned;
+    }
+
+    /**
+     * Expires reservations that have still not been picked up, and puts their trucks back to RENTABLE. Takes the
+     * rental row first, as {@link RentalRepository#markPickedUp} does, so a concurrent pick-up wins or loses whole.
+     *
+     * @return for each rental, in order, whether its truck was released
+     */
+    @Transactional
+    public boolean[] expireReservations(List<Rental> rentals) {
+        boolean[] released = new boolean[rentals.size()];
+        if (rentals.isEmpty()) {
+            return released;
+        }
+
+        int[][] expiredCounts = jdbcOperations.batchUpdate(
+            SQL_EXPIRE_RESERVATION,
+            rentals,
+            rentals.size(),
+            (ps, rental) -> ps.setObject(1, rental.getConfirmationNumber())
+        );
+        List<Rental> expiredRentals = new ArrayList<>();
+        for (int i = 0; i < rentals.size(); i++) {
+            if (expiredCounts[0][i] == 1) {
+                expiredRentals.add(rentals.get(i));
+            }
+        }
+        rentals.forEach(rental -> rentalCache.evict(rental.getConfirmationNumber()));
+        if (expiredRentals.isEmpty()) {
+            return released;
+        }
+
+        int[][] releasedCounts = jdbcOperations.batchUpdate(
+            SQL_RELEASE_TRUCK,
+            expiredRentals,
+            expiredRentals.size(),
+            (ps, rental) -> {
+                ps.setString(1, TruckStatus.RENTABLE.name());
+                ps.setString(2, rental.getTruckVin());
+                ps.setString(3, TruckStatus.RESERVED.name());
+            }
+        );
+        expiredRentals.forEach(rental -> truckCache.evict(rental.getTruckVin()));
+        for (int i = 0, expired = 0; i < rentals.size(); i++) {
+            if (expiredCounts[0][i] == 1) {
+                released[i] = releasedCounts[0][expired++] == 1;
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Adds distances to odometers, joining the caller's transaction if there is one.
+     */
+    @Transactional
+    public void addOdometerDistances(Map<String, Long> distanceByVin) {
+        if (distanceByVin.isEmpty()) {
+            return;
+        }
+        jdbcOperations.batchUpdate(
+            SQL_ADD_DISTANCE,
+            new ArrayList<>(distanceByVin.entrySet()),
+            distanceByVin.size(),
+            (ps, distance) -> {
+                ps.setLong(1, distance.getValue());
+                ps.setString(2, distance.getKey());
+            }
+        );
+        distanceByVin.keySet().forEach(truckCache::evict);
+    }
+}
@@ -0,0 +1,7 @@
+package io.pivotal.pal.wehaul.repository;
+
+import io.pivotal.pal.wehaul.domain.LastTruckInspection;
+import org.springframework.data.repository.CrudRepository;
+
+public interface LastTruckInspectionRepository extends CrudRepository<LastTruckInspection, String> {
+}
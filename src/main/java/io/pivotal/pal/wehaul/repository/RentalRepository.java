@@ -1,10 +1,104 @@
 package io.pivotal.pal.wehaul.repository;
 
+import io.pivotal.pal.wehaul.config.CacheConfiguration;
 import io.pivotal.pal.wehaul.domain.Rental;
+import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.UUID;
 
+/**
+ * Lookups by confirmation number are cached; those in read-only transactions may read a replica, so they never
+ * fill the cache. Every write below evicts what it changes.
+ */
+@CacheConfig(cacheNames = CacheConfiguration.RENTALS)
 public interface RentalRepository extends CrudRepository<Rental, UUID> {
 
+    @Override
+    @Cacheable(key = "#p0", unless = CacheConfiguration.UNLESS_MISSING_OR_READ_ONLY)
+    Rental findOne(UUID confirmationNumber);
+
+    @Override
+    @CacheEvict(key = "#p0.confirmationNumber")
+    <S extends Rental> S save(S rental);
+
+    @Override
+    @CacheEvict(allEntries = true)
+    <S extends Rental> Iterable<S> save(Iterable<S> rentals);
+
+    @Override
+    @CacheEvict(key = "#p0")
+    void delete(UUID confirmationNumber);
+
+    @Override
+    @CacheEvict(key = "#p0.confirmationNumber")
+    void delete(Rental rental);
+
+    @Override
+    @CacheEvict(allEntries = true)
+    void delete(Iterable<? extends Rental> rentals);
+
+    @Override
+    @CacheEvict(allEntries = true)
+    void deleteAll();
+
+    List<Rental> findAllByOrderByConfirmationNumberAsc(Pageable pageable);
+
+    List<Rental> findByConfirmationNumberGreaterThanOrderByConfirmationNumberAsc(UUID confirmationNumber,
+                                                                                 Pageable pageable);
+
+    List<Rental> findByCustomerNameOrderByConfirmationNumberAsc(String customerName, Pageable pageable);
+
+    List<Rental> findByCustomerNameAndConfirmationNumberGreaterThanOrderByConfirmationNumberAsc(String customerName,
+                                                                                             UUID confirmationNumber,
+                                                                                             Pageable pageable);
+
+    /**
+     * @param pattern a LIKE pattern escaped with {@code !}, such as {@code smi%}
+     */
+    @Query("select r from Rental r where r.customerName like :pattern escape '!' " +
+        "order by r.customerName, r.confirmationNumber")
+    List<Rental> findByCustomerNamePattern(@Param("pattern") String pattern, Pageable pageable);
+
+    /**
+     * Continues {@link #findByCustomerNamePattern} after the rental with the given name and confirmation number.
+     */
+    @Query("select r from Rental r where r.customerName like :pattern escape '!' " +
+        "and (r.customerName > :customerName " +
+        "or (r.customerName = :customerName and r.confirmationNumber > :confirmationNumber)) " +
+        "order by r.customerName, r.confirmationNumber")
+    List<Rental> findByCustomerNamePatternAfter(@Param("pattern") String pattern,
+                                                @Param("customerName") String customerName,
+                                                @Param("confirmationNumber") UUID confirmationNumber,
+                                                Pageable pageable);
+
+    @Query("select r from Rental r " +
+        "where r.reservedAt is not null and r.distanceTraveled is null and r.expired = false")
+    List<Rental> findOutstandingReservations();
+
+    /**
+     * @return 1 if the rental was picked up, 0 if it already had been or its reservation expired
+     */
+    @CacheEvict(key = "#p0")
+    @Modifying
+    @Query("update Rental r set r.distanceTraveled = 0, r.version = r.version + 1 " +
+        "where r.confirmationNumber = :confirmationNumber and r.distanceTraveled is null and r.expired = false")
+    int markPickedUp(@Param("confirmationNumber") UUID confirmationNumber);
+
+    /**
+     * @return 1 if the rental was dropped off, 0 if it was not picked up or already dropped off
+     */
+    @CacheEvict(key = "#p0")
+    @Modifying
+    @Query("update Rental r set r.distanceTraveled = :distanceTraveled, r.version = r.version + 1 " +
+        "where r.confirmationNumber = :confirmationNumber and r.distanceTraveled = 0")
+    int markDroppedOff(@Param("confirmationNumber") UUID confirmationNumber,
+                       @Param("distanceTraveled") int distanceTraveled);
 }
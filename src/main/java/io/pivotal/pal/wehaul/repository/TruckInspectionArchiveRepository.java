@@ -0,0 +1,290 @@
+package io.pivotal.pal.wehaul.repository;
+
+import io.pivotal.pal.wehaul.domain.InspectionArchiveCodec;
+import io.pivotal.pal.wehaul.domain.TruckInspection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Moves the older inspections of a truck out of {@code truck_inspection} into compressed segments of at most
+ * {@code wehaul.inspection-archive.segment-size} inspections, keeping the table that every write and the
+ * truck-since-inspection projection touch small. Reads and archive runs decode only the segments they need.
+ */
+@Repository
+public class TruckInspectionArchiveRepository {
+
+    private static final String SQL_FIND_SEGMENT_RANGES =
+        "SELECT segment, min_id, max_id FROM truck_inspection_archive_segment WHERE truck_vin = ? ORDER BY segment";
+
+    private static final String SQL_FIND_SEGMENT =
+        "SELECT data FROM truck_inspection_archive_segment WHERE truck_vin = ? AND segment = ?";
+
+    private static final String SQL_FIND_LAST_SEGMENT =
+        "SELECT segment, inspection_count, data FROM truck_inspection_archive_segment WHERE truck_vin = ? " +
+            "ORDER BY segment DESC LIMIT 1";
+
+    // Locks the truck's inspections, so concurrent archivers cannot archive the same rows twice
+    private static final String SQL_LOCK_INSPECTIONS =
+        "SELECT id, odometer_reading, notes FROM truck_inspection WHERE truck_vin = ? " +
+            "ORDER BY odometer_reading, id FOR UPDATE";
+
+    private static final String SQL_ALL_INSPECTIONS =
+        "SELECT id, truck_vin, odometer_reading, notes FROM truck_inspection";
+
+    private static final String SQL_ALL_SEGMENTS =
+        "SELECT truck_vin, data FROM truck_inspection_archive_segment";
+
+    private static final String SQL_FIND_VINS_TO_ARCHIVE =
+        "SELECT truck_vin FROM truck_inspection GROUP BY truck_vin HAVING COUNT(*) > ? LIMIT ?";
+
+    private static final String SQL_INSERT_SEGMENT =
+        "INSERT INTO truck_inspection_archive_segment " +
+            "(truck_vin, segment, inspection_count, min_id, max_id, data) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_UPDATE_SEGMENT =
+        "UPDATE truck_inspection_archive_segment SET inspection_count = ?, min_id = ?, max_id = ?, data = ? " +
+            "WHERE truck_vin = ? AND segment = ?";
+
+    private static final String SQL_DELETE_INSPECTION =
+        "DELETE FROM truck_inspection WHERE id = ?";
+
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    private final JdbcOperations jdbcOperations;
+    private final int segmentSize;
+
+    public TruckInspectionArchiveRepository(JdbcOperations jdbcOperations,
+                                            @Value("${wehaul.inspection-archive.segment-size:1000}") int segmentSize) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("An archive segment must hold at least one inspection");
+        }
+        this.jdbcOperations = jdbcOperations;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Pages through the archived inspections of the truck in odometer order. Only the segment holding
+     * {@code afterId} and those the page runs on into are decoded.
+     *
+     * @param afterId the last inspection of the previous page, or null for the first page
+     * @return up to {@code limit} inspections, or null when {@code afterId} is not in the truck's archive
+     */
+    public List<TruckInspection> findPage(String truckVin, UUID afterId, int limit) {
+        List<SegmentRange> ranges = jdbcOperations.query(
+            SQL_FIND_SEGMENT_RANGES,
+            (rs, rowNum) -> new SegmentRange(rs.getInt(1), (UUID) rs.getObject(2), (UUID) rs.getObject(3)),
+            truckVin
+        );
+
+        int segmentIndex = 0;
+        int from = 0;
+        List<TruckInspection> segment = null;
+        if (afterId != null) {
+            segmentIndex = -1;
+            for (int i = 0; i < ranges.size() && segmentIndex < 0; i++) {
+                if (!ranges.get(i).mayContain(afterId)) {
+                    continue;
+                }
+                List<TruckInspection> candidate = findSegment(truckVin, ranges.get(i).segment);
+                for (int j = 0; j < candidate.size(); j++) {
+                    if (candidate.get(j).getId().equals(afterId)) {
+                        segmentIndex = i;
+                        segment = candidate;
+                        from = j + 1;
+                        break;
+                    }
+                }
+            }
+            if (segmentIndex < 0) {
+                return null;
+            }
+        }
+
+        List<TruckInspection> page = new ArrayList<>();
+        for (; page.size() < limit && segmentIndex < ranges.size(); segmentIndex++) {
+            if (segment == null) {
+                segment = findSegment(truckVin, ranges.get(segmentIndex).segment);
+            }
+            page.addAll(segment.subList(from, Math.min(segment.size(), from + limit - page.size())));
+            segment = null;
+            from = 0;
+        }
+        return page;
+    }
+
+    private List<TruckInspection> findSegment(String truckVin, int segment) {
+        List<byte[]> data = jdbcOperations.query(SQL_FIND_SEGMENT, (rs, rowNum) -> rs.getBytes(1), truckVin, segment);
+        if (data.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return InspectionArchiveCodec.decode(truckVin, data.get(0));
+    }
+
+    /**
+     * Streams every inspection, whether still in the table or archived, without holding them all in memory: rows
+     * are fetched {@value #STREAM_FETCH_SIZE} at a time, which PostgreSQL only does inside a transaction. The table
+     * is read before the archives, so an inspection archived in the meantime may be seen twice but is never missed.
+     * <p>
+     * Not read-only, so it reads the primary: a lagging replica could miss inspections committed just before.
+     */
+    @Transactional
+    public void forEachInspection(Consumer<TruckInspection> consumer) {
+        jdbcOperations.query(
+            streaming(SQL_ALL_INSPECTIONS),
+            (RowCallbackHandler) rs -> consumer.accept(new TruckInspection(
+                (UUID) rs.getObject(1),
+                rs.getString(2),
+                rs.getInt(3),
+                rs.getString(4)
+            ))
+        );
+        jdbcOperations.query(
+            streaming(SQL_ALL_SEGMENTS),
+            (RowCallbackHandler) rs -> InspectionArchiveCodec.decode(rs.getString(1), rs.getBytes(2)).forEach(consumer)
+        );
+    }
+
+    private static PreparedStatementCreator streaming(String sql) {
+        return connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            return statement;
+        };
+    }
+
+    /**
+     * @return trucks with more than {@code keepLatest} inspections still in the table
+     */
+    public List<String> findVinsToArchive(int keepLatest, int limit) {
+        return jdbcOperations.queryForList(SQL_FIND_VINS_TO_ARCHIVE, String.class, keepLatest, limit);
+    }
+
+    /**
+     * Archives all but the latest {@code keepLatest} inspections of the truck. They fill up its last segment,
+     * which is the only one rewritten, and then go into new ones. Inspections only ever come in with higher
+     * odometer readings, so the segments stay in odometer order.
+     *
+     * @return the number of inspections archived
+     */
+    @Transactional
+    public int archive(String truckVin, int keepLatest) {
+        if (keepLatest < 1) {
+            throw new IllegalArgumentException("At least the latest inspection must stay in the table");
+        }
+        List<TruckInspection> inspections = jdbcOperations.query(
+            SQL_LOCK_INSPECTIONS,
+            (rs, rowNum) -> new TruckInspection(
+                (UUID) rs.getObject(1),
+                truckVin,
+                rs.getInt(2),
+                rs.getString(3)
+            ),
+            truckVin
+        );
+        if (inspections.size() <= keepLatest) {
+            return 0;
+        }
+        List<TruckInspection> toArchive = inspections.subList(0, inspections.size() - keepLatest);
+
+        // Archivers of the same truck already wait on each other for the inspection lock
+        List<Segment> last = jdbcOperations.query(
+            SQL_FIND_LAST_SEGMENT,
+            (rs, rowNum) -> new Segment(rs.getInt(1), rs.getInt(2), rs.getBytes(3)),
+            truckVin
+        );
+        int nextSegment = 0;
+        int archived = 0;
+        if (!last.isEmpty()) {
+            Segment segment = last.get(0);
+            nextSegment = segment.segment + 1;
+            int room = segmentSize - segment.inspectionCount;
+            if (room > 0) {
+                List<TruckInspection> filled = new ArrayList<>(InspectionArchiveCodec.decode(truckVin, segment.data));
+                archived = Math.min(room, toArchive.size());
+                filled.addAll(toArchive.subList(0, archived));
+                jdbcOperations.update(
+                    SQL_UPDATE_SEGMENT,
+                    filled.size(),
+                    minId(filled),
+                    maxId(filled),
+                    InspectionArchiveCodec.encode(truckVin, filled),
+                    truckVin,
+                    segment.segment
+                );
+            }
+        }
+        for (; archived < toArchive.size(); nextSegment++) {
+            int end = Math.min(toArchive.size(), archived + segmentSize);
+            List<TruckInspection> segment = toArchive.subList(archived, end);
+            jdbcOperations.update(
+                SQL_INSERT_SEGMENT,
+                truckVin,
+                nextSegment,
+                segment.size(),
+                minId(segment),
+                maxId(segment),
+                InspectionArchiveCodec.encode(truckVin, segment)
+            );
+            archived += segment.size();
+        }
+
+        jdbcOperations.batchUpdate(
+            SQL_DELETE_INSPECTION,
+            toArchive,
+            toArchive.size(),
+            (ps, inspection) -> ps.setObject(1, inspection.getId())
+        );
+        return toArchive.size();
+    }
+
+    private static UUID minId(List<TruckInspection> inspections) {
+        return inspections.stream().map(TruckInspection::getId).min(Comparator.naturalOrder()).get();
+    }
+
+    private static UUID maxId(List<TruckInspection> inspections) {
+        return inspections.stream().map(TruckInspection::getId).max(Comparator.naturalOrder()).get();
+    }
+
+    private static class SegmentRange {
+
+        private final int segment;
+        // Null for segments archived before ranges were kept
+        private final UUID minId;
+        private final UUID maxId;
+
+        private SegmentRange(int segment, UUID minId, UUID maxId) {
+            this.segment = segment;
+            this.minId = minId;
+            this.maxId = maxId;
+        }
+
+        private boolean mayContain(UUID id) {
+            return minId == null || maxId == null || (minId.compareTo(id) <= 0 && id.compareTo(maxId) <= 0);
+        }
+    }
+
+    private static class Segment {
+
+        private final int segment;
+        private final int inspectionCount;
+        private final byte[] data;
+
+        private Segment(int segment, int inspectionCount, byte[] data) {
+            this.segment = segment;
+            this.inspectionCount = inspectionCount;
+            this.data = data;
+        }
+    }
+}
@@ -1,9 +1,32 @@
 package io.pivotal.pal.wehaul.repository;
 
 import io.pivotal.pal.wehaul.domain.TruckInspection;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.UUID;
 
-public interface TruckInspectionRepository extends CrudRepository<TruckInspection, UUID> {
+/**
+ * One truck's history is paged by odometer reading, with the id breaking ties, over the (truck_vin,
+ * odometer_reading) index. Saves also keep {@code last_truck_inspection} current, see
+ * {@link TruckInspectionRepositoryImpl}.
+ */
+public interface TruckInspectionRepository extends CrudRepository<TruckInspection, UUID>,
+    TruckInspectionRepositoryCustom {
+
+    List<TruckInspection> findByTruckVinOrderByOdometerReadingAscIdAsc(String truckVin, Pageable pageable);
+
+    /**
+     * Continues {@link #findByTruckVinOrderByOdometerReadingAscIdAsc} after the given inspection.
+     */
+    @Query("select i from TruckInspection i where i.truckVin = :truckVin " +
+        "and (i.odometerReading > :odometerReading or (i.odometerReading = :odometerReading and i.id > :id)) " +
+        "order by i.odometerReading, i.id")
+    List<TruckInspection> findByTruckVinAfter(@Param("truckVin") String truckVin,
+                                              @Param("odometerReading") Integer odometerReading,
+                                              @Param("id") UUID id,
+                                              Pageable pageable);
 }
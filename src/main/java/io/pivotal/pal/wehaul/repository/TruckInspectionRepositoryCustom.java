@@ -0,0 +1,13 @@
+package io.pivotal.pal.wehaul.repository;
+
+import io.pivotal.pal.wehaul.domain.TruckInspection;
+
+public interface TruckInspectionRepositoryCustom {
+
+    /**
+     * Saves the inspection, and makes it its truck's last inspection when it has the highest reading so far.
+     */
+    <S extends TruckInspection> S save(S inspection);
+
+    <S extends TruckInspection> Iterable<S> save(Iterable<S> inspections);
+}
@@ -0,0 +1,54 @@
+package io.pivotal.pal.wehaul.repository;
+
+import io.pivotal.pal.wehaul.domain.LastTruckInspection;
+import io.pivotal.pal.wehaul.domain.TruckInspection;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the last-inspection projection in step with every inspection saved through the repository, so the
+ * truck-since-inspection report never depends on the caller remembering to update it.
+ */
+class TruckInspectionRepositoryImpl implements TruckInspectionRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public <S extends TruckInspection> S save(S inspection) {
+        S saved = inspection;
+        if (inspection.isNew()) {
+            entityManager.persist(inspection);
+        } else {
+            saved = entityManager.merge(inspection);
+        }
+
+        String vin = saved.getTruckVin();
+        Integer odometerReading = saved.getOdometerReading();
+        if (vin == null || odometerReading == null) {
+            return saved;
+        }
+        LastTruckInspection last = entityManager.find(LastTruckInspection.class, vin);
+        if (last == null) {
+            entityManager.persist(new LastTruckInspection(vin, odometerReading));
+        } else if (last.getOdometerReading() == null || last.getOdometerReading() < odometerReading) {
+            last.setOdometerReading(odometerReading);
+        }
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public <S extends TruckInspection> Iterable<S> save(Iterable<S> inspections) {
+        List<S> saved = new ArrayList<>();
+        for (S inspection : inspections) {
+            saved.add(save(inspection));
+        }
+        return saved;
+    }
+}
@@ -1,10 +1,104 @@
 package io.pivotal.pal.wehaul.repository;
 
+import io.pivotal.pal.wehaul.config.CacheConfiguration;
 import io.pivotal.pal.wehaul.domain.Truck;
 import io.pivotal.pal.wehaul.domain.TruckStatus;
+import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
+
+/**
+ * Lookups by VIN are cached; those in read-only transactions may read a replica, so they never fill the cache.
+ * Every write below evicts what it changes.
+ */
+@CacheConfig(cacheNames = CacheConfiguration.TRUCKS)
 public interface TruckRepository extends CrudRepository<Truck, String> {
 
+    @Override
+    @Cacheable(key = "#p0", unless = CacheConfiguration.UNLESS_MISSING_OR_READ_ONLY)
+    Truck findOne(String vin);
+
+    @Override
+    @CacheEvict(key = "#p0.vin")
+    <S extends Truck> S save(S truck);
+
+    @Override
+    @CacheEvict(allEntries = true)
+    <S extends Truck> Iterable<S> save(Iterable<S> trucks);
+
+    @Override
+    @CacheEvict(key = "#p0")
+    void delete(String vin);
+
+    @Override
+    @CacheEvict(key = "#p0.vin")
+    void delete(Truck truck);
+
+    @Override
+    @CacheEvict(allEntries = true)
+    void delete(Iterable<? extends Truck> trucks);
+
+    @Override
+    @CacheEvict(allEntries = true)
+    void deleteAll();
+
     Truck findTop1ByStatus(TruckStatus status);
+
+    List<Truck> findAllByOrderByVinAsc(Pageable pageable);
+
+    List<Truck> findByVinGreaterThanOrderByVinAsc(String vin, Pageable pageable);
+
+    @Query("select t.vin from Truck t where t.status = :status")
+    List<String> findVinsByStatus(@Param("status") TruckStatus status, Pageable pageable);
+
+    @Query("select t.vin, t.status from Truck t")
+    List<Object[]> findAllVinsAndStatuses();
+
+    @Query("select t.status, count(t) from Truck t group by t.status")
+    List<Object[]> countByStatus();
+
+    /**
+     * Moves a truck from one status to another only if it is still in the expected status.
+     *
+     * @return the number of rows updated, 0 when another transaction got there first
+     */
+    @CacheEvict(key = "#p0")
+    @Modifying
+    @Query("update Truck t set t.status = :to, t.version = t.version + 1 where t.vin = :vin and t.status = :from")
+    int updateStatus(@Param("vin") String vin,
+                     @Param("from") TruckStatus from,
+                     @Param("to") TruckStatus to);
+
+    /**
+     * Like {@link #updateStatus}, also recording a new odometer reading as long as it does not go backwards.
+     */
+    @CacheEvict(key = "#p0")
+    @Modifying
+    @Query("update Truck t " +
+        "set t.status = :to, t.odometerReading = :odometerReading, t.version = t.version + 1 " +
+        "where t.vin = :vin and t.status = :from and t.odometerReading <= :odometerReading")
+    int updateStatusAndOdometer(@Param("vin") String vin,
+                                @Param("from") TruckStatus from,
+                                @Param("to") TruckStatus to,
+                                @Param("odometerReading") int odometerReading);
+
+    /**
+     * Like {@link #updateStatus}, also adding the distance to the odometer in the same statement.
+     */
+    @CacheEvict(key = "#p0")
+    @Modifying
+    @Query("update Truck t " +
+        "set t.status = :to, t.odometerReading = t.odometerReading + :distance, t.version = t.version + 1 " +
+        "where t.vin = :vin and t.status = :from")
+    int updateStatusAndAddDistance(@Param("vin") String vin,
+                                   @Param("from") TruckStatus from,
+                                   @Param("to") TruckStatus to,
+                                   @Param("distance") int distance);
 }
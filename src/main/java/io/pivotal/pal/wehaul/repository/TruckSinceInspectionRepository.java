@@ -3,6 +3,7 @@ package io.pivotal.pal.wehaul.repository;
 import io.pivotal.pal.wehaul.domain.TruckSinceInspection;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collection;
 
@@ -10,10 +11,30 @@ import java.util.Collection;
 public class TruckSinceInspectionRepository {
 
     private static final String SQL_QUERY =
-        "SELECT ti.truck_vin, t.odometer_reading - MAX(ti.odometer_reading) " +
-            "FROM truck_inspection ti, truck t " +
-            "WHERE t.vin = ti.truck_vin " +
-            "GROUP BY ti.truck_vin, t.odometer_reading";
+        "SELECT l.truck_vin, t.odometer_reading - l.odometer_reading " +
+            "FROM last_truck_inspection l, truck t " +
+            "WHERE t.vin = l.truck_vin";
+
+    private static final String SQL_LAST_INSPECTIONS =
+        "SELECT truck_vin, MAX(odometer_reading) AS odometer_reading " +
+            "FROM truck_inspection " +
+            "GROUP BY truck_vin";
+
+    private static final String SQL_CLEAR_PROJECTION =
+        "DELETE FROM last_truck_inspection";
+
+    private static final String SQL_REBUILD_PROJECTION =
+        "INSERT INTO last_truck_inspection (truck_vin, odometer_reading) " + SQL_LAST_INSPECTIONS;
+
+    private static final String SQL_FIND_INCONSISTENT =
+        "SELECT h.truck_vin " +
+            "FROM (" + SQL_LAST_INSPECTIONS + ") h " +
+            "LEFT JOIN last_truck_inspection l ON l.truck_vin = h.truck_vin " +
+            "WHERE l.truck_vin IS NULL OR l.odometer_reading <> h.odometer_reading " +
+            "UNION " +
+            "SELECT l.truck_vin " +
+            "FROM last_truck_inspection l " +
+            "WHERE NOT EXISTS (SELECT 1 FROM truck_inspection ti WHERE ti.truck_vin = l.truck_vin)";
 
     private final JdbcOperations jdbcOperations;
 
@@ -31,4 +52,22 @@ public class TruckSinceInspectionRepository {
             )
         );
     }
+
+    /**
+     * Recomputes the last-inspection projection from the full inspection history.
+     *
+     * @return the number of trucks in the rebuilt projection
+     */
+    @Transactional
+    public int rebuildProjection() {
+        jdbcOperations.update(SQL_CLEAR_PROJECTION);
+        return jdbcOperations.update(SQL_REBUILD_PROJECTION);
+    }
+
+    /**
+     * @return VINs whose last-inspection projection disagrees with the inspection history
+     */
+    public Collection<String> findInconsistentVins() {
+        return jdbcOperations.queryForList(SQL_FIND_INCONSISTENT, String.class);
+    }
 }
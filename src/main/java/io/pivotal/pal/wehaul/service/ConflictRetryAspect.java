@@ -0,0 +1,63 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Applies {@link RetryOnConflict}. Runs outside the transaction advice so that every attempt gets a fresh
+ * transaction, and counts conflicts as {@code wehaul.conflicts} tagged by method and outcome.
+ */
+@Aspect
+@Component
+public class ConflictRetryAspect implements Ordered {
+
+    private final MeterRegistry meterRegistry;
+
+    public ConflictRetryAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("@annotation(retryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint, RetryOnConflict retryOnConflict) throws Throwable {
+        String method = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." +
+            joinPoint.getSignature().getName();
+        long backoffMillis = retryOnConflict.initialBackoffMillis();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= retryOnConflict.maxAttempts()) {
+                    meterRegistry.counter("wehaul.conflicts", "method", method, "outcome", "exhausted").increment();
+                    throw e;
+                }
+                meterRegistry.counter("wehaul.conflicts", "method", method, "outcome", "retried").increment();
+
+                // Full jitter keeps competing callers from retrying in lockstep
+                sleep(ThreadLocalRandom.current().nextLong(backoffMillis + 1), e);
+                backoffMillis = Math.min(backoffMillis * 2, retryOnConflict.maxBackoffMillis());
+            }
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    private static void sleep(long millis, OptimisticLockingFailureException conflict) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+}
@@ -1,33 +1,69 @@
 package io.pivotal.pal.wehaul.service;
 
+import io.micrometer.core.annotation.Timed;
+import io.pivotal.pal.wehaul.domain.BatchItemResult;
+import io.pivotal.pal.wehaul.domain.InspectionSearchHit;
 import io.pivotal.pal.wehaul.domain.Truck;
 import io.pivotal.pal.wehaul.domain.TruckInspection;
 import io.pivotal.pal.wehaul.domain.TruckSinceInspection;
 import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.domain.TruckStatusChangedEvent;
+import io.pivotal.pal.wehaul.repository.FleetBatchRepository;
+import io.pivotal.pal.wehaul.repository.TruckInspectionArchiveRepository;
 import io.pivotal.pal.wehaul.repository.TruckInspectionRepository;
 import io.pivotal.pal.wehaul.repository.TruckRepository;
 import io.pivotal.pal.wehaul.repository.TruckSinceInspectionRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import javax.transaction.Transactional;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 @Service
 public class FleetTruckService {
 
+    private static final int BUY_BATCH_SIZE = 500;
+
     private final TruckRepository truckRepository;
     private final TruckInspectionRepository truckInspectionRepository;
+    private final TruckInspectionArchiveRepository truckInspectionArchiveRepository;
     private final TruckSinceInspectionRepository truckSinceInspectionRepository;
+    private final FleetBatchRepository fleetBatchRepository;
+    private final OdometerAccumulator odometerAccumulator;
+    private final InspectionSearchIndex inspectionSearchIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
     public FleetTruckService(TruckRepository truckRepository,
                              TruckInspectionRepository truckInspectionRepository,
-                             TruckSinceInspectionRepository truckSinceInspectionRepository) {
+                             TruckInspectionArchiveRepository truckInspectionArchiveRepository,
+                             TruckSinceInspectionRepository truckSinceInspectionRepository,
+                             FleetBatchRepository fleetBatchRepository,
+                             OdometerAccumulator odometerAccumulator,
+                             InspectionSearchIndex inspectionSearchIndex,
+                             ApplicationEventPublisher eventPublisher) {
         this.truckRepository = truckRepository;
         this.truckInspectionRepository = truckInspectionRepository;
+        this.truckInspectionArchiveRepository = truckInspectionArchiveRepository;
         this.truckSinceInspectionRepository = truckSinceInspectionRepository;
+        this.fleetBatchRepository = fleetBatchRepository;
+        this.odometerAccumulator = odometerAccumulator;
+        this.inspectionSearchIndex = inspectionSearchIndex;
+        this.eventPublisher = eventPublisher;
     }
 
+    @Timed(value = "wehaul.fleet", histogram = true)
     public void buyTruck(String vin,
                          int odometerReading) {
         if (odometerReading < 0) {
@@ -35,59 +71,338 @@ public class FleetTruckService {
         }
         Truck truck = new Truck(vin, odometerReading);
         truckRepository.save(truck);
+        eventPublisher.publishEvent(new TruckStatusChangedEvent(vin, null, truck.getStatus()));
     }
 
-    @Transactional
-    public void sendForInspection(String vin) {
-        Truck truck = truckRepository.findOne(vin);
+    /**
+     * Buys trucks in JDBC batches. Invalid or duplicate records are rejected without failing the others, as are
+     * records the iterator cannot read: its {@code next()} throws {@link IllegalArgumentException} for those,
+     * and reading carries on with the record after.
+     *
+     * @return one result per record, in the order given
+     */
+    @Timed(value = "wehaul.fleet", histogram = true)
+    public List<BatchItemResult> buyTrucks(Iterator<Truck> trucks) {
+        List<BatchItemResult> results = new ArrayList<>();
+        List<Truck> batch = new ArrayList<>(BUY_BATCH_SIZE);
+        Map<Integer, String> unreadable = new HashMap<>();
+        while (trucks.hasNext()) {
+            try {
+                batch.add(trucks.next());
+            } catch (IllegalArgumentException e) {
+                unreadable.put(batch.size(), e.getMessage());
+                batch.add(null);
+            }
+            if (batch.size() == BUY_BATCH_SIZE) {
+                results.addAll(buyBatch(batch, unreadable));
+                batch.clear();
+                unreadable.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            results.addAll(buyBatch(batch, unreadable));
+        }
+        return results;
+    }
 
-        if (truck == null) {
-            throw new IllegalArgumentException(String.format("No truck found with VIN=%s", vin));
+    // Unreadable records are null in the batch, with their error by position
+    private List<BatchItemResult> buyBatch(List<Truck> batch, Map<Integer, String> unreadable) {
+        BatchItemResult[] results = new BatchItemResult[batch.size()];
+
+        Set<String> vins = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Truck truck = batch.get(i);
+            if (truck == null) {
+                results[i] = BatchItemResult.rejected(null, unreadable.get(i));
+            } else if (truck.getVin() == null || truck.getVin().trim().isEmpty()) {
+                results[i] = BatchItemResult.rejected(null, "Cannot buy a truck without a VIN");
+            } else if (truck.getOdometerReading() < 0) {
+                results[i] = BatchItemResult.rejected(
+                    truck.getVin(),
+                    "Cannot buy a truck with negative odometer reading"
+                );
+            } else if (!vins.add(truck.getVin())) {
+                results[i] = BatchItemResult.rejected(truck.getVin(), "Duplicate VIN in request");
+            }
         }
-        if (truck.getStatus() != TruckStatus.RENTABLE) {
+
+        Set<String> existingVins = new HashSet<>();
+        truckRepository.findAll(vins).forEach(truck -> existingVins.add(truck.getVin()));
+
+        List<Truck> trucksToInsert = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Truck truck = batch.get(i);
+            if (results[i] != null) {
+                continue;
+            }
+            if (existingVins.contains(truck.getVin())) {
+                results[i] = BatchItemResult.rejected(
+                    truck.getVin(),
+                    String.format("Truck with VIN=%s already exists", truck.getVin())
+                );
+            } else {
+                trucksToInsert.add(truck);
+            }
+        }
+
+        String batchError = null;
+        try {
+            fleetBatchRepository.insertTrucks(trucksToInsert);
+            for (Truck truck : trucksToInsert) {
+                eventPublisher.publishEvent(new TruckStatusChangedEvent(truck.getVin(), null, truck.getStatus()));
+            }
+        } catch (DataAccessException e) {
+            batchError = String.format("Could not save batch: %s", e.getMostSpecificCause().getMessage());
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (results[i] == null) {
+                results[i] = batchError == null
+                    ? BatchItemResult.accepted(batch.get(i).getVin())
+                    : BatchItemResult.rejected(batch.get(i).getVin(), batchError);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    @Timed(value = "wehaul.fleet", histogram = true)
+    @RetryOnConflict
+    @Transactional
+    public void sendForInspection(String vin) {
+        if (truckRepository.updateStatus(vin, TruckStatus.RENTABLE, TruckStatus.IN_INSPECTION) != 1) {
+            Truck truck = findExistingTruck(vin);
             throw new IllegalStateException(
                 String.format("Cannot send truck for inspection while truck is %s", truck.getStatus())
             );
         }
 
-        truck.setStatus(TruckStatus.IN_INSPECTION);
-
-        truckRepository.save(truck);
+        eventPublisher.publishEvent(
+            new TruckStatusChangedEvent(vin, TruckStatus.RENTABLE, TruckStatus.IN_INSPECTION)
+        );
     }
 
+    @Timed(value = "wehaul.fleet", histogram = true)
+    @RetryOnConflict
     @Transactional
     public void returnFromInspection(String vin, String notes, int odometerReading) {
-        Truck truck = truckRepository.findOne(vin);
+        // The reading is checked against the stored odometer, which must include any buffered drop-offs
+        odometerAccumulator.flush(vin);
 
-        if (truck == null) {
-            throw new IllegalArgumentException(String.format("No truck found with VIN=%s", vin));
+        int updated = truckRepository.updateStatusAndOdometer(
+            vin,
+            TruckStatus.IN_INSPECTION,
+            TruckStatus.RENTABLE,
+            odometerReading
+        );
+        if (updated != 1) {
+            Truck truck = findExistingTruck(vin);
+            if (truck.getStatus() != TruckStatus.IN_INSPECTION) {
+                throw new IllegalStateException(
+                    String.format("Cannot return truck from inspection while truck is %s", truck.getStatus())
+                );
+            }
+            if (truck.getOdometerReading() > odometerReading) {
+                throw new IllegalArgumentException("Odometer reading cannot be less than previous reading");
+            }
+            // The truck changed between the update and the read, try again
+            throw new ObjectOptimisticLockingFailureException(Truck.class, vin);
         }
 
-        if (truck.getStatus() != TruckStatus.IN_INSPECTION) {
-            throw new IllegalStateException(
-                String.format("Cannot return truck from inspection while truck is %s", truck.getStatus())
+        eventPublisher.publishEvent(
+            new TruckStatusChangedEvent(vin, TruckStatus.IN_INSPECTION, TruckStatus.RENTABLE)
+        );
+
+        TruckInspection truckInspection =
+            new TruckInspection(vin, odometerReading, notes);
+        truckInspectionRepository.save(truckInspection);
+        inspectionSearchIndex.index(truckInspection);
+    }
+
+    /**
+     * Returns many trucks from inspection with JDBC batches, applying the same rules as
+     * {@link #returnFromInspection}. Records that break them are rejected without failing the others.
+     *
+     * @return one result per inspection, in the order given
+     */
+    @Timed(value = "wehaul.fleet", histogram = true)
+    public List<BatchItemResult> returnFromInspections(List<TruckInspection> inspections) {
+        BatchItemResult[] results = new BatchItemResult[inspections.size()];
+
+        Set<String> vins = new HashSet<>();
+        for (int i = 0; i < inspections.size(); i++) {
+            TruckInspection inspection = inspections.get(i);
+            if (inspection.getTruckVin() == null) {
+                results[i] = BatchItemResult.rejected(null, "Cannot return a truck without a VIN");
+            } else if (!vins.add(inspection.getTruckVin())) {
+                results[i] = BatchItemResult.rejected(inspection.getTruckVin(), "Duplicate VIN in request");
+            }
+        }
+
+        vins.forEach(odometerAccumulator::flush);
+        Map<String, Truck> trucksByVin = new HashMap<>();
+        truckRepository.findAll(vins).forEach(truck -> trucksByVin.put(truck.getVin(), truck));
+
+        List<TruckInspection> inspectionsToSave = new ArrayList<>();
+        List<Integer> indexesToSave = new ArrayList<>();
+        for (int i = 0; i < inspections.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            TruckInspection inspection = inspections.get(i);
+            String error = findReturnFromInspectionError(
+                inspection.getTruckVin(),
+                trucksByVin.get(inspection.getTruckVin()),
+                inspection.getOdometerReading()
             );
+            if (error != null) {
+                results[i] = BatchItemResult.rejected(inspection.getTruckVin(), error);
+            } else {
+                inspectionsToSave.add(inspection);
+                indexesToSave.add(i);
+            }
         }
-        if (truck.getOdometerReading() > odometerReading) {
-            throw new IllegalArgumentException("Odometer reading cannot be less than previous reading");
+
+        boolean[] returned = null;
+        String batchError = null;
+        try {
+            returned = fleetBatchRepository.returnFromInspections(inspectionsToSave);
+        } catch (DataAccessException e) {
+            batchError = String.format("Could not save batch: %s", e.getMostSpecificCause().getMessage());
         }
 
-        truck.setStatus(TruckStatus.RENTABLE);
-        truck.setOdometerReading(odometerReading);
-        truckRepository.save(truck);
+        for (int j = 0; j < inspectionsToSave.size(); j++) {
+            String vin = inspectionsToSave.get(j).getTruckVin();
+            int i = indexesToSave.get(j);
+            if (batchError != null) {
+                results[i] = BatchItemResult.rejected(vin, batchError);
+            } else if (!returned[j]) {
+                results[i] = BatchItemResult.rejected(
+                    vin,
+                    String.format("Truck with VIN=%s changed during the request, try again", vin)
+                );
+            } else {
+                results[i] = BatchItemResult.accepted(vin);
+                inspectionSearchIndex.index(inspectionsToSave.get(j));
+                eventPublisher.publishEvent(
+                    new TruckStatusChangedEvent(vin, TruckStatus.IN_INSPECTION, TruckStatus.RENTABLE)
+                );
+            }
+        }
+        return Arrays.asList(results);
+    }
 
-        TruckInspection truckInspection =
-            new TruckInspection(vin, odometerReading, notes);
-        truckInspectionRepository.save(truckInspection);
+    private static String findReturnFromInspectionError(String vin, Truck truck, int odometerReading) {
+        if (truck == null) {
+            return String.format("No truck found with VIN=%s", vin);
+        }
+        if (truck.getStatus() != TruckStatus.IN_INSPECTION) {
+            return String.format("Cannot return truck from inspection while truck is %s", truck.getStatus());
+        }
+        if (truck.getOdometerReading() > odometerReading) {
+            return "Odometer reading cannot be less than previous reading";
+        }
+        return null;
+    }
+
+    // Only called once a conditional update has failed, to explain why
+    private Truck findExistingTruck(String vin) {
+        Truck truck = truckRepository.findOne(vin);
+        if (truck == null) {
+            throw new IllegalArgumentException(String.format("No truck found with VIN=%s", vin));
+        }
+        return truck;
     }
 
+    @Timed(value = "wehaul.fleet", histogram = true)
+    @Transactional(readOnly = true)
     public Collection<TruckSinceInspection> findAllTruckSinceInspections() {
         return truckSinceInspectionRepository.findAllTruckSinceInspections();
     }
 
+    @Timed(value = "wehaul.fleet", histogram = true)
+    public int rebuildTruckSinceInspections() {
+        return truckSinceInspectionRepository.rebuildProjection();
+    }
+
+    @Timed(value = "wehaul.fleet", histogram = true)
+    public Collection<String> findInconsistentTruckSinceInspections() {
+        return truckSinceInspectionRepository.findInconsistentVins();
+    }
+
+    /**
+     * Ranks inspections by how well their notes match the words of the query.
+     */
+    @Timed(value = "wehaul.fleet", histogram = true)
+    public List<InspectionSearchHit> searchInspections(String query, int offset, int limit) {
+        return inspectionSearchIndex.search(query, offset, limit);
+    }
+
+    @Timed(value = "wehaul.fleet", histogram = true)
+    public int rebuildInspectionSearchIndex() {
+        return inspectionSearchIndex.rebuild();
+    }
+
+    @Timed(value = "wehaul.fleet", histogram = true)
+    @Transactional(readOnly = true)
     public Collection<Truck> findAll() {
         Collection<Truck> trucks = new ArrayList<>();
         truckRepository.findAll().forEach(trucks::add);
         return trucks;
     }
+
+    /**
+     * @param afterVin the last VIN of the previous page, or null for the first page
+     */
+    @Timed(value = "wehaul.fleet", histogram = true)
+    @Transactional(readOnly = true)
+    public List<Truck> findPage(String afterVin, int limit) {
+        PageRequest pageRequest = new PageRequest(0, limit);
+        if (afterVin == null) {
+            return truckRepository.findAllByOrderByVinAsc(pageRequest);
+        }
+        return truckRepository.findByVinGreaterThanOrderByVinAsc(afterVin, pageRequest);
+    }
+
+    /**
+     * Pages through one truck's inspections in odometer order, archived ones first.
+     *
+     * @param afterId the last inspection id of the previous page, or null for the first page
+     */
+    @Timed(value = "wehaul.fleet", histogram = true)
+    @Transactional(readOnly = true)
+    public List<TruckInspection> findInspectionPage(String vin, UUID afterId, int limit) {
+        findExistingTruck(vin);
+
+        TruckInspection after = afterId == null ? null : truckInspectionRepository.findOne(afterId);
+        List<TruckInspection> page;
+        if (after != null) {
+            if (!vin.equals(after.getTruckVin())) {
+                throw inspectionNotFound(vin, afterId);
+            }
+            // Every archived inspection comes before those still in the table
+            page = new ArrayList<>();
+        } else {
+            List<TruckInspection> archived = truckInspectionArchiveRepository.findPage(vin, afterId, limit);
+            // Not in the table, so archived since the previous page or unknown
+            if (archived == null) {
+                throw inspectionNotFound(vin, afterId);
+            }
+            page = new ArrayList<>(archived);
+        }
+
+        if (page.size() < limit) {
+            PageRequest pageRequest = new PageRequest(0, limit - page.size());
+            page.addAll(after == null
+                ? truckInspectionRepository.findByTruckVinOrderByOdometerReadingAscIdAsc(vin, pageRequest)
+                : truckInspectionRepository.findByTruckVinAfter(vin, after.getOdometerReading(), afterId, pageRequest)
+            );
+        }
+        return page;
+    }
+
+    private static IllegalArgumentException inspectionNotFound(String vin, UUID inspectionId) {
+        return new IllegalArgumentException(
+            String.format("No inspection found with id=%s for VIN=%s", inspectionId, vin)
+        );
+    }
 }
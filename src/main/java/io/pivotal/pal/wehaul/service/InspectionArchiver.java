@@ -0,0 +1,70 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.pal.wehaul.repository.TruckInspectionArchiveRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * With {@code wehaul.inspection-archive.enabled=true}, periodically moves all but the latest
+ * {@code keep-latest} inspections of each truck into its compressed archive. Archived inspections are still
+ * served by the inspection history endpoint.
+ */
+@Component
+public class InspectionArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(InspectionArchiver.class);
+
+    private final TruckInspectionArchiveRepository truckInspectionArchiveRepository;
+    private final boolean enabled;
+    private final int keepLatest;
+    private final int batchSize;
+    private final Counter archivedCounter;
+
+    public InspectionArchiver(TruckInspectionArchiveRepository truckInspectionArchiveRepository,
+                              @Value("${wehaul.inspection-archive.enabled:false}") boolean enabled,
+                              @Value("${wehaul.inspection-archive.keep-latest:20}") int keepLatest,
+                              @Value("${wehaul.inspection-archive.batch-size:100}") int batchSize,
+                              MeterRegistry meterRegistry) {
+        if (keepLatest < 1) {
+            throw new IllegalArgumentException("At least the latest inspection must stay in the table");
+        }
+        this.truckInspectionArchiveRepository = truckInspectionArchiveRepository;
+        this.enabled = enabled;
+        this.keepLatest = keepLatest;
+        this.batchSize = batchSize;
+        this.archivedCounter = Counter.builder("wehaul.inspections.archived")
+            .description("Inspections moved into per-truck archives")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Archives up to a batch of trucks, each in its own transaction.
+     *
+     * @return the number of inspections archived
+     */
+    @Scheduled(fixedDelayString = "${wehaul.inspection-archive.interval-ms:600000}")
+    public int archive() {
+        if (!enabled) {
+            return 0;
+        }
+        int archivedTotal = 0;
+        for (String vin : truckInspectionArchiveRepository.findVinsToArchive(keepLatest, batchSize)) {
+            try {
+                archivedTotal += truckInspectionArchiveRepository.archive(vin, keepLatest);
+            } catch (DataAccessException e) {
+                logger.warn(String.format("Could not archive inspections of truck %s, retrying on the next run", vin), e);
+            }
+        }
+        archivedCounter.increment(archivedTotal);
+        if (archivedTotal > 0) {
+            logger.debug("Archived {} inspections", archivedTotal);
+        }
+        return archivedTotal;
+    }
+}
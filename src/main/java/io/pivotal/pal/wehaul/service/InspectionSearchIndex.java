@@ -0,0 +1,229 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.pal.wehaul.domain.InspectionSearchHit;
+import io.pivotal.pal.wehaul.domain.TruckInspection;
+import io.pivotal.pal.wehaul.repository.TruckInspectionArchiveRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process inverted index over inspection notes, ranking matches with BM25.
+ * <p>
+ * Notes are split into lower-cased words, with a trailing plural "s" dropped so that "tire" finds "tires".
+ * Inspections are added as they commit and the whole index is built at startup, from the table and the
+ * archives. A rebuild is assembled off to the side while searches keep using the current index.
+ */
+@Component
+public class InspectionSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(InspectionSearchIndex.class);
+
+    // Usual BM25 parameters: term frequency saturation and document length normalization
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Comparator<InspectionSearchHit> RANKING = Comparator
+        .comparingDouble(InspectionSearchHit::getScore).reversed()
+        .thenComparing(InspectionSearchHit::getId);
+
+    private final TruckInspectionArchiveRepository truckInspectionArchiveRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Index index = new Index();
+    // Inspections added while a rebuild runs, replayed into the rebuilt index
+    private List<TruckInspection> addedDuringRebuild;
+
+    public InspectionSearchIndex(TruckInspectionArchiveRepository truckInspectionArchiveRepository,
+                                 MeterRegistry meterRegistry) {
+        this.truckInspectionArchiveRepository = truckInspectionArchiveRepository;
+        Gauge.builder("wehaul.inspection-search.documents", this, InspectionSearchIndex::size)
+            .description("Inspections in the notes search index")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Adds an inspection to the index when it commits.
+     */
+    public void index(TruckInspection inspection) {
+        AfterCommit.run(() -> add(inspection));
+    }
+
+    /**
+     * @return inspections whose notes contain any word of the query, best match first
+     */
+    public List<InspectionSearchHit> search(String query, int offset, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("Search query needs at least one word");
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<UUID, Double> scores = new HashMap<>();
+            double averageLength = index.documents.isEmpty()
+                ? 0
+                : (double) index.totalLength / index.documents.size();
+            for (String term : terms) {
+                Map<UUID, Integer> postings = index.postings.get(term);
+                if (postings == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (index.documents.size() - postings.size() + 0.5) / (postings.size() + 0.5));
+                for (Map.Entry<UUID, Integer> posting : postings.entrySet()) {
+                    int frequency = posting.getValue();
+                    int length = index.documents.get(posting.getKey()).length;
+                    double score = idf * frequency * (K1 + 1) /
+                        (frequency + K1 * (1 - B + B * length / averageLength));
+                    scores.merge(posting.getKey(), score, Double::sum);
+                }
+            }
+
+            // Keeps only the hits up to the end of the requested page
+            int wanted = offset + limit;
+            PriorityQueue<InspectionSearchHit> best = new PriorityQueue<>(wanted + 1, RANKING.reversed());
+            for (Map.Entry<UUID, Double> score : scores.entrySet()) {
+                best.add(new InspectionSearchHit(index.documents.get(score.getKey()).inspection, score.getValue()));
+                if (best.size() > wanted) {
+                    best.poll();
+                }
+            }
+            List<InspectionSearchHit> ranked = new ArrayList<>(best);
+            ranked.sort(RANKING);
+            return ranked.size() <= offset
+                ? Collections.emptyList()
+                : ranked.subList(offset, ranked.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        int size = rebuild();
+        logger.info("Inspection search index built with {} inspections", size);
+    }
+
+    /**
+     * Replaces the index with one built from every inspection, in the table or archived.
+     *
+     * @return the number of inspections indexed
+     */
+    public synchronized int rebuild() {
+        lock.writeLock().lock();
+        try {
+            addedDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Index rebuilt = new Index();
+        try {
+            truckInspectionArchiveRepository.forEachInspection(rebuilt::add);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                addedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            addedDuringRebuild.forEach(rebuilt::add);
+            addedDuringRebuild = null;
+            index = rebuilt;
+            return rebuilt.documents.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(TruckInspection inspection) {
+        lock.writeLock().lock();
+        try {
+            index.add(inspection);
+            if (addedDuringRebuild != null) {
+                addedDuringRebuild.add(inspection);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")) {
+                word = word.substring(0, word.length() - 1);
+            }
+            terms.add(word);
+        }
+        return terms;
+    }
+
+    private static class Index {
+
+        private final Map<String, Map<UUID, Integer>> postings = new HashMap<>();
+        private final Map<UUID, Document> documents = new HashMap<>();
+        private long totalLength;
+
+        // Inspections never change, so one seen before is skipped
+        private void add(TruckInspection inspection) {
+            if (documents.containsKey(inspection.getId())) {
+                return;
+            }
+            List<String> terms = tokenize(inspection.getNotes());
+            documents.put(inspection.getId(), new Document(inspection, terms.size()));
+            totalLength += terms.size();
+            for (String term : terms) {
+                postings.computeIfAbsent(term, key -> new HashMap<>()).merge(inspection.getId(), 1, Integer::sum);
+            }
+        }
+    }
+
+    private static class Document {
+
+        private final TruckInspection inspection;
+        private final int length;
+
+        private Document(TruckInspection inspection, int length) {
+            this.inspection = inspection;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.pivotal.pal.wehaul.repository.FleetBatchRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optionally buffers odometer increments from drop-offs per VIN and writes them in batches.
+ * <p>
+ * Enabled with {@code wehaul.odometer.buffered=true}. Trades odometer freshness, and any increments still
+ * buffered if the process dies, for one batched update per flush instead of one per drop-off.
+ */
+@Component
+public class OdometerAccumulator {
+
+    private static final Logger logger = LoggerFactory.getLogger(OdometerAccumulator.class);
+
+    private final FleetBatchRepository fleetBatchRepository;
+    private final boolean buffered;
+    private final ConcurrentMap<String, Long> pendingDistanceByVin = new ConcurrentHashMap<>();
+
+    // Trucks whose distances a batch flush has taken but not yet written; distances are only taken under the lock
+    private final Lock lock = new ReentrantLock();
+    private final Condition batchWritten = lock.newCondition();
+    private final Set<String> inFlightVins = new HashSet<>();
+
+    public OdometerAccumulator(FleetBatchRepository fleetBatchRepository,
+                               @Value("${wehaul.odometer.buffered:false}") boolean buffered) {
+        this.fleetBatchRepository = fleetBatchRepository;
+        this.buffered = buffered;
+    }
+
+    public boolean isBuffered() {
+        return buffered;
+    }
+
+    /**
+     * Buffers the distance of a drop-off when it commits.
+     */
+    public void add(String vin, int distance) {
+        AfterCommit.run(() -> pendingDistanceByVin.merge(vin, (long) distance, Long::sum));
+    }
+
+    /**
+     * Writes any buffered distance for one truck, for callers about to rely on its odometer reading. Inside a
+     * transaction the write joins it, rather than holding a second connection, and the distance goes back in the
+     * buffer if the transaction rolls back.
+     * <p>
+     * Waits for a batch flush writing the truck's distance to finish, so a caller setting the odometer afterwards
+     * cannot be overtaken by it. Call it before the transaction writes anything the batch could be waiting on.
+     */
+    public void flush(String vin) {
+        Long distance;
+        lock.lock();
+        try {
+            while (inFlightVins.contains(vin)) {
+                batchWritten.awaitUninterruptibly();
+            }
+            distance = pendingDistanceByVin.remove(vin);
+        } finally {
+            lock.unlock();
+        }
+        if (distance == null) {
+            return;
+        }
+        try {
+            fleetBatchRepository.addOdometerDistances(Collections.singletonMap(vin, distance));
+        } catch (DataAccessException e) {
+            pendingDistanceByVin.merge(vin, distance, Long::sum);
+            throw e;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        pendingDistanceByVin.merge(vin, distance, Long::sum);
+                    }
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${wehaul.odometer.flush-interval-ms:1000}")
+    public void flush() {
+        Map<String, Long> distanceByVin = new HashMap<>();
+        lock.lock();
+        try {
+            for (String vin : pendingDistanceByVin.keySet()) {
+                Long distance = pendingDistanceByVin.remove(vin);
+                if (distance != null) {
+                    distanceByVin.put(vin, distance);
+                }
+            }
+            inFlightVins.addAll(distanceByVin.keySet());
+        } finally {
+            lock.unlock();
+        }
+        if (distanceByVin.isEmpty()) {
+            return;
+        }
+
+        try {
+            fleetBatchRepository.addOdometerDistances(distanceByVin);
+        } catch (DataAccessException e) {
+            logger.warn("Could not flush odometer readings for {} trucks, will retry", distanceByVin.size(), e);
+            distanceByVin.forEach((vin, distance) -> pendingDistanceByVin.merge(vin, distance, Long::sum));
+        } finally {
+            lock.lock();
+            try {
+                inFlightVins.removeAll(distanceByVin.keySet());
+                batchWritten.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.pivotal.pal.wehaul.jdbc.QueryStats;
+import io.pivotal.pal.wehaul.jdbc.QueryStatsContext;
+import io.pivotal.pal.wehaul.jdbc.QueryStatsRecorder;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the statements issued by each public service method, as {@code service} scoped query stats named
+ * like {@code RentalService.dropOff}. Runs inside {@link ConflictRetryAspect}, so each attempt is recorded on
+ * its own.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(name = "wehaul.query-stats.enabled", matchIfMissing = true)
+public class QueryStatsAspect implements Ordered {
+
+    private final QueryStatsRecorder queryStatsRecorder;
+
+    public QueryStatsAspect(QueryStatsRecorder queryStatsRecorder) {
+        this.queryStatsRecorder = queryStatsRecorder;
+    }
+
+    @Around("within(@org.springframework.stereotype.Service *) && execution(public * *(..))")
+    public Object count(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." +
+            joinPoint.getSignature().getName();
+        QueryStats stats = new QueryStats();
+        try (QueryStatsContext.Scope ignored = QueryStatsContext.begin(stats)) {
+            return joinPoint.proceed();
+        } finally {
+            queryStatsRecorder.record("service", method, stats);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+}
@@ -1,95 +1,253 @@
 package io.pivotal.pal.wehaul.service;
 
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.pivotal.pal.wehaul.domain.Rental;
 import io.pivotal.pal.wehaul.domain.Truck;
 import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.domain.TruckStatusChangedEvent;
 import io.pivotal.pal.wehaul.repository.RentalRepository;
 import io.pivotal.pal.wehaul.repository.TruckRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 public class RentalService {
 
+    // Concurrent callers each pick a random truck out of this many candidates,
+    // so they rarely contend for the same row.
+    private static final int ALLOCATION_WINDOW = 32;
+    private static final int MAX_ALLOCATION_ATTEMPTS = 3;
+
     private final RentalRepository rentalRepository;
     private final TruckRepository truckRepository;
+    private final TruckStatusIndex truckStatusIndex;
+    private final OdometerAccumulator odometerAccumulator;
+    private final ReservationSweeper reservationSweeper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Counter noTrucksAvailableCounter;
 
     public RentalService(RentalRepository rentalRepository,
-                         TruckRepository truckRepository) {
+                         TruckRepository truckRepository,
+                         TruckStatusIndex truckStatusIndex,
+                         OdometerAccumulator odometerAccumulator,
+                         ReservationSweeper reservationSweeper,
+                         ApplicationEventPublisher eventPublisher,
+                         MeterRegistry meterRegistry) {
         this.rentalRepository = rentalRepository;
         this.truckRepository = truckRepository;
+        this.truckStatusIndex = truckStatusIndex;
+        this.odometerAccumulator = odometerAccumulator;
+        this.reservationSweeper = reservationSweeper;
+        this.eventPublisher = eventPublisher;
+        this.noTrucksAvailableCounter = Counter.builder("wehaul.rentals.unavailable")
+            .description("Rentals refused because no truck was rentable")
+            .register(meterRegistry);
     }
 
+    @Timed(value = "wehaul.rentals", histogram = true)
+    @RetryOnConflict
     @Transactional
     public Rental createRental(String customerName) {
 
-        Truck truck = truckRepository.findTop1ByStatus(TruckStatus.RENTABLE);
-        if (truck == null) {
-            throw new IllegalStateException("No trucks available to rent");
-        }
-
-        truck.setStatus(TruckStatus.RESERVED);
-        truckRepository.save(truck);
+        String vin = reserveRentableTruck();
 
-        Rental rental = new Rental(customerName, truck.getVin());
-        return rentalRepository.save(rental);
+        Rental rental = new Rental(customerName, vin);
+        Rental savedRental = rentalRepository.save(rental);
+        reservationSweeper.track(rental);
+        return savedRental;
     }
 
+    @Timed(value = "wehaul.rentals", histogram = true)
+    @RetryOnConflict
     @Transactional
     public void pickUp(UUID confirmationNumber) {
-        Rental rental = rentalRepository.findOne(confirmationNumber);
-        if (rental == null) {
-            throw new IllegalArgumentException(String.format("No rental found for id=%s", confirmationNumber));
-        }
-
-        Truck truck = truckRepository.findOne(rental.getTruckVin());
+        Rental rental = findExistingRental(confirmationNumber);
 
-        if (rental.getDistanceTraveled() != null) {
+        if (rentalRepository.markPickedUp(confirmationNumber) != 1) {
+            if (rental.isExpired()) {
+                throw new IllegalStateException("Rental reservation has expired");
+            }
             throw new IllegalStateException("Rental has already been picked up");
         }
 
-        rental.setDistanceTraveled(0);
-        rentalRepository.save(rental);
-
-        truck.setStatus(TruckStatus.RENTED);
-        truckRepository.save(truck);
+        String vin = rental.getTruckVin();
+        if (truckRepository.updateStatus(vin, TruckStatus.RESERVED, TruckStatus.RENTED) != 1) {
+            Truck truck = truckRepository.findOne(vin);
+            throw new IllegalStateException(
+                String.format("Cannot pick up truck while truck is %s", truck.getStatus())
+            );
+        }
+        eventPublisher.publishEvent(new TruckStatusChangedEvent(vin, TruckStatus.RESERVED, TruckStatus.RENTED));
     }
 
+    @Timed(value = "wehaul.rentals", histogram = true)
+    @RetryOnConflict
     @Transactional
     public void dropOff(UUID confirmationNumber, int distanceTraveled) {
+        Rental rental = findExistingRental(confirmationNumber);
+
+        if (rentalRepository.markDroppedOff(confirmationNumber, distanceTraveled) != 1) {
+            if (rental.getDistanceTraveled() == null) {
+                throw new IllegalStateException("Cannot drop off before picking up rental");
+            }
+            throw new IllegalStateException("Rental is already dropped off");
+        }
+
+        String vin = rental.getTruckVin();
+        int updated;
+        if (odometerAccumulator.isBuffered()) {
+            updated = truckRepository.updateStatus(vin, TruckStatus.RENTED, TruckStatus.RENTABLE);
+        } else {
+            updated = truckRepository.updateStatusAndAddDistance(
+                vin,
+                TruckStatus.RENTED,
+                TruckStatus.RENTABLE,
+                distanceTraveled
+            );
+        }
+        if (updated != 1) {
+            Truck truck = truckRepository.findOne(vin);
+            throw new IllegalStateException(
+                String.format("Cannot dropOff truck while truck is %s", truck.getStatus())
+            );
+        }
+        if (odometerAccumulator.isBuffered()) {
+            odometerAccumulator.add(vin, distanceTraveled);
+        }
+
+        eventPublisher.publishEvent(new TruckStatusChangedEvent(vin, TruckStatus.RENTED, TruckStatus.RENTABLE));
+    }
+
+    private Rental findExistingRental(UUID confirmationNumber) {
         Rental rental = rentalRepository.findOne(confirmationNumber);
         if (rental == null) {
             throw new IllegalArgumentException(String.format("No rental found for id=%s", confirmationNumber));
         }
+        return rental;
+    }
 
-        if (rental.getDistanceTraveled() == null) {
-            throw new IllegalStateException("Cannot drop off before picking up rental");
+    private String reserveRentableTruck() {
+        for (int attempt = 0; attempt < MAX_ALLOCATION_ATTEMPTS; attempt++) {
+            String vin = truckStatusIndex.claimRentable();
+            if (vin == null) {
+                break;
+            }
+            try {
+                if (reserve(vin)) {
+                    return vin;
+                }
+            } catch (RuntimeException e) {
+                truckStatusIndex.unclaimRentable(vin);
+                throw e;
+            }
         }
-        if (rental.getDistanceTraveled() != 0) {
-            throw new IllegalStateException("Rental is already dropped off");
-        }
-        rental.setDistanceTraveled(distanceTraveled);
 
-        Truck truck = truckRepository.findOne(rental.getTruckVin());
-        if (truck.getStatus() != TruckStatus.RENTED) {
-            throw new IllegalStateException(
-                String.format("Cannot dropOff truck while truck is %s", truck.getStatus())
+        // The index is empty or stale, fall back to the database
+        for (int attempt = 0; attempt < MAX_ALLOCATION_ATTEMPTS; attempt++) {
+            List<String> candidates = new ArrayList<>(
+                truckRepository.findVinsByStatus(TruckStatus.RENTABLE, new PageRequest(0, ALLOCATION_WINDOW))
             );
+            if (candidates.isEmpty()) {
+                break;
+            }
+
+            Collections.shuffle(candidates, ThreadLocalRandom.current());
+            for (String vin : candidates) {
+                if (reserve(vin)) {
+                    return vin;
+                }
+            }
         }
-        truck.setStatus(TruckStatus.RENTABLE);
-        truck.setOdometerReading(truck.getOdometerReading() + distanceTraveled);
+        noTrucksAvailableCounter.increment();
+        throw new IllegalStateException("No trucks available to rent");
+    }
 
-        truckRepository.save(truck);
-        rentalRepository.save(rental);
+    private boolean reserve(String vin) {
+        if (truckRepository.updateStatus(vin, TruckStatus.RENTABLE, TruckStatus.RESERVED) != 1) {
+            return false;
+        }
+        eventPublisher.publishEvent(new TruckStatusChangedEvent(vin, TruckStatus.RENTABLE, TruckStatus.RESERVED));
+        return true;
     }
 
+    @Timed(value = "wehaul.rentals", histogram = true)
+    @Transactional(readOnly = true)
     public Collection<Rental> findAll() {
         Collection<Rental> rentals = new ArrayList<>();
         rentalRepository.findAll().forEach(rentals::add);
         return rentals;
     }
+
+    /**
+     * @param afterConfirmationNumber the last confirmation number of the previous page, or null for the first page
+     */
+    @Timed(value = "wehaul.rentals", histogram = true)
+    @Transactional(readOnly = true)
+    public List<Rental> findPage(UUID afterConfirmationNumber, int limit) {
+        PageRequest pageRequest = new PageRequest(0, limit);
+        if (afterConfirmationNumber == null) {
+            return rentalRepository.findAllByOrderByConfirmationNumberAsc(pageRequest);
+        }
+        return rentalRepository.findByConfirmationNumberGreaterThanOrderByConfirmationNumberAsc(
+            afterConfirmationNumber,
+            pageRequest
+        );
+    }
+
+    /**
+     * Pages through one customer's rentals in confirmation number order.
+     *
+     * @param afterConfirmationNumber the last confirmation number of the previous page, or null for the first page
+     */
+    @Timed(value = "wehaul.rentals", histogram = true)
+    @Transactional(readOnly = true)
+    public List<Rental> findPageByCustomerName(String customerName, UUID afterConfirmationNumber, int limit) {
+        PageRequest pageRequest = new PageRequest(0, limit);
+        if (afterConfirmationNumber == null) {
+            return rentalRepository.findByCustomerNameOrderByConfirmationNumberAsc(customerName, pageRequest);
+        }
+        return rentalRepository.findByCustomerNameAndConfirmationNumberGreaterThanOrderByConfirmationNumberAsc(
+            customerName,
+            afterConfirmationNumber,
+            pageRequest
+        );
+    }
+
+    /**
+     * Pages through the rentals of every customer whose name starts with the prefix, ordered by name and then
+     * confirmation number. Names compare character by character, not by locale, so the index supplies the order.
+     *
+     * @param afterConfirmationNumber the last confirmation number of the previous page, or null for the first page
+     */
+    @Timed(value = "wehaul.rentals", histogram = true)
+    @Transactional(readOnly = true)
+    public List<Rental> findPageByCustomerNamePrefix(String prefix, UUID afterConfirmationNumber, int limit) {
+        if (prefix.isEmpty()) {
+            throw new IllegalArgumentException("Customer name prefix cannot be empty");
+        }
+        String pattern = prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+        PageRequest pageRequest = new PageRequest(0, limit);
+        if (afterConfirmationNumber == null) {
+            return rentalRepository.findByCustomerNamePattern(pattern, pageRequest);
+        }
+        // Pages are ordered by name first, so the next one starts from the name of the last rental seen
+        Rental after = findExistingRental(afterConfirmationNumber);
+        return rentalRepository.findByCustomerNamePatternAfter(
+            pattern,
+            after.getCustomerName(),
+            afterConfirmationNumber,
+            pageRequest
+        );
+    }
 }
@@ -0,0 +1,168 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.pivotal.pal.wehaul.domain.Rental;
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.domain.TruckStatusChangedEvent;
+import io.pivotal.pal.wehaul.repository.FleetBatchRepository;
+import io.pivotal.pal.wehaul.repository.RentalRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Releases trucks whose reservations were not picked up within {@code wehaul.reservations.ttl-ms}.
+ * <p>
+ * Outstanding reservations wait in memory ordered by expiry, so a sweep only touches the rentals that are due.
+ * They are loaded from the database at startup and added as rentals commit.
+ */
+@Component
+public class ReservationSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationSweeper.class);
+
+    private final FleetBatchRepository fleetBatchRepository;
+    private final RentalRepository rentalRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long ttlMillis;
+    private final int batchSize;
+    private final DelayQueue<PendingReservation> pendingReservations = new DelayQueue<>();
+    private final Timer sweepTimer;
+    private final Timer releaseLagTimer;
+    private final Counter releasedCounter;
+
+    public ReservationSweeper(FleetBatchRepository fleetBatchRepository,
+                              RentalRepository rentalRepository,
+                              ApplicationEventPublisher eventPublisher,
+                              @Value("${wehaul.reservations.ttl-ms:1800000}") long ttlMillis,
+                              @Value("${wehaul.reservations.sweep-batch-size:500}") int batchSize,
+                              MeterRegistry meterRegistry) {
+        this.fleetBatchRepository = fleetBatchRepository;
+        this.rentalRepository = rentalRepository;
+        this.eventPublisher = eventPublisher;
+        this.ttlMillis = ttlMillis;
+        this.batchSize = batchSize;
+        this.sweepTimer = Timer.builder("wehaul.reservations.sweep")
+            .description("Time to expire one batch of reservations")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.releaseLagTimer = Timer.builder("wehaul.reservations.release-lag")
+            .description("Time from a reservation expiring to its truck being released")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.releasedCounter = Counter.builder("wehaul.reservations.released")
+            .description("Trucks released from expired reservations")
+            .register(meterRegistry);
+        Gauge.builder("wehaul.reservations.pending", pendingReservations, DelayQueue::size)
+            .description("Reservations tracked until they expire")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Starts the clock on a new reservation when it commits.
+     */
+    public void track(Rental rental) {
+        AfterCommit.run(() -> add(rental));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        List<Rental> rentals = rentalRepository.findOutstandingReservations();
+        rentals.forEach(this::add);
+        logger.info("Reservation sweeper loaded {} outstanding reservations", rentals.size());
+    }
+
+    /**
+     * Expires every due reservation, a batch at a time. Reservations picked up in the meantime are left alone.
+     *
+     * @return the number of trucks released
+     */
+    @Scheduled(fixedDelayString = "${wehaul.reservations.sweep-interval-ms:1000}")
+    public int sweep() {
+        int releasedTotal = 0;
+        List<PendingReservation> due = new ArrayList<>();
+        while (pendingReservations.drainTo(due, batchSize) > 0) {
+            List<Rental> rentals = new ArrayList<>(due.size());
+            due.forEach(pending -> rentals.add(pending.rental));
+
+            boolean[] released;
+            long start = System.nanoTime();
+            try {
+                released = fleetBatchRepository.expireReservations(rentals);
+            } catch (DataAccessException e) {
+                logger.warn("Could not expire reservations, retrying on the next sweep", e);
+                pendingReservations.addAll(due);
+                return releasedTotal;
+            } finally {
+                sweepTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+
+            long now = System.currentTimeMillis();
+            int releasedCount = 0;
+            for (int i = 0; i < released.length; i++) {
+                if (!released[i]) {
+                    continue;
+                }
+                PendingReservation pending = due.get(i);
+                releaseLagTimer.record(now - pending.expiresAtMillis, TimeUnit.MILLISECONDS);
+                eventPublisher.publishEvent(new TruckStatusChangedEvent(
+                    pending.rental.getTruckVin(),
+                    TruckStatus.RESERVED,
+                    TruckStatus.RENTABLE
+                ));
+                releasedCount++;
+            }
+            releasedCounter.increment(releasedCount);
+            releasedTotal += releasedCount;
+            due.clear();
+        }
+        if (releasedTotal > 0) {
+            logger.debug("Released {} trucks from expired reservations", releasedTotal);
+        }
+        return releasedTotal;
+    }
+
+    int getPendingCount() {
+        return pendingReservations.size();
+    }
+
+    private void add(Rental rental) {
+        pendingReservations.add(new PendingReservation(rental, rental.getReservedAt().getTime() + ttlMillis));
+    }
+
+    private static class PendingReservation implements Delayed {
+
+        private final Rental rental;
+        private final long expiresAtMillis;
+
+        private PendingReservation(Rental rental, long expiresAtMillis) {
+            this.rental = rental;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAtMillis, ((PendingReservation) other).expiresAtMillis);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package io.pivotal.pal.wehaul.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Re-runs a transactional method when it loses an optimistic-locking race, backing off exponentially between
+ * attempts. The whole transaction is retried, so the method must not have side effects outside it.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+
+    int maxAttempts() default 3;
+
+    long initialBackoffMillis() default 10;
+
+    long maxBackoffMillis() default 200;
+}
@@ -0,0 +1,102 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.domain.TruckStatusChangedEvent;
+import io.pivotal.pal.wehaul.repository.TruckRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of trucks in each {@link TruckStatus}, kept in memory so that reading it costs no query.
+ * <p>
+ * The counts follow committed {@link TruckStatusChangedEvent}s and are corrected from the database at startup
+ * and on a schedule. Unlike {@link TruckStatusIndex}, trucks claimed for allocation still count as RENTABLE.
+ */
+@Component
+public class TruckStatusCounters {
+
+    private static final Logger logger = LoggerFactory.getLogger(TruckStatusCounters.class);
+
+    private final TruckRepository truckRepository;
+    private final Map<TruckStatus, LongAdder> counters = new EnumMap<>(TruckStatus.class);
+
+    public TruckStatusCounters(TruckRepository truckRepository) {
+        this.truckRepository = truckRepository;
+        for (TruckStatus status : TruckStatus.values()) {
+            counters.put(status, new LongAdder());
+        }
+    }
+
+    public long count(TruckStatus status) {
+        return Math.max(0, counters.get(status).sum());
+    }
+
+    public Map<TruckStatus, Long> counts() {
+        Map<TruckStatus, Long> counts = new EnumMap<>(TruckStatus.class);
+        for (TruckStatus status : TruckStatus.values()) {
+            counts.put(status, count(status));
+        }
+        return counts;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(TruckStatusChangedEvent event) {
+        if (event.getPreviousStatus() != null) {
+            counters.get(event.getPreviousStatus()).decrement();
+        }
+        counters.get(event.getStatus()).increment();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        reconcile();
+        logger.info("Truck status counters seeded: {}", counts());
+    }
+
+    @Scheduled(
+        initialDelayString = "${wehaul.truck-status-counters.reconcile-interval-ms:60000}",
+        fixedDelayString = "${wehaul.truck-status-counters.reconcile-interval-ms:60000}"
+    )
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    /**
+     * Brings the counts in line with the truck table.
+     * A transition committed while this runs may be counted twice or not at all until the next pass.
+     *
+     * @return the total amount by which the counts were off
+     */
+    public long reconcile() {
+        Map<TruckStatus, Long> actual = new EnumMap<>(TruckStatus.class);
+        for (Object[] row : truckRepository.countByStatus()) {
+            if (row[0] != null) {
+                actual.put((TruckStatus) row[0], (Long) row[1]);
+            }
+        }
+
+        long drift = 0;
+        for (TruckStatus status : TruckStatus.values()) {
+            LongAdder counter = counters.get(status);
+            long difference = actual.getOrDefault(status, 0L) - counter.sum();
+            if (difference != 0) {
+                counter.add(difference);
+                drift += Math.abs(difference);
+            }
+        }
+        if (drift > 0) {
+            logger.debug("Truck status counters corrected by {}", drift);
+        }
+        return drift;
+    }
+}
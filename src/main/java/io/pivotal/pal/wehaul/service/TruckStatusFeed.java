@@ -0,0 +1,352 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.domain.TruckStatusChange;
+import io.pivotal.pal.wehaul.domain.TruckStatusChangedEvent;
+import io.pivotal.pal.wehaul.domain.TruckStatusSnapshot;
+import io.pivotal.pal.wehaul.repository.TruckRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes committed truck status changes to subscribers, such as dispatch dashboards.
+ * <p>
+ * A subscriber first gets a snapshot of every truck's status, then every change after it in sequence order.
+ * One that reconnects with the resume token of the last event it saw gets only what it missed, as long as that
+ * is still in the last {@code wehaul.status-feed.history-size} changes and the application has not restarted.
+ * <p>
+ * Publishing never waits on a subscriber. Each has its own buffer in which changes to the same truck are
+ * merged; one that falls more than {@code wehaul.status-feed.max-buffered} trucks behind has its buffer
+ * dropped and is sent a fresh snapshot instead.
+ * <p>
+ * Sends block, each on one of {@code wehaul.status-feed.sender-threads}. A subscriber stuck in a send for more
+ * than {@code wehaul.status-feed.send-timeout-ms} is dropped, and another sender thread stands in for the stuck
+ * one until its send returns, so subscribers that stop reading cannot hold up everyone else.
+ */
+@Component
+public class TruckStatusFeed {
+
+    private static final Logger logger = LoggerFactory.getLogger(TruckStatusFeed.class);
+
+    /**
+     * Receives feed events, on one of the feed's sender threads. Throwing ends the subscription, and so does
+     * taking longer than the send timeout.
+     */
+    public interface Sink {
+
+        void snapshot(TruckStatusSnapshot snapshot) throws IOException;
+
+        void change(TruckStatusChange change) throws IOException;
+    }
+
+    private final TruckRepository truckRepository;
+    // Sequence numbers start over on restart, so tokens from an earlier run must not be resumed from
+    private final long epoch = System.currentTimeMillis();
+    private final int maxBuffered;
+    private final long sendTimeoutMillis;
+    private final TruckStatusChange[] history;
+    // Resized under its own monitor while stalled sends hold on to threads
+    private final ThreadPoolExecutor senders;
+    private final Counter resyncCounter;
+    private final Counter stalledCounter;
+
+    private final ConcurrentMap<String, TruckStatus> statusByVin = new ConcurrentHashMap<>();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final Object publishLock = new Object();
+    // guarded by publishLock
+    private long sequence;
+
+    public TruckStatusFeed(TruckRepository truckRepository,
+                           @Value("${wehaul.status-feed.history-size:10000}") int historySize,
+                           @Value("${wehaul.status-feed.max-buffered:1000}") int maxBuffered,
+                           @Value("${wehaul.status-feed.sender-threads:4}") int senderThreads,
+                           @Value("${wehaul.status-feed.send-timeout-ms:10000}") long sendTimeoutMillis,
+                           MeterRegistry meterRegistry) {
+        this.truckRepository = truckRepository;
+        this.maxBuffered = maxBuffered;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        this.history = new TruckStatusChange[historySize];
+        this.senders = new ThreadPoolExecutor(
+            senderThreads,
+            senderThreads,
+            0,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "wehaul-status-feed");
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+        this.resyncCounter = Counter.builder("wehaul.status-feed.resyncs")
+            .description("Snapshots resent to subscribers that fell too far behind")
+            .register(meterRegistry);
+        this.stalledCounter = Counter.builder("wehaul.status-feed.stalled")
+            .description("Subscribers dropped for taking too long to accept an event")
+            .register(meterRegistry);
+        Gauge.builder("wehaul.status-feed.subscribers", subscriptions, Set::size)
+            .description("Connected status feed subscribers")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        for (Object[] row : truckRepository.findAllVinsAndStatuses()) {
+            if (row[1] != null) {
+                statusByVin.putIfAbsent((String) row[0], (TruckStatus) row[1]);
+            }
+        }
+        logger.info("Truck status feed loaded {} trucks", statusByVin.size());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(TruckStatusChangedEvent event) {
+        synchronized (publishLock) {
+            TruckStatusChange change = new TruckStatusChange(
+                ++sequence,
+                event.getVin(),
+                event.getPreviousStatus(),
+                event.getStatus()
+            );
+            statusByVin.put(change.getVin(), change.getStatus());
+            history[(int) (change.getSequence() % history.length)] = change;
+            for (Subscription subscription : subscriptions) {
+                subscription.offer(change);
+            }
+        }
+    }
+
+    public String resumeToken(long sequence) {
+        return epoch + ":" + sequence;
+    }
+
+    /**
+     * @param resumeToken from {@link #resumeToken} for the last event the subscriber saw, or null to start from
+     *                    a snapshot
+     */
+    public Subscription subscribe(String resumeToken, Sink sink) {
+        Long lastSequence = parseResumeToken(resumeToken);
+        Subscription subscription = new Subscription(sink);
+        synchronized (publishLock) {
+            long oldestRetained = Math.max(1, sequence - history.length + 1);
+            if (lastSequence != null && lastSequence >= oldestRetained - 1 && lastSequence <= sequence) {
+                for (long missed = lastSequence + 1; missed <= sequence; missed++) {
+                    subscription.offer(history[(int) (missed % history.length)]);
+                }
+            } else {
+                subscription.resync();
+            }
+            subscriptions.add(subscription);
+        }
+        subscription.schedule();
+        return subscription;
+    }
+
+    @Scheduled(fixedDelayString = "${wehaul.status-feed.stall-check-interval-ms:1000}")
+    public void dropStalledSubscribers() {
+        long now = System.currentTimeMillis();
+        for (Subscription subscription : subscriptions) {
+            subscription.dropIfStalled(now);
+        }
+    }
+
+    int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    private Long parseResumeToken(String resumeToken) {
+        if (resumeToken == null) {
+            return null;
+        }
+        String[] parts = resumeToken.split(":");
+        try {
+            if (parts.length != 2 || Long.parseLong(parts[0]) != epoch) {
+                return null;
+            }
+            return Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Changes after the returned sequence are all still to be delivered to the subscriber
+    private TruckStatusSnapshot snapshot() {
+        long snapshotSequence;
+        synchronized (publishLock) {
+            snapshotSequence = sequence;
+        }
+        // May already include some later changes; replaying those afterwards ends in the same state
+        return new TruckStatusSnapshot(snapshotSequence, new HashMap<>(statusByVin));
+    }
+
+    private void addSender() {
+        synchronized (senders) {
+            senders.setMaximumPoolSize(senders.getMaximumPoolSize() + 1);
+            senders.setCorePoolSize(senders.getCorePoolSize() + 1);
+        }
+    }
+
+    private void removeSender() {
+        synchronized (senders) {
+            senders.setCorePoolSize(senders.getCorePoolSize() - 1);
+            senders.setMaximumPoolSize(senders.getMaximumPoolSize() - 1);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriptions.clear();
+        senders.shutdownNow();
+    }
+
+    public class Subscription {
+
+        private final Sink sink;
+        // guarded by this
+        private LinkedHashMap<String, TruckStatusChange> buffered = new LinkedHashMap<>();
+        private boolean needsSnapshot;
+        private boolean scheduled;
+        private boolean cancelled;
+        // Dropped mid-send, with another sender standing in until the send returns
+        private boolean stalled;
+        // When the send in progress started, or 0 between sends
+        private volatile long sendStartedAt;
+
+        private Subscription(Sink sink) {
+            this.sink = sink;
+        }
+
+        public void cancel() {
+            subscriptions.remove(this);
+            synchronized (this) {
+                cancelled = true;
+                buffered.clear();
+            }
+        }
+
+        private void offer(TruckStatusChange change) {
+            synchronized (this) {
+                if (cancelled || needsSnapshot) {
+                    return;
+                }
+                TruckStatusChange merged = buffered.remove(change.getVin());
+                if (merged != null) {
+                    // Keep where the truck came from before the merged changes
+                    change = new TruckStatusChange(
+                        change.getSequence(),
+                        change.getVin(),
+                        merged.getPreviousStatus(),
+                        change.getStatus()
+                    );
+                }
+                buffered.put(change.getVin(), change);
+                if (buffered.size() > maxBuffered) {
+                    resync();
+                    resyncCounter.increment();
+                }
+            }
+            schedule();
+        }
+
+        private synchronized void resync() {
+            buffered.clear();
+            needsSnapshot = true;
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (scheduled || cancelled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            senders.execute(this::drain);
+        }
+
+        private void dropIfStalled(long now) {
+            long startedAt;
+            synchronized (this) {
+                startedAt = sendStartedAt;
+                if (cancelled || !scheduled || startedAt == 0 || now - startedAt <= sendTimeoutMillis) {
+                    return;
+                }
+                stalled = true;
+            }
+            logger.info("Dropping status feed subscriber stuck in a send for {} ms", now - startedAt);
+            cancel();
+            stalledCounter.increment();
+            addSender();
+        }
+
+        private synchronized void finishDrain() {
+            scheduled = false;
+            if (stalled) {
+                stalled = false;
+                removeSender();
+            }
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    boolean sendSnapshot;
+                    List<TruckStatusChange> changes;
+                    synchronized (this) {
+                        if (cancelled || (!needsSnapshot && buffered.isEmpty())) {
+                            finishDrain();
+                            return;
+                        }
+                        sendSnapshot = needsSnapshot;
+                        needsSnapshot = false;
+                        changes = new ArrayList<>(buffered.values());
+                        buffered = new LinkedHashMap<>();
+                    }
+
+                    long after = 0;
+                    if (sendSnapshot) {
+                        TruckStatusSnapshot snapshot = snapshot();
+                        sendStartedAt = System.currentTimeMillis();
+                        sink.snapshot(snapshot);
+                        after = snapshot.getSequence();
+                    }
+                    for (TruckStatusChange change : changes) {
+                        if (change.getSequence() > after) {
+                            sendStartedAt = System.currentTimeMillis();
+                            sink.change(change);
+                        }
+                    }
+                    sendStartedAt = 0;
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Status feed subscriber went away", e);
+                sendStartedAt = 0;
+                cancel();
+                finishDrain();
+            }
+        }
+    }
+}
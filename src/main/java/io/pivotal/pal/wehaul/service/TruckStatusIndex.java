@@ -0,0 +1,152 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.domain.TruckStatusChangedEvent;
+import io.pivotal.pal.wehaul.repository.TruckRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * In-process view of which trucks are in which {@link TruckStatus}, so that allocation does not need a query.
+ * <p>
+ * The index follows committed {@link TruckStatusChangedEvent}s and is rebuilt from the database at startup and
+ * on a schedule. It is only ever a hint: callers must still guard every transition in the database.
+ */
+@Component
+public class TruckStatusIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(TruckStatusIndex.class);
+
+    private final TruckRepository truckRepository;
+    private final Map<TruckStatus, Set<String>> vinsByStatus = new EnumMap<>(TruckStatus.class);
+    // May hold VINs that have since left RENTABLE; those are skipped when claiming
+    private final Queue<String> rentableQueue = new ConcurrentLinkedQueue<>();
+
+    public TruckStatusIndex(TruckRepository truckRepository) {
+        this.truckRepository = truckRepository;
+        for (TruckStatus status : TruckStatus.values()) {
+            vinsByStatus.put(status, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * Removes a VIN from the rentable set so that no other caller is handed the same truck.
+     *
+     * @return a VIN believed to be RENTABLE, or null when the index has none
+     */
+    public String claimRentable() {
+        Set<String> rentable = vinsByStatus.get(TruckStatus.RENTABLE);
+        String vin;
+        while ((vin = rentableQueue.poll()) != null) {
+            if (rentable.remove(vin)) {
+                return vin;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Puts back a VIN handed out by {@link #claimRentable()} that was never reserved.
+     */
+    public void unclaimRentable(String vin) {
+        add(TruckStatus.RENTABLE, vin);
+    }
+
+    public int count(TruckStatus status) {
+        return vinsByStatus.get(status).size();
+    }
+
+    public Set<String> vins(TruckStatus status) {
+        return Collections.unmodifiableSet(vinsByStatus.get(status));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(TruckStatusChangedEvent event) {
+        if (event.getPreviousStatus() != null) {
+            vinsByStatus.get(event.getPreviousStatus()).remove(event.getVin());
+        }
+        add(event.getStatus(), event.getVin());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onStatusChangeRolledBack(TruckStatusChangedEvent event) {
+        if (event.getPreviousStatus() != null) {
+            add(event.getPreviousStatus(), event.getVin());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        int drift = reconcile();
+        logger.info("Truck status index built with {} entries", drift);
+    }
+
+    @Scheduled(
+        initialDelayString = "${wehaul.truck-status-index.reconcile-interval-ms:300000}",
+        fixedDelayString = "${wehaul.truck-status-index.reconcile-interval-ms:300000}"
+    )
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    /**
+     * Brings the index in line with the truck table.
+     * Transitions committed while this runs may be missed until the next pass.
+     *
+     * @return the number of entries that had to be added or removed
+     */
+    public int reconcile() {
+        Map<TruckStatus, Set<String>> actual = new EnumMap<>(TruckStatus.class);
+        for (TruckStatus status : TruckStatus.values()) {
+            actual.put(status, new HashSet<>());
+        }
+        for (Object[] row : truckRepository.findAllVinsAndStatuses()) {
+            if (row[1] != null) {
+                actual.get((TruckStatus) row[1]).add((String) row[0]);
+            }
+        }
+
+        int drift = 0;
+        for (TruckStatus status : TruckStatus.values()) {
+            Set<String> indexed = vinsByStatus.get(status);
+            Set<String> expected = actual.get(status);
+            for (String vin : indexed) {
+                if (!expected.contains(vin) && indexed.remove(vin)) {
+                    drift++;
+                }
+            }
+            for (String vin : expected) {
+                if (add(status, vin)) {
+                    drift++;
+                }
+            }
+        }
+        if (drift > 0) {
+            logger.debug("Truck status index reconciled {} entries", drift);
+        }
+        return drift;
+    }
+
+    private boolean add(TruckStatus status, String vin) {
+        boolean added = vinsByStatus.get(status).add(vin);
+        if (added && status == TruckStatus.RENTABLE) {
+            rentableQueue.offer(vin);
+        }
+        return added;
+    }
+}
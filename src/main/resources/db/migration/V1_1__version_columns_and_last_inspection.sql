@@ -0,0 +1,16 @@
+-- Optimistic locking versions, starting from 0 on rows written before they existed
+ALTER TABLE truck ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE rental ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+
+-- Odometer reading at each truck's most recent inspection, filled in from the existing history
+CREATE TABLE last_truck_inspection (
+  truck_vin        VARCHAR(255) NOT NULL,
+  odometer_reading INTEGER,
+  PRIMARY KEY (truck_vin)
+);
+
+INSERT INTO last_truck_inspection (truck_vin, odometer_reading)
+SELECT truck_vin, MAX(odometer_reading)
+FROM truck_inspection
+WHERE truck_vin IS NOT NULL
+GROUP BY truck_vin;
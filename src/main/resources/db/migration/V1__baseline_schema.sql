@@ -0,0 +1,25 @@
+-- Schema as previously generated by hibernate.ddl-auto=update. A database created that way is baselined at
+-- version 0, so these only create what is missing and V1_1 brings it up to date.
+
+CREATE TABLE IF NOT EXISTS truck (
+  vin              VARCHAR(255) NOT NULL,
+  status           VARCHAR(255),
+  odometer_reading INTEGER,
+  PRIMARY KEY (vin)
+);
+
+CREATE TABLE IF NOT EXISTS rental (
+  confirmation_number UUID         NOT NULL,
+  customer_name       VARCHAR(255) NOT NULL,
+  truck_vin           VARCHAR(255),
+  distance_traveled   INTEGER,
+  PRIMARY KEY (confirmation_number)
+);
+
+CREATE TABLE IF NOT EXISTS truck_inspection (
+  id               UUID NOT NULL,
+  truck_vin        VARCHAR(255),
+  odometer_reading INTEGER,
+  notes            VARCHAR(255),
+  PRIMARY KEY (id)
+);
@@ -0,0 +1,8 @@
+-- Rentable truck allocation and status counts
+CREATE INDEX idx_truck_status ON truck (status);
+
+-- Rentals by truck
+CREATE INDEX idx_rental_truck_vin ON rental (truck_vin);
+
+-- Latest inspection per truck, and the truck-since-inspection rebuild
+CREATE INDEX idx_truck_inspection_vin_odometer ON truck_inspection (truck_vin, odometer_reading DESC);
@@ -0,0 +1,9 @@
+-- Reservations not picked up in time are released back to the fleet
+ALTER TABLE rental ADD COLUMN reserved_at TIMESTAMP;
+ALTER TABLE rental ADD COLUMN expired BOOLEAN DEFAULT FALSE NOT NULL;
+
+-- Reservations outstanding before this column count as made now, so they expire a ttl from now rather than never
+UPDATE rental SET reserved_at = CURRENT_TIMESTAMP WHERE distance_traveled IS NULL;
+
+-- Outstanding reservations, loaded into the sweeper at startup
+CREATE INDEX idx_rental_reserved_at ON rental (reserved_at);
@@ -0,0 +1,2 @@
+-- Rentals by customer, exact and prefix matches, paged by confirmation number
+CREATE INDEX idx_rental_customer_name ON rental (customer_name, confirmation_number);
@@ -0,0 +1,7 @@
+-- Older inspections of each truck, moved out of truck_inspection into one compressed blob per truck
+CREATE TABLE truck_inspection_archive (
+  truck_vin        VARCHAR(255) NOT NULL,
+  inspection_count INTEGER      NOT NULL,
+  data             BYTEA        NOT NULL,
+  PRIMARY KEY (truck_vin)
+);
@@ -0,0 +1,8 @@
+-- Written by the primary on a schedule; how stale a replica's copy is tells how far behind it is
+CREATE TABLE replication_heartbeat (
+  id          INTEGER NOT NULL,
+  beat_millis BIGINT  NOT NULL,
+  PRIMARY KEY (id)
+);
+
+INSERT INTO replication_heartbeat (id, beat_millis) VALUES (1, 0);
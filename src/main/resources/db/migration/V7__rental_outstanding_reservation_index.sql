@@ -0,0 +1,4 @@
+-- Every rental reserved since V3 has reserved_at, as do those outstanding at the time, so an index on it cannot
+-- narrow the sweeper's startup load. Outstanding reservations are the few rentals neither expired nor picked up.
+DROP INDEX idx_rental_reserved_at;
+CREATE INDEX idx_rental_outstanding ON rental (expired, distance_traveled);
@@ -0,0 +1,17 @@
+-- Archives split into bounded segments per truck, so serving a page or archiving more inspections decodes and
+-- rewrites one segment rather than the truck's whole history. An id range lets a page cursor find its segment.
+CREATE TABLE truck_inspection_archive_segment (
+  truck_vin        VARCHAR(255) NOT NULL,
+  segment          INTEGER      NOT NULL,
+  inspection_count INTEGER      NOT NULL,
+  min_id           UUID,
+  max_id           UUID,
+  data             BYTEA        NOT NULL,
+  PRIMARY KEY (truck_vin, segment)
+);
+
+-- Existing archives become each truck's first segment. Without an id range, a cursor search decodes them.
+INSERT INTO truck_inspection_archive_segment (truck_vin, segment, inspection_count, data)
+SELECT truck_vin, 0, inspection_count, data FROM truck_inspection_archive;
+
+DROP TABLE truck_inspection_archive;
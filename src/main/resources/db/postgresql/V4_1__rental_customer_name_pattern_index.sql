@@ -0,0 +1,2 @@
+-- Outside the C locale a plain index cannot serve LIKE 'prefix%', so prefix matches need the pattern operators
+CREATE INDEX idx_rental_customer_name_pattern ON rental (customer_name varchar_pattern_ops);
@@ -0,0 +1,6 @@
+-- The pattern index matched prefixes but could not supply ORDER BY customer_name, confirmation_number under
+-- the database collation, so every prefix match was sorted before the limit. In the C collation the plain
+-- (customer_name, confirmation_number) index, rebuilt by this change, serves the match, the order and the
+-- keyset comparison alike.
+ALTER TABLE rental ALTER COLUMN customer_name TYPE VARCHAR(255) COLLATE "C";
+DROP INDEX idx_rental_customer_name_pattern;
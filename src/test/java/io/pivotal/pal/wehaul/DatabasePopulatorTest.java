@@ -0,0 +1,41 @@
+package io.pivotal.pal.wehaul;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DirtiesContext
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class DatabasePopulatorTest {
+
+    @Autowired
+    private DatabasePopulator databasePopulator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void populateDatabase_onRestart_keepsTrucksThatHaveChanged() {
+        jdbcTemplate.update("UPDATE truck SET status = 'RESERVED', version = version + 1 WHERE vin = 'test-0002'");
+        Map<String, Object> changed = findTruck("test-0002");
+
+        // As on a restart against the same database
+        databasePopulator.populateDatabase();
+
+        assertThat(findTruck("test-0002")).isEqualTo(changed);
+        assertThat(findTruck("test-0002").get("STATUS")).isEqualTo("RESERVED");
+    }
+
+    private Map<String, Object> findTruck(String vin) {
+        return jdbcTemplate.queryForMap("SELECT status, odometer_reading, version FROM truck WHERE vin = ?", vin);
+    }
+}
@@ -0,0 +1,121 @@
+package io.pivotal.pal.wehaul.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class BlockingCallExecutorTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BlockingCallExecutor blockingCallExecutor;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        blockingCallExecutor.shutdown();
+    }
+
+    @Test
+    public void submit_whenSync_runsOnCallingThread() throws Exception {
+        blockingCallExecutor = executor(false, 1, 1, 1, new MockEnvironment());
+
+        CompletableFuture<String> result = blockingCallExecutor.submit("test", () -> Thread.currentThread().getName());
+
+        assertThat(result.get()).isEqualTo(Thread.currentThread().getName());
+    }
+
+    @Test
+    public void submit_whenAsync_runsOnPool() throws Exception {
+        blockingCallExecutor = executor(true, 1, 1, 1, new MockEnvironment());
+
+        CompletableFuture<String> result = blockingCallExecutor.submit("test", () -> Thread.currentThread().getName());
+
+        assertThat(result.get(1, TimeUnit.SECONDS)).startsWith("wehaul-blocking-");
+    }
+
+    @Test
+    public void submit_whenCallFails_completesWithOriginalException() {
+        blockingCallExecutor = executor(true, 1, 1, 1, new MockEnvironment());
+
+        CompletableFuture<String> result = blockingCallExecutor.submit("test", () -> {
+            throw new IllegalStateException("some-failure");
+        });
+
+        assertThatExceptionOfType(ExecutionException.class)
+            .isThrownBy(() -> result.get(1, TimeUnit.SECONDS))
+            .withCauseExactlyInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void submit_whenCallThrowsError_completesWithError() {
+        blockingCallExecutor = executor(true, 1, 1, 1, new MockEnvironment());
+
+        CompletableFuture<String> result = blockingCallExecutor.submit("test", () -> {
+            throw new AssertionError("some-error");
+        });
+
+        assertThatExceptionOfType(ExecutionException.class)
+            .isThrownBy(() -> result.get(1, TimeUnit.SECONDS))
+            .withCauseExactlyInstanceOf(AssertionError.class);
+    }
+
+    @Test
+    public void submit_whenEndpointAtCap_rejects() throws Exception {
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty("wehaul.async.endpoints.capped.max-concurrent", "1");
+        blockingCallExecutor = executor(true, 4, 4, 10, environment);
+
+        CompletableFuture<Void> running = blockingCallExecutor.submit("capped", this::awaitRelease);
+
+        assertThatExceptionOfType(ServiceOverloadedException.class)
+            .isThrownBy(() -> blockingCallExecutor.submit("capped", this::awaitRelease))
+            .withMessage("Too many concurrent capped requests");
+        assertThat(meterRegistry.counter("wehaul.requests.rejected", "endpoint", "capped").count()).isEqualTo(1);
+
+        // other endpoints have their own cap
+        blockingCallExecutor.submit("other", () -> "ok").get(1, TimeUnit.SECONDS);
+
+        release.countDown();
+        running.get(1, TimeUnit.SECONDS);
+        assertThat(blockingCallExecutor.submit("capped", () -> "ok").get(1, TimeUnit.SECONDS)).isEqualTo("ok");
+    }
+
+    @Test
+    public void submit_whenQueueFull_rejects() {
+        blockingCallExecutor = executor(true, 1, 1, 10, new MockEnvironment());
+
+        blockingCallExecutor.submit("test", this::awaitRelease);
+        blockingCallExecutor.submit("test", this::awaitRelease);
+
+        assertThatExceptionOfType(ServiceOverloadedException.class)
+            .isThrownBy(() -> blockingCallExecutor.submit("test", this::awaitRelease));
+    }
+
+    private BlockingCallExecutor executor(boolean async,
+                                          int poolSize,
+                                          int queueCapacity,
+                                          int maxConcurrent,
+                                          MockEnvironment environment) {
+        return new BlockingCallExecutor(async, poolSize, queueCapacity, maxConcurrent, environment, meterRegistry);
+    }
+
+    private Void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
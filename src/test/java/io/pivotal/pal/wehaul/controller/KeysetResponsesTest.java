@@ -0,0 +1,102 @@
+package io.pivotal.pal.wehaul.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeysetResponsesTest {
+
+    @Test
+    public void pageSize_defaultsAndClamps() {
+        assertThat(KeysetResponses.pageSize(null)).isEqualTo(100);
+        assertThat(KeysetResponses.pageSize(0)).isEqualTo(1);
+        assertThat(KeysetResponses.pageSize(5000)).isEqualTo(1000);
+    }
+
+    @Test
+    public void page_whenFull_linksToPageAfterLastKey() {
+        UriComponentsBuilder currentRequest =
+            UriComponentsBuilder.fromUriString("http://localhost/trucks?after=test-0000&limit=2&other=kept");
+
+        ResponseEntity<Collection<String>> response = KeysetResponses.page(
+            currentRequest,
+            Arrays.asList("test-0001", "test-0002"),
+            2,
+            Function.identity()
+        );
+
+        assertThat(response.getBody()).containsExactly("test-0001", "test-0002");
+        assertThat(response.getHeaders().getFirst("Link"))
+            .isEqualTo("<http://localhost/trucks?other=kept&after=test-0002&limit=2>; rel=\"next\"");
+    }
+
+    @Test
+    public void page_whenShort_hasNoLink() {
+        ResponseEntity<Collection<String>> response = KeysetResponses.page(
+            UriComponentsBuilder.fromUriString("http://localhost/trucks?limit=2"),
+            Arrays.asList("test-0001"),
+            2,
+            Function.identity()
+        );
+
+        assertThat(response.getHeaders().containsKey("Link")).isFalse();
+    }
+
+    @Test
+    public void ndjson_streamsEveryPage() throws Exception {
+        List<Integer> rows = IntStream.rangeClosed(1, 1001).boxed().collect(Collectors.toList());
+        List<Integer> requestedAfter = new ArrayList<>();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        KeysetResponses.<Integer, Integer>ndjson(
+            new ObjectMapper(),
+            (after, limit) -> {
+                requestedAfter.add(after);
+                return rows.stream()
+                    .filter(row -> after == null || row > after)
+                    .limit(limit)
+                    .collect(Collectors.toList());
+            },
+            Function.identity()
+        ).writeTo(outputStream);
+
+        String[] lines = new String(outputStream.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(1001);
+        assertThat(lines[0]).isEqualTo("1");
+        assertThat(lines[500]).isEqualTo("501");
+        assertThat(lines[1000]).isEqualTo("1001");
+        assertThat(requestedAfter).containsExactly(null, 500, 1000);
+    }
+
+    @Test
+    public void ndjson_whenLastPageFull_stopsOnEmptyPage() throws Exception {
+        List<Integer> rows = IntStream.rangeClosed(1, 500).boxed().collect(Collectors.toList());
+        List<Integer> requestedAfter = new ArrayList<>();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        KeysetResponses.<Integer, Integer>ndjson(
+            new ObjectMapper(),
+            (after, limit) -> {
+                requestedAfter.add(after);
+                return after == null ? rows : new ArrayList<>();
+            },
+            Function.identity()
+        ).writeTo(outputStream);
+
+        assertThat(new String(outputStream.toByteArray(), StandardCharsets.UTF_8).split("\n")).hasSize(500);
+        assertThat(requestedAfter).containsExactly(null, 500);
+    }
+}
@@ -0,0 +1,65 @@
+package io.pivotal.pal.wehaul.domain;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class InspectionArchiveCodecTest {
+
+    @Test
+    public void roundTripsInspectionsInOrder() {
+        List<TruckInspection> inspections = Arrays.asList(
+            new TruckInspection("test-0001", 0, "first"),
+            new TruckInspection("test-0001", 1500, "first"),
+            new TruckInspection("test-0001", 1500, null),
+            new TruckInspection(UUID.randomUUID(), "test-0001", 90000, "random id, notes with ünïcode"),
+            new TruckInspection("test-0001", 120000, "")
+        );
+
+        List<TruckInspection> decoded =
+            InspectionArchiveCodec.decode("test-0001", InspectionArchiveCodec.encode("test-0001", inspections));
+
+        assertThat(decoded).hasSameSizeAs(inspections);
+        for (int i = 0; i < inspections.size(); i++) {
+            assertThat(decoded.get(i)).isEqualToIgnoringGivenFields(inspections.get(i), "isNew");
+        }
+    }
+
+    @Test
+    public void roundTripsNoInspections() {
+        byte[] archive = InspectionArchiveCodec.encode("test-0001", Collections.emptyList());
+
+        assertThat(InspectionArchiveCodec.decode("test-0001", archive)).isEmpty();
+    }
+
+    @Test
+    public void storesTypicalHistoryInFewBytesPerInspection() {
+        List<TruckInspection> inspections = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            inspections.add(new TruckInspection("test-0001", i * 1200, "passed inspection"));
+        }
+
+        byte[] archive = InspectionArchiveCodec.encode("test-0001", inspections);
+
+        // A row in the table holds a 16 byte id alone
+        assertThat(archive.length).isLessThan(inspections.size() * 16);
+    }
+
+    @Test
+    public void encode_whenInspectionOfAnotherTruck() {
+        List<TruckInspection> inspections = Collections.singletonList(
+            new TruckInspection("test-0002", 1000, "some-notes")
+        );
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> InspectionArchiveCodec.encode("test-0001", inspections))
+            .withMessage("Cannot archive inspection of truck test-0002 with those of test-0001");
+    }
+}
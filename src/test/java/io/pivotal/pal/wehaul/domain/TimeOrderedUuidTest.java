@@ -0,0 +1,27 @@
+package io.pivotal.pal.wehaul.domain;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimeOrderedUuidTest {
+
+    @Test
+    public void generate_isVersion7() {
+        UUID uuid = TimeOrderedUuid.generate();
+
+        assertThat(uuid.version()).isEqualTo(7);
+        assertThat(uuid.variant()).isEqualTo(2);
+    }
+
+    @Test
+    public void generate_sortsByCreationTime() {
+        UUID earlier = TimeOrderedUuid.generate(1_500_000_000_000L);
+        UUID later = TimeOrderedUuid.generate(1_500_000_000_001L);
+
+        assertThat(earlier.toString()).isLessThan(later.toString());
+        assertThat(earlier.getMostSignificantBits() >>> 16).isEqualTo(1_500_000_000_000L);
+    }
+}
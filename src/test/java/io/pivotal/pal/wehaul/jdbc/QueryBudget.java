@@ -0,0 +1,38 @@
+package io.pivotal.pal.wehaul.jdbc;
+
+import java.util.function.Supplier;
+
+/**
+ * Fails a test when the work it runs issues more SQL statements than declared. Needs the application's
+ * data source, which is wrapped for counting unless {@code wehaul.query-stats.enabled=false}.
+ */
+public final class QueryBudget {
+
+    private QueryBudget() {
+    }
+
+    public static <T> T expectAtMost(int maxStatements, Supplier<T> work) {
+        QueryStats stats = new QueryStats();
+        T result;
+        try (QueryStatsContext.Scope ignored = QueryStatsContext.begin(stats)) {
+            result = work.get();
+        }
+        if (stats.getStatements() > maxStatements) {
+            StringBuilder message = new StringBuilder(String.format(
+                "Expected at most %d statements but %d were issued:", maxStatements, stats.getStatements()
+            ));
+            stats.getExecutionsBySql().forEach((sql, count) ->
+                message.append(String.format("%n  %d x %s", count, sql))
+            );
+            throw new AssertionError(message.toString());
+        }
+        return result;
+    }
+
+    public static void expectAtMost(int maxStatements, Runnable work) {
+        expectAtMost(maxStatements, () -> {
+            work.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,93 @@
+package io.pivotal.pal.wehaul.jdbc;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class QueryCountingDataSourceTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        DriverManagerDataSource target = new DriverManagerDataSource(
+            "jdbc:h2:mem:query-counting-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""
+        );
+        jdbcTemplate = new JdbcTemplate(new QueryCountingDataSource(target));
+        jdbcTemplate.execute("CREATE TABLE item (id INT PRIMARY KEY, name VARCHAR(20))");
+    }
+
+    @Test
+    public void countsStatementsRowsAndExecutionsPerSql() {
+        QueryStats stats = new QueryStats();
+        try (QueryStatsContext.Scope ignored = QueryStatsContext.begin(stats)) {
+            jdbcTemplate.batchUpdate(
+                "INSERT INTO item (id, name) VALUES (?, ?)",
+                Arrays.asList(new Object[]{1, "a"}, new Object[]{2, "b"}, new Object[]{3, "c"})
+            );
+            jdbcTemplate.update("UPDATE item SET name = ? WHERE id = ?", "z", 1);
+            jdbcTemplate.update("UPDATE item SET name = ? WHERE id = ?", "y", 2);
+            jdbcTemplate.queryForList("SELECT name FROM item", String.class);
+        }
+
+        assertThat(stats.getStatements()).isEqualTo(4);
+        // 3 inserted, 2 updated and 3 read
+        assertThat(stats.getRows()).isEqualTo(8);
+        assertThat(stats.getJdbcNanos()).isPositive();
+        assertThat(stats.getExecutionsBySql())
+            .containsEntry("UPDATE item SET name = ? WHERE id = ?", 2L)
+            .containsEntry("SELECT name FROM item", 1L);
+    }
+
+    @Test
+    public void countsTowardsEveryOpenScope_andNoneOnceClosed() {
+        QueryStats outer = new QueryStats();
+        QueryStats inner = new QueryStats();
+        try (QueryStatsContext.Scope ignored = QueryStatsContext.begin(outer)) {
+            jdbcTemplate.queryForList("SELECT name FROM item", String.class);
+            try (QueryStatsContext.Scope alsoIgnored = QueryStatsContext.begin(inner)) {
+                jdbcTemplate.queryForList("SELECT name FROM item", String.class);
+            }
+        }
+        jdbcTemplate.queryForList("SELECT name FROM item", String.class);
+
+        assertThat(outer.getStatements()).isEqualTo(2);
+        assertThat(inner.getStatements()).isEqualTo(1);
+    }
+
+    @Test
+    public void attach_countsWorkOnAnotherThread() throws Exception {
+        QueryStats stats = new QueryStats();
+        try (QueryStatsContext.Scope ignored = QueryStatsContext.begin(stats)) {
+            List<QueryStats> captured = QueryStatsContext.current();
+            Thread worker = new Thread(() -> {
+                try (QueryStatsContext.Scope attached = QueryStatsContext.attach(captured)) {
+                    jdbcTemplate.queryForList("SELECT name FROM item", String.class);
+                }
+            });
+            worker.start();
+            worker.join();
+        }
+
+        assertThat(stats.getStatements()).isEqualTo(1);
+    }
+
+    @Test
+    public void queryBudget_failsWithTheStatementsIssued() {
+        assertThatThrownBy(() -> QueryBudget.expectAtMost(1, () -> {
+            jdbcTemplate.update("UPDATE item SET name = ? WHERE id = ?", "z", 1);
+            jdbcTemplate.update("UPDATE item SET name = ? WHERE id = ?", "y", 2);
+        }))
+            .isInstanceOf(AssertionError.class)
+            .hasMessageContaining("Expected at most 1 statements but 2 were issued")
+            .hasMessageContaining("2 x UPDATE item SET name = ? WHERE id = ?");
+    }
+}
@@ -0,0 +1,136 @@
+package io.pivotal.pal.wehaul.jdbc;
+
+import org.hibernate.dialect.H2Dialect;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReplicaRoutingDataSourceTest {
+
+    private DataSource primary;
+    private DataSource replica;
+    private ReplicaRoutingDataSource routingDataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnlyTransaction;
+    private TransactionTemplate readWriteTransaction;
+    private DataSource dataSource;
+
+    @Before
+    public void setUp() {
+        primary = createDatabase("primary");
+        replica = createDatabase("replica");
+        routingDataSource = new ReplicaRoutingDataSource(primary, Collections.singletonMap("replica-0", replica), 5000);
+
+        dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    public void readOnlyTransaction_usesReplicaOnceCaughtUp() {
+        routingDataSource.checkLag();
+        replicate();
+        routingDataSource.checkLag();
+
+        assertThat(routingDataSource.getLagMillis("replica-0")).isZero();
+        assertThat(readOnlyTransaction.execute(status -> whereAmI())).isEqualTo("replica");
+        assertThat(routingDataSource.getConnectionCount("replica-0")).isEqualTo(1);
+    }
+
+    @Test
+    public void readOnlyJpaTransaction_usesReplicaOnceCaughtUp() {
+        routingDataSource.checkLag();
+        replicate();
+        routingDataSource.checkLag();
+
+        // Repositories run under JPA, whose dialect prepares the connection when the transaction begins
+        LocalContainerEntityManagerFactoryBean entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactoryBean.setDataSource(dataSource);
+        entityManagerFactoryBean.setPackagesToScan(getClass().getPackage().getName());
+        HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
+        vendorAdapter.setDatabasePlatform(H2Dialect.class.getName());
+        entityManagerFactoryBean.setJpaVendorAdapter(vendorAdapter);
+        entityManagerFactoryBean.afterPropertiesSet();
+        try {
+            EntityManagerFactory entityManagerFactory = entityManagerFactoryBean.getObject();
+            EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+            JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+            TransactionTemplate readOnlyJpaTransaction = new TransactionTemplate(transactionManager);
+            readOnlyJpaTransaction.setReadOnly(true);
+            TransactionTemplate readWriteJpaTransaction = new TransactionTemplate(transactionManager);
+
+            assertThat(readOnlyJpaTransaction.execute(status -> whereAmI(entityManager))).isEqualTo("replica");
+            assertThat(readWriteJpaTransaction.execute(status -> whereAmI(entityManager))).isEqualTo("primary");
+        } finally {
+            entityManagerFactoryBean.destroy();
+        }
+    }
+
+    @Test
+    public void readWriteTransaction_andWorkOutsideTransactions_usePrimary() {
+        routingDataSource.checkLag();
+        replicate();
+        routingDataSource.checkLag();
+
+        assertThat(readWriteTransaction.execute(status -> whereAmI())).isEqualTo("primary");
+        assertThat(whereAmI()).isEqualTo("primary");
+        assertThat(routingDataSource.getConnectionCount("replica-0")).isZero();
+    }
+
+    @Test
+    public void readOnlyTransaction_fallsBackToPrimary_whileReplicaLagsOrIsUnmeasured() {
+        assertThat(readOnlyTransaction.execute(status -> whereAmI())).isEqualTo("primary");
+
+        routingDataSource.checkLag();
+        routingDataSource.checkLag();
+
+        assertThat(routingDataSource.getLagMillis("replica-0")).isGreaterThan(5000);
+        assertThat(readOnlyTransaction.execute(status -> whereAmI())).isEqualTo("primary");
+    }
+
+    private String whereAmI() {
+        return jdbcTemplate.queryForObject("SELECT name FROM marker", String.class);
+    }
+
+    private static Object whereAmI(EntityManager entityManager) {
+        return entityManager.createNativeQuery("SELECT name FROM marker").getSingleResult();
+    }
+
+    // Stands in for replication, copying only the heartbeat
+    private void replicate() {
+        Long beatMillis = new JdbcTemplate(primary)
+            .queryForObject("SELECT beat_millis FROM replication_heartbeat WHERE id = 1", Long.class);
+        new JdbcTemplate(replica).update("UPDATE replication_heartbeat SET beat_millis = ? WHERE id = 1", beatMillis);
+    }
+
+    private static DataSource createDatabase(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""
+        );
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE replication_heartbeat (id INTEGER PRIMARY KEY, beat_millis BIGINT NOT NULL)");
+        jdbcTemplate.update("INSERT INTO replication_heartbeat (id, beat_millis) VALUES (1, 0)");
+        jdbcTemplate.execute("CREATE TABLE marker (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO marker (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
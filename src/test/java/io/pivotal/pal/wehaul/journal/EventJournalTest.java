@@ -0,0 +1,180 @@
+package io.pivotal.pal.wehaul.journal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EventJournalTest {
+
+    private static final int CAPACITY = 4096;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void append_readsBackInOrder() throws Exception {
+        EventJournal eventJournal = open();
+        UUID confirmationNumber = UUID.randomUUID();
+
+        assertThat(eventJournal.append(JournalEntry.returnedFromInspection("test-0001", "some-notes", 100))).isTrue();
+        assertThat(eventJournal.append(JournalEntry.rentalDroppedOff(confirmationNumber, 20))).isTrue();
+
+        List<JournalRecord> records = eventJournal.readUnapplied(10);
+        assertThat(records).hasSize(2);
+
+        JournalEntry inspection = records.get(0).getEntry();
+        assertThat(inspection.getType()).isEqualTo(JournalEntry.Type.RETURNED_FROM_INSPECTION);
+        assertThat(inspection.getTruckVin()).isEqualTo("test-0001");
+        assertThat(inspection.getNotes()).isEqualTo("some-notes");
+        assertThat(inspection.getOdometerReading()).isEqualTo(100);
+
+        JournalEntry dropOff = records.get(1).getEntry();
+        assertThat(dropOff.getType()).isEqualTo(JournalEntry.Type.RENTAL_DROPPED_OFF);
+        assertThat(dropOff.getConfirmationNumber()).isEqualTo(confirmationNumber);
+        assertThat(dropOff.getDistanceTraveled()).isEqualTo(20);
+
+        eventJournal.close();
+    }
+
+    @Test
+    public void reopen_replaysOnlyUnapplied() throws Exception {
+        EventJournal eventJournal = open();
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0001", null, 100));
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0002", null, 200));
+        eventJournal.markApplied(eventJournal.readUnapplied(1).get(0));
+        eventJournal.checkpoint();
+        eventJournal.close();
+
+        EventJournal reopened = open();
+
+        assertThat(reopened.readUnapplied(10))
+            .extracting(record -> record.getEntry().getTruckVin())
+            .containsExactly("test-0002");
+        reopened.close();
+    }
+
+    @Test
+    public void reopen_ignoresTornEntry() throws Exception {
+        EventJournal eventJournal = open();
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0001", null, 100));
+        int end = eventJournal.getPendingBytes();
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0002", null, 200));
+        eventJournal.close();
+
+        // corrupt the second entry's payload, as if the process died while writing it
+        File journalFile = new File(temporaryFolder.getRoot(), "journal.dat");
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.seek(end + 10);
+            file.write(0xFF);
+        }
+
+        EventJournal reopened = open();
+
+        assertThat(reopened.readUnapplied(10))
+            .extracting(record -> record.getEntry().getTruckVin())
+            .containsExactly("test-0001");
+        reopened.close();
+    }
+
+    @Test
+    public void append_whenFull_refuses() throws Exception {
+        EventJournal eventJournal = open();
+
+        int appended = 0;
+        while (eventJournal.append(JournalEntry.returnedFromInspection("test-0001", "some-notes", appended))) {
+            appended++;
+        }
+
+        assertThat(appended).isGreaterThan(0);
+        assertThat(eventJournal.readUnapplied(Integer.MAX_VALUE)).hasSize(appended);
+        eventJournal.close();
+    }
+
+    @Test
+    public void checkpoint_startsOverOnceApplied() throws Exception {
+        EventJournal eventJournal = open();
+        while (eventJournal.getPendingBytes() <= CAPACITY / 2) {
+            eventJournal.append(JournalEntry.returnedFromInspection("test-0001", "some-notes", 1));
+        }
+        List<JournalRecord> records = eventJournal.readUnapplied(Integer.MAX_VALUE);
+        eventJournal.markApplied(records.get(records.size() - 1));
+
+        eventJournal.checkpoint();
+
+        assertThat(eventJournal.getPendingBytes()).isEqualTo(0);
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0002", null, 2));
+        eventJournal.close();
+
+        assertThat(open().readUnapplied(10))
+            .extracting(record -> record.getEntry().getTruckVin())
+            .containsExactly("test-0002");
+    }
+
+    @Test
+    public void checkpoint_whileApplierLagsBehind_keepsRoomPastCapacity() throws Exception {
+        EventJournal eventJournal = open();
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0001", "some-notes", 0));
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0001", "some-notes", 1));
+
+        // Two entries always wait to be applied, so the applier never catches up with the appends
+        int appended = 2;
+        int applied = 0;
+        long appendedBytes = 0;
+        while (appendedBytes < 4L * CAPACITY) {
+            int pendingBytes = eventJournal.getPendingBytes();
+            assertThat(eventJournal.append(JournalEntry.returnedFromInspection("test-0001", "some-notes", appended)))
+                .isTrue();
+            appendedBytes += eventJournal.getPendingBytes() - pendingBytes;
+            appended++;
+
+            List<JournalRecord> records = eventJournal.readUnapplied(1);
+            assertThat(records.get(0).getEntry().getOdometerReading()).isEqualTo(applied);
+            eventJournal.markApplied(records.get(0));
+            applied++;
+            eventJournal.checkpoint();
+        }
+        eventJournal.close();
+
+        assertThat(open().readUnapplied(10))
+            .extracting(record -> record.getEntry().getOdometerReading())
+            .containsExactly(applied, applied + 1);
+    }
+
+    @Test
+    public void append_concurrently_keepsEveryEntry() throws Exception {
+        EventJournal eventJournal = open();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> appends = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            int odometerReading = i;
+            appends.add(executor.submit(() ->
+                eventJournal.append(JournalEntry.returnedFromInspection("test-0001", null, odometerReading))
+            ));
+        }
+        for (Future<Boolean> append : appends) {
+            assertThat(append.get()).isTrue();
+        }
+        executor.shutdown();
+
+        assertThat(eventJournal.readUnapplied(Integer.MAX_VALUE))
+            .extracting(record -> record.getEntry().getOdometerReading())
+            .hasSize(64)
+            .doesNotHaveDuplicates();
+        eventJournal.close();
+    }
+
+    private EventJournal open() {
+        return new EventJournal(true, temporaryFolder.getRoot().getPath(), CAPACITY);
+    }
+}
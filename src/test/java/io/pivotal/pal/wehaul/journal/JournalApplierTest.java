@@ -0,0 +1,148 @@
+package io.pivotal.pal.wehaul.journal;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.pivotal.pal.wehaul.service.FleetTruckService;
+import io.pivotal.pal.wehaul.service.RentalService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JournalApplierTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private FleetTruckService mockFleetTruckService;
+    @Mock
+    private RentalService mockRentalService;
+
+    private MeterRegistry meterRegistry;
+    private EventJournal eventJournal;
+    private JournalApplier journalApplier;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        eventJournal = new EventJournal(true, temporaryFolder.getRoot().getPath(), 4096);
+        journalApplier = new JournalApplier(eventJournal, mockFleetTruckService, mockRentalService, meterRegistry);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        eventJournal.close();
+    }
+
+    @Test
+    public void applyPending() {
+        UUID confirmationNumber = UUID.randomUUID();
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0001", "some-notes", 100));
+        eventJournal.append(JournalEntry.rentalDroppedOff(confirmationNumber, 20));
+
+        journalApplier.applyPending();
+
+        InOrder inOrder = inOrder(mockFleetTruckService, mockRentalService);
+        inOrder.verify(mockFleetTruckService).returnFromInspection("test-0001", "some-notes", 100);
+        inOrder.verify(mockRentalService).dropOff(confirmationNumber, 20);
+        assertThat(eventJournal.getPendingBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void applyPending_whenRefused_skipsEntry() {
+        doThrow(new IllegalStateException("Cannot return truck from inspection while truck is RENTABLE"))
+            .when(mockFleetTruckService).returnFromInspection("test-0001", null, 100);
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0001", null, 100));
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0002", null, 200));
+
+        journalApplier.applyPending();
+
+        verify(mockFleetTruckService).returnFromInspection("test-0002", null, 200);
+        assertThat(eventJournal.getPendingBytes()).isEqualTo(0);
+        assertThat(meterRegistry.counter(
+            "wehaul.journal.entries",
+            "type", "RETURNED_FROM_INSPECTION",
+            "outcome", "rejected"
+        ).count()).isEqualTo(1);
+    }
+
+    @Test
+    public void applyPending_whenDatabaseFails_retriesInOrder() {
+        doThrow(new QueryTimeoutException("timed out"))
+            .doNothing()
+            .when(mockFleetTruckService).returnFromInspection("test-0001", null, 100);
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0001", null, 100));
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0002", null, 200));
+
+        journalApplier.applyPending();
+
+        verify(mockFleetTruckService, never()).returnFromInspection("test-0002", null, 200);
+        assertThat(eventJournal.getPendingBytes()).isGreaterThan(0);
+
+        journalApplier.applyPending();
+
+        verify(mockFleetTruckService, times(2)).returnFromInspection("test-0001", null, 100);
+        verify(mockFleetTruckService).returnFromInspection("test-0002", null, 200);
+        assertThat(eventJournal.getPendingBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void applyPending_whenConstraintViolated_skipsEntryAndAppliesNext() {
+        doThrow(new DataIntegrityViolationException("value too long for type character varying(255)"))
+            .when(mockFleetTruckService).returnFromInspection("test-0001", "too-long-notes", 100);
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0001", "too-long-notes", 100));
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0002", null, 200));
+
+        journalApplier.applyPending();
+
+        verify(mockFleetTruckService).returnFromInspection("test-0002", null, 200);
+        assertThat(eventJournal.getPendingBytes()).isEqualTo(0);
+        assertThat(meterRegistry.counter(
+            "wehaul.journal.entries",
+            "type", "RETURNED_FROM_INSPECTION",
+            "outcome", "rejected"
+        ).count()).isEqualTo(1);
+    }
+
+    @Test
+    public void applyPending_whenUnexpectedFailure_skipsEntry() {
+        doThrow(new NullPointerException())
+            .when(mockFleetTruckService).returnFromInspection("test-0001", null, 100);
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0001", null, 100));
+        eventJournal.append(JournalEntry.returnedFromInspection("test-0002", null, 200));
+
+        journalApplier.applyPending();
+        journalApplier.applyPending();
+
+        verify(mockFleetTruckService).returnFromInspection("test-0001", null, 100);
+        verify(mockFleetTruckService).returnFromInspection("test-0002", null, 200);
+        assertThat(eventJournal.getPendingBytes()).isEqualTo(0);
+        assertThat(meterRegistry.counter(
+            "wehaul.journal.entries",
+            "type", "RETURNED_FROM_INSPECTION",
+            "outcome", "rejected"
+        ).count()).isEqualTo(1);
+    }
+
+    @Test
+    public void applyPending_whenDisabled_doesNothing() {
+        EventJournal disabledJournal = new EventJournal(false, temporaryFolder.getRoot().getPath(), 4096);
+        new JournalApplier(disabledJournal, mockFleetTruckService, mockRentalService, meterRegistry).applyPending();
+
+        verifyZeroInteractions(mockFleetTruckService, mockRentalService);
+    }
+}
@@ -0,0 +1,88 @@
+package io.pivotal.pal.wehaul.repository;
+
+import io.pivotal.pal.wehaul.domain.Rental;
+import io.pivotal.pal.wehaul.domain.Truck;
+import io.pivotal.pal.wehaul.domain.TruckInspection;
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class FleetBatchRepositoryTest {
+
+    @Autowired
+    private FleetBatchRepository fleetBatchRepository;
+
+    @Autowired
+    private TruckRepository truckRepository;
+
+    @Autowired
+    private TruckInspectionRepository truckInspectionRepository;
+
+    @Autowired
+    private LastTruckInspectionRepository lastTruckInspectionRepository;
+
+    @Autowired
+    private RentalRepository rentalRepository;
+
+    @Test
+    public void returnFromInspections() {
+        Truck inInspection = new Truck("batch-0001", 1000);
+        Truck rentable = new Truck("batch-0002", 1000);
+        rentable.setStatus(TruckStatus.RENTABLE);
+        Truck readingAhead = new Truck("batch-0003", 5000);
+        fleetBatchRepository.insertTrucks(Arrays.asList(inInspection, rentable, readingAhead));
+
+        boolean[] returned = fleetBatchRepository.returnFromInspections(Arrays.asList(
+            new TruckInspection("batch-0001", 2000, "some-notes"),
+            new TruckInspection("batch-0002", 2000, "some-notes"),
+            new TruckInspection("batch-0003", 2000, "some-notes")
+        ));
+
+        assertThat(returned).containsExactly(true, false, false);
+
+        Truck returnedTruck = truckRepository.findOne("batch-0001");
+        assertThat(returnedTruck.getStatus()).isEqualTo(TruckStatus.RENTABLE);
+        assertThat(returnedTruck.getOdometerReading()).isEqualTo(2000);
+        assertThat(truckRepository.findOne("batch-0003").getStatus()).isEqualTo(TruckStatus.IN_INSPECTION);
+
+        assertThat(truckInspectionRepository.findAll())
+            .filteredOn(inspection -> inspection.getTruckVin().startsWith("batch-"))
+            .extracting(TruckInspection::getTruckVin)
+            .containsExactly("batch-0001");
+        assertThat(lastTruckInspectionRepository.findOne("batch-0001").getOdometerReading()).isEqualTo(2000);
+        assertThat(lastTruckInspectionRepository.findOne("batch-0002")).isNull();
+    }
+
+    @Test
+    public void expireReservations() {
+        Truck reserved = new Truck("expire-0001", 1000);
+        reserved.setStatus(TruckStatus.RESERVED);
+        Truck rented = new Truck("expire-0002", 1000);
+        rented.setStatus(TruckStatus.RENTED);
+        fleetBatchRepository.insertTrucks(Arrays.asList(reserved, rented));
+
+        Rental notPickedUp = rentalRepository.save(new Rental("some-customer-name", "expire-0001"));
+        Rental pickedUp = new Rental("some-customer-name", "expire-0002");
+        pickedUp.setDistanceTraveled(0);
+        pickedUp = rentalRepository.save(pickedUp);
+
+        boolean[] released = fleetBatchRepository.expireReservations(Arrays.asList(notPickedUp, pickedUp));
+
+        assertThat(released).containsExactly(true, false);
+        assertThat(truckRepository.findOne("expire-0001").getStatus()).isEqualTo(TruckStatus.RENTABLE);
+        assertThat(truckRepository.findOne("expire-0002").getStatus()).isEqualTo(TruckStatus.RENTED);
+        assertThat(rentalRepository.findOne(notPickedUp.getConfirmationNumber()).isExpired()).isTrue();
+        assertThat(rentalRepository.findOne(pickedUp.getConfirmationNumber()).isExpired()).isFalse();
+
+        assertThat(fleetBatchRepository.expireReservations(Arrays.asList(notPickedUp))).containsExactly(false);
+    }
+}
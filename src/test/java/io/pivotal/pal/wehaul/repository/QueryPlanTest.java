@@ -0,0 +1,178 @@
+package io.pivotal.pal.wehaul.repository;
+
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.jdbc.QueryStats;
+import io.pivotal.pal.wehaul.jdbc.QueryStatsContext;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fails if a hot query stops using the index the migrations create for it. Each case runs the repository
+ * method, captures the SQL it sends through the counting data source and explains that, so a change to a
+ * derived query or JPQL shows up here.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class QueryPlanTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TruckRepository truckRepository;
+
+    @Autowired
+    private RentalRepository rentalRepository;
+
+    @Autowired
+    private TruckInspectionRepository truckInspectionRepository;
+
+    @Autowired
+    private TruckInspectionArchiveRepository truckInspectionArchiveRepository;
+
+    @Autowired
+    private TruckSinceInspectionRepository truckSinceInspectionRepository;
+
+    @Test
+    public void findVinsByStatus_usesStatusIndex() {
+        String sql = generatedSql("truck", () -> truckRepository.findVinsByStatus(TruckStatus.RENTABLE, page()));
+
+        assertThat(explain(sql)).contains("IDX_TRUCK_STATUS");
+    }
+
+    @Test
+    public void findRentalsByCustomerName_usesCustomerNameIndex() {
+        String sql = generatedSql("rental", () ->
+            rentalRepository.findByCustomerNameOrderByConfirmationNumberAsc("some-customer", page()));
+
+        assertThat(explain(sql)).contains("IDX_RENTAL_CUSTOMER_NAME");
+    }
+
+    @Test
+    public void findRentalsByCustomerNameAfter_usesCustomerNameIndex() {
+        String sql = generatedSql("rental", () ->
+            rentalRepository.findByCustomerNameAndConfirmationNumberGreaterThanOrderByConfirmationNumberAsc(
+                "some-customer", UUID.randomUUID(), page()));
+
+        assertThat(explain(sql)).contains("IDX_RENTAL_CUSTOMER_NAME");
+    }
+
+    @Test
+    public void findRentalsByCustomerNamePrefix_usesCustomerNameIndex() {
+        String sql = generatedSql("rental", () -> rentalRepository.findByCustomerNamePattern("some-cus%", page()));
+
+        assertThat(explain(sql)).contains("IDX_RENTAL_CUSTOMER_NAME");
+    }
+
+    @Test
+    public void findRentalsByCustomerNamePrefixAfter_usesCustomerNameIndex() {
+        String sql = generatedSql("rental", () ->
+            rentalRepository.findByCustomerNamePatternAfter("some-cus%", "some-customer", UUID.randomUUID(), page()));
+
+        assertThat(explain(sql)).contains("IDX_RENTAL_CUSTOMER_NAME");
+    }
+
+    @Test
+    public void findOutstandingReservations_usesOutstandingIndex() {
+        String sql = generatedSql("rental", () -> rentalRepository.findOutstandingReservations());
+
+        assertThat(explain(sql)).contains("IDX_RENTAL_OUTSTANDING");
+    }
+
+    @Test
+    public void findInspectionsPage_usesVinOdometerIndex() {
+        String sql = generatedSql("truck_inspection", () ->
+            truckInspectionRepository.findByTruckVinOrderByOdometerReadingAscIdAsc("test-0001", page()));
+
+        assertThat(explain(sql)).contains("IDX_TRUCK_INSPECTION_VIN_ODOMETER");
+    }
+
+    @Test
+    public void findInspectionsPageAfter_usesVinOdometerIndex() {
+        String sql = generatedSql("truck_inspection", () ->
+            truckInspectionRepository.findByTruckVinAfter("test-0001", 1000, UUID.randomUUID(), page()));
+
+        assertThat(explain(sql)).contains("IDX_TRUCK_INSPECTION_VIN_ODOMETER");
+    }
+
+    @Test
+    public void archive_locksInspectionsThroughVinOdometerIndex() {
+        String sql = generatedSql("truck_inspection", () ->
+            truckInspectionArchiveRepository.archive("test-" + UUID.randomUUID(), 1));
+
+        assertThat(explain(sql)).contains("IDX_TRUCK_INSPECTION_VIN_ODOMETER");
+    }
+
+    @Test
+    public void findInconsistentVins_usesVinOdometerIndex() {
+        String sql = generatedSql("truck_inspection", () -> truckSinceInspectionRepository.findInconsistentVins());
+
+        assertThat(explain(sql)).contains("IDX_TRUCK_INSPECTION_VIN_ODOMETER");
+    }
+
+    private static PageRequest page() {
+        return new PageRequest(0, 10);
+    }
+
+    /**
+     * @return the one statement the work ran against the table
+     */
+    private static String generatedSql(String table, Runnable work) {
+        QueryStats stats = new QueryStats();
+        try (QueryStatsContext.Scope ignored = QueryStatsContext.begin(stats)) {
+            work.run();
+        }
+        List<String> matching = stats.getExecutionsBySql().keySet().stream()
+            .filter(sql -> sql.toLowerCase().matches("(?s).*\\bfrom " + table + "\\b.*"))
+            .collect(Collectors.toList());
+        assertThat(matching).hasSize(1);
+        return matching.get(0);
+    }
+
+    /**
+     * Explains the statement with a placeholder value bound to each parameter; H2 picks the index from the
+     * shape of the statement, not the values.
+     */
+    private String explain(String sql) {
+        return jdbcTemplate.execute("EXPLAIN " + sql, (PreparedStatement ps) -> {
+            ParameterMetaData parameters = ps.getParameterMetaData();
+            for (int i = 1; i <= parameters.getParameterCount(); i++) {
+                ps.setObject(i, placeholder(parameters.getParameterType(i)));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getString(1);
+            }
+        });
+    }
+
+    private static Object placeholder(int sqlType) {
+        switch (sqlType) {
+            case Types.BINARY:
+            case Types.OTHER:
+                return UUID.randomUUID();
+            case Types.BOOLEAN:
+                return false;
+            case Types.VARCHAR:
+            case Types.CHAR:
+                return "x";
+            default:
+                return 1;
+        }
+    }
+}
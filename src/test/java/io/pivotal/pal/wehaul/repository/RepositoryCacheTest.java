@@ -0,0 +1,115 @@
+package io.pivotal.pal.wehaul.repository;
+
+import io.pivotal.pal.wehaul.config.CacheConfiguration;
+import io.pivotal.pal.wehaul.domain.Rental;
+import io.pivotal.pal.wehaul.domain.Truck;
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class RepositoryCacheTest {
+
+    @Autowired
+    private TruckRepository truckRepository;
+
+    @Autowired
+    private RentalRepository rentalRepository;
+
+    @Autowired
+    private FleetBatchRepository fleetBatchRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void findOne_servesRepeatedLookupsFromCache() {
+        String vin = newVin();
+        truckRepository.save(new Truck(vin, 1000));
+
+        Truck first = truckRepository.findOne(vin);
+        Truck second = truckRepository.findOne(vin);
+
+        assertThat(second).isSameAs(first);
+        assertThat(cacheManager.getCache(CacheConfiguration.TRUCKS).get(vin)).isNotNull();
+    }
+
+    @Test
+    public void findOne_doesNotCacheMissingTruck() {
+        String vin = newVin();
+
+        assertThat(truckRepository.findOne(vin)).isNull();
+
+        assertThat(cacheManager.getCache(CacheConfiguration.TRUCKS).get(vin)).isNull();
+    }
+
+    @Test
+    public void findOne_inReadOnlyTransaction_doesNotCache() {
+        String vin = newVin();
+        truckRepository.save(new Truck(vin, 1000));
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        assertThat(readOnlyTransaction.execute(status -> truckRepository.findOne(vin))).isNotNull();
+
+        assertThat(cacheManager.getCache(CacheConfiguration.TRUCKS).get(vin)).isNull();
+    }
+
+    @Test
+    public void updateStatus_evictsOnCommit() {
+        String vin = newVin();
+        truckRepository.save(new Truck(vin, 1000));
+        truckRepository.findOne(vin);
+
+        transactionTemplate.execute(status ->
+            truckRepository.updateStatus(vin, TruckStatus.IN_INSPECTION, TruckStatus.RENTABLE)
+        );
+
+        assertThat(cacheManager.getCache(CacheConfiguration.TRUCKS).get(vin)).isNull();
+        assertThat(truckRepository.findOne(vin).getStatus()).isEqualTo(TruckStatus.RENTABLE);
+    }
+
+    @Test
+    public void addOdometerDistances_evicts() {
+        String vin = newVin();
+        truckRepository.save(new Truck(vin, 1000));
+        truckRepository.findOne(vin);
+
+        fleetBatchRepository.addOdometerDistances(Collections.singletonMap(vin, 50L));
+
+        assertThat(truckRepository.findOne(vin).getOdometerReading()).isEqualTo(1050);
+    }
+
+    @Test
+    public void markPickedUp_evictsOnCommit() {
+        Rental rental = new Rental("some-customer-name", newVin());
+        rentalRepository.save(rental);
+        assertThat(rentalRepository.findOne(rental.getConfirmationNumber()).getDistanceTraveled()).isNull();
+
+        transactionTemplate.execute(status -> rentalRepository.markPickedUp(rental.getConfirmationNumber()));
+
+        assertThat(rentalRepository.findOne(rental.getConfirmationNumber()).getDistanceTraveled()).isEqualTo(0);
+    }
+
+    private static String newVin() {
+        return "cache-" + UUID.randomUUID();
+    }
+}
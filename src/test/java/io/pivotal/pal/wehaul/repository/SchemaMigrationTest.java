@@ -0,0 +1,74 @@
+package io.pivotal.pal.wehaul.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SchemaMigrationTest {
+
+    private static final String SQL_INSERT_INSPECTION =
+        "INSERT INTO truck_inspection (id, truck_vin, odometer_reading, notes) VALUES (?, ?, ?, ?)";
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:schema-migration-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""
+        );
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    public void migrate_upgradesDatabaseCreatedByDdlAuto() {
+        // Tables and rows as the application left them before Flyway managed the schema
+        jdbcTemplate.execute("CREATE TABLE truck (vin VARCHAR(255) NOT NULL, status VARCHAR(255), " +
+            "odometer_reading INTEGER, PRIMARY KEY (vin))");
+        jdbcTemplate.execute("CREATE TABLE rental (confirmation_number UUID NOT NULL, " +
+            "customer_name VARCHAR(255) NOT NULL, truck_vin VARCHAR(255), distance_traveled INTEGER, " +
+            "PRIMARY KEY (confirmation_number))");
+        jdbcTemplate.execute("CREATE TABLE truck_inspection (id UUID NOT NULL, truck_vin VARCHAR(255), " +
+            "odometer_reading INTEGER, notes VARCHAR(255), PRIMARY KEY (id))");
+        jdbcTemplate.update("INSERT INTO truck (vin, status, odometer_reading) VALUES ('test-0001', 'RENTED', 3000)");
+        jdbcTemplate.update("INSERT INTO rental (confirmation_number, customer_name, truck_vin) VALUES (?, ?, ?)",
+            UUID.randomUUID(), "some-customer-name", "test-0001");
+        jdbcTemplate.update(SQL_INSERT_INSPECTION, UUID.randomUUID(), "test-0001", 1000, "some-notes");
+        jdbcTemplate.update(SQL_INSERT_INSPECTION, UUID.randomUUID(), "test-0001", 2000, "some-notes");
+
+        migrate();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT version FROM truck WHERE vin = 'test-0001'", Long.class))
+            .isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT version FROM rental", Long.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT odometer_reading FROM last_truck_inspection WHERE truck_vin = 'test-0001'",
+            Integer.class
+        )).isEqualTo(2000);
+        assertThat(jdbcTemplate.queryForObject("SELECT expired FROM rental", Boolean.class)).isFalse();
+    }
+
+    @Test
+    public void migrate_createsEmptyDatabase() {
+        migrate();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM last_truck_inspection", Integer.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM truck", Integer.class)).isZero();
+    }
+
+    // As the postgresql profile configures it
+    private void migrate() {
+        Flyway flyway = new Flyway();
+        flyway.setDataSource(dataSource);
+        flyway.setLocations("classpath:db/migration");
+        flyway.setBaselineOnMigrate(true);
+        flyway.setBaselineVersionAsString("0");
+        flyway.migrate();
+    }
+}
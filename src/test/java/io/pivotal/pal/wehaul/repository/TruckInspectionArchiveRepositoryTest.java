@@ -0,0 +1,97 @@
+package io.pivotal.pal.wehaul.repository;
+
+import io.pivotal.pal.wehaul.domain.TruckInspection;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "wehaul.inspection-archive.segment-size=2")
+public class TruckInspectionArchiveRepositoryTest {
+
+    @Autowired
+    private TruckInspectionArchiveRepository truckInspectionArchiveRepository;
+
+    @Autowired
+    private TruckInspectionRepository truckInspectionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void archive_movesAllButLatestInspectionsIntoArchive() {
+        List<TruckInspection> inspections = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            inspections.add(new TruckInspection("archive-0001", i * 1000, "notes-" + i));
+        }
+        truckInspectionRepository.save(inspections);
+
+        assertThat(truckInspectionArchiveRepository.findVinsToArchive(2, 100)).contains("archive-0001");
+        assertThat(truckInspectionArchiveRepository.archive("archive-0001", 2)).isEqualTo(3);
+
+        assertThat(truckInspectionArchiveRepository.findPage("archive-0001", null, 10))
+            .extracting(TruckInspection::getId)
+            .containsExactly(inspections.get(0).getId(), inspections.get(1).getId(), inspections.get(2).getId());
+        assertThat(truckInspectionRepository.findByTruckVinOrderByOdometerReadingAscIdAsc(
+            "archive-0001",
+            new PageRequest(0, 10)
+        ))
+            .extracting(TruckInspection::getOdometerReading)
+            .containsExactly(3000, 4000);
+        assertThat(truckInspectionArchiveRepository.findVinsToArchive(2, 100)).doesNotContain("archive-0001");
+
+        // A later run fills up the last segment before starting a new one
+        truckInspectionRepository.save(new TruckInspection("archive-0001", 5000, "notes-5"));
+        truckInspectionRepository.save(new TruckInspection("archive-0001", 6000, "notes-6"));
+        assertThat(truckInspectionArchiveRepository.archive("archive-0001", 2)).isEqualTo(2);
+        assertThat(truckInspectionArchiveRepository.findPage("archive-0001", null, 10))
+            .extracting(TruckInspection::getOdometerReading)
+            .containsExactly(0, 1000, 2000, 3000, 4000);
+        assertThat(truckInspectionArchiveRepository.findPage("archive-0001", null, 10))
+            .extracting(TruckInspection::getNotes)
+            .containsExactly("notes-0", "notes-1", "notes-2", "notes-3", "notes-4");
+        assertThat(jdbcTemplate.queryForList(
+            "SELECT inspection_count FROM truck_inspection_archive_segment WHERE truck_vin = ? ORDER BY segment",
+            Integer.class,
+            "archive-0001"
+        )).containsExactly(2, 2, 1);
+    }
+
+    @Test
+    public void findPage_continuesAfterInspectionAcrossSegments() {
+        List<TruckInspection> inspections = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            inspections.add(new TruckInspection("archive-0003", i * 1000, "notes-" + i));
+        }
+        truckInspectionRepository.save(inspections);
+        truckInspectionArchiveRepository.archive("archive-0003", 1);
+
+        assertThat(truckInspectionArchiveRepository.findPage("archive-0003", inspections.get(0).getId(), 3))
+            .extracting(TruckInspection::getOdometerReading)
+            .containsExactly(1000, 2000, 3000);
+        assertThat(truckInspectionArchiveRepository.findPage("archive-0003", inspections.get(3).getId(), 3))
+            .extracting(TruckInspection::getOdometerReading)
+            .containsExactly(4000);
+        assertThat(truckInspectionArchiveRepository.findPage("archive-0003", inspections.get(4).getId(), 3))
+            .isEmpty();
+        assertThat(truckInspectionArchiveRepository.findPage("archive-0003", inspections.get(5).getId(), 3))
+            .isNull();
+    }
+
+    @Test
+    public void archive_whenFewerInspectionsThanKept() {
+        truckInspectionRepository.save(new TruckInspection("archive-0002", 1000, "some-notes"));
+
+        assertThat(truckInspectionArchiveRepository.archive("archive-0002", 2)).isEqualTo(0);
+        assertThat(truckInspectionArchiveRepository.findPage("archive-0002", null, 10)).isEmpty();
+    }
+}
@@ -6,10 +6,12 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.Arrays;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -41,4 +43,50 @@ public class TruckRepositoryTest {
 
         assertThat(truck).isNull();
     }
+
+    @Test
+    public void findVinsByStatus() {
+        Truck truck1 = new Truck("test-0001", 1000);
+        Truck truck2 = new Truck("test-0002", 2000);
+        truck2.setStatus(TruckStatus.RENTABLE);
+        Truck truck3 = new Truck("test-0003", 3000);
+        truck3.setStatus(TruckStatus.RENTABLE);
+        truckRepository.save(Arrays.asList(truck1, truck2, truck3));
+
+        List<String> vins = truckRepository.findVinsByStatus(TruckStatus.RENTABLE, new PageRequest(0, 10));
+
+        assertThat(vins).containsExactlyInAnyOrder("test-0002", "test-0003");
+    }
+
+    @Test
+    public void updateStatus() {
+        Truck truck = new Truck("test-0001", 1000);
+        truck.setStatus(TruckStatus.RENTABLE);
+        truckRepository.save(truck);
+
+        int updated = truckRepository.updateStatus("test-0001", TruckStatus.RENTABLE, TruckStatus.RESERVED);
+        int updatedAgain = truckRepository.updateStatus("test-0001", TruckStatus.RENTABLE, TruckStatus.RESERVED);
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(updatedAgain).isEqualTo(0);
+    }
+
+    @Test
+    public void findByVinGreaterThanOrderByVinAsc() {
+        truckRepository.save(Arrays.asList(
+            new Truck("test-0003", 0),
+            new Truck("test-0001", 0),
+            new Truck("test-0004", 0),
+            new Truck("test-0002", 0)
+        ));
+
+        List<Truck> firstPage = truckRepository.findAllByOrderByVinAsc(new PageRequest(0, 2));
+        List<Truck> secondPage = truckRepository.findByVinGreaterThanOrderByVinAsc(
+            firstPage.get(firstPage.size() - 1).getVin(),
+            new PageRequest(0, 2)
+        );
+
+        assertThat(firstPage).extracting(Truck::getVin).containsExactly("test-0001", "test-0002");
+        assertThat(secondPage).extracting(Truck::getVin).containsExactly("test-0003", "test-0004");
+    }
 }
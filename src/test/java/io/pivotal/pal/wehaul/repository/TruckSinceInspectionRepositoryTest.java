@@ -8,14 +8,16 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.Collection;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-@DirtiesContext
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 @RunWith(SpringRunner.class)
 @SpringBootTest
 public class TruckSinceInspectionRepositoryTest {
@@ -29,6 +31,9 @@ public class TruckSinceInspectionRepositoryTest {
     @Autowired
     private TruckSinceInspectionRepository truckSinceInspectionRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Test
     public void findAllSinceInspection() {
         String vin = "test-0001";
@@ -49,4 +54,22 @@ public class TruckSinceInspectionRepositoryTest {
             .extracting(TruckSinceInspection::getLastInspectionDistance)
             .containsExactly(2000);
     }
+
+    @Test
+    public void findInconsistentVins() {
+        String vin = "test-0001";
+        truckRepository.save(new Truck(vin, 4000));
+        truckInspectionRepository.save(new TruckInspection(vin, 2000, "bad stuff"));
+        // Written behind the repository's back, so the projection still has the earlier reading
+        jdbcTemplate.update(
+            "INSERT INTO truck_inspection (id, truck_vin, odometer_reading, notes) VALUES (?, ?, ?, ?)",
+            UUID.randomUUID(), vin, 3000, "more bad stuff"
+        );
+
+        assertThat(truckSinceInspectionRepository.findInconsistentVins()).containsExactly(vin);
+
+        truckSinceInspectionRepository.rebuildProjection();
+
+        assertThat(truckSinceInspectionRepository.findInconsistentVins()).isEmpty();
+    }
 }
@@ -0,0 +1,51 @@
+package io.pivotal.pal.wehaul.service;
+
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AfterCommitTest {
+
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @Test
+    public void run_outsideTransaction_runsStraightAway() {
+        AfterCommit.run(runs::incrementAndGet);
+
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void run_insideTransaction_waitsForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            AfterCommit.run(runs::incrementAndGet);
+            assertThat(runs.get()).isEqualTo(0);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void run_whenTransactionRollsBack_neverRuns() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            AfterCommit.run(runs::incrementAndGet);
+
+            TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(runs.get()).isEqualTo(0);
+    }
+}
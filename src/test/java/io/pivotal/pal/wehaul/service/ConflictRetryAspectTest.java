@@ -0,0 +1,66 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class ConflictRetryAspectTest {
+
+    private MeterRegistry meterRegistry;
+    private ConflictingOperation conflictingOperation;
+    private ConflictingOperation proxy;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        conflictingOperation = new ConflictingOperation();
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(conflictingOperation);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new ConflictRetryAspect(meterRegistry));
+        proxy = proxyFactory.getProxy();
+    }
+
+    @Test
+    public void retriesUntilConflictClears() {
+        conflictingOperation.conflictsRemaining = 2;
+
+        assertThat(proxy.run()).isEqualTo(3);
+        assertThat(meterRegistry.counter(
+            "wehaul.conflicts", "method", "ConflictingOperation.run", "outcome", "retried"
+        ).count()).isEqualTo(2);
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        conflictingOperation.conflictsRemaining = 5;
+
+        assertThatExceptionOfType(ObjectOptimisticLockingFailureException.class)
+            .isThrownBy(() -> proxy.run());
+        assertThat(conflictingOperation.attempts).isEqualTo(3);
+        assertThat(meterRegistry.counter(
+            "wehaul.conflicts", "method", "ConflictingOperation.run", "outcome", "exhausted"
+        ).count()).isEqualTo(1);
+    }
+
+    public static class ConflictingOperation {
+
+        int conflictsRemaining;
+        int attempts;
+
+        @RetryOnConflict(initialBackoffMillis = 1, maxBackoffMillis = 2)
+        public int run() {
+            attempts++;
+            if (conflictsRemaining-- > 0) {
+                throw new ObjectOptimisticLockingFailureException(ConflictingOperation.class, "some-id");
+            }
+            return attempts;
+        }
+    }
+}
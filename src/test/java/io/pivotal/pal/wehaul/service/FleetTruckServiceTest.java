@@ -1,9 +1,14 @@
 package io.pivotal.pal.wehaul.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.pivotal.pal.wehaul.domain.BatchItemResult;
+import io.pivotal.pal.wehaul.domain.InspectionSearchHit;
 import io.pivotal.pal.wehaul.domain.Truck;
 import io.pivotal.pal.wehaul.domain.TruckInspection;
 import io.pivotal.pal.wehaul.domain.TruckSinceInspection;
 import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.repository.FleetBatchRepository;
+import io.pivotal.pal.wehaul.repository.TruckInspectionArchiveRepository;
 import io.pivotal.pal.wehaul.repository.TruckInspectionRepository;
 import io.pivotal.pal.wehaul.repository.TruckRepository;
 import io.pivotal.pal.wehaul.repository.TruckSinceInspectionRepository;
@@ -15,8 +20,14 @@ import org.mockito.Captor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
@@ -31,20 +42,39 @@ public class FleetTruckServiceTest {
     @Mock
     private TruckInspectionRepository mockTruckInspectionRepository;
     @Mock
+    private TruckInspectionArchiveRepository mockTruckInspectionArchiveRepository;
+    @Mock
     private TruckSinceInspectionRepository mockTruckSinceInspectionRepository;
+    @Mock
+    private FleetBatchRepository mockFleetBatchRepository;
+    @Mock
+    private OdometerAccumulator mockOdometerAccumulator;
+    @Mock
+    private ApplicationEventPublisher mockEventPublisher;
     @Captor
     private ArgumentCaptor<Truck> truckCaptor;
     @Captor
+    private ArgumentCaptor<List<Truck>> truckListCaptor;
+    @Captor
     private ArgumentCaptor<TruckInspection> truckInspectionCaptor;
+    @Captor
+    private ArgumentCaptor<List<TruckInspection>> truckInspectionListCaptor;
 
+    private InspectionSearchIndex inspectionSearchIndex;
     private FleetTruckService fleetTruckService;
 
     @Before
     public void setUp() {
+        inspectionSearchIndex = new InspectionSearchIndex(mockTruckInspectionArchiveRepository, new SimpleMeterRegistry());
         fleetTruckService = new FleetTruckService(
             mockTruckRepository,
             mockTruckInspectionRepository,
-            mockTruckSinceInspectionRepository
+            mockTruckInspectionArchiveRepository,
+            mockTruckSinceInspectionRepository,
+            mockFleetBatchRepository,
+            mockOdometerAccumulator,
+            inspectionSearchIndex,
+            mockEventPublisher
         );
     }
 
@@ -57,21 +87,132 @@ public class FleetTruckServiceTest {
         assertThat(truckCaptor.getValue().getOdometerReading()).isEqualTo(1000);
     }
 
+    @Test
+    public void buyTrucks() {
+        when(mockTruckRepository.findAll(anyCollectionOf(String.class)))
+            .thenReturn(Collections.singletonList(new Truck("test-0003", 0)));
+
+        List<BatchItemResult> results = fleetTruckService.buyTrucks(Arrays.asList(
+            new Truck("test-0001", 1000),
+            new Truck("test-0002", -1),
+            new Truck("test-0003", 0),
+            new Truck("test-0001", 2000)
+        ).iterator());
+
+        assertThat(results).extracting(BatchItemResult::getKey)
+            .containsExactly("test-0001", "test-0002", "test-0003", "test-0001");
+        assertThat(results).extracting(BatchItemResult::isAccepted)
+            .containsExactly(true, false, false, false);
+
+        verify(mockFleetBatchRepository).insertTrucks(truckListCaptor.capture());
+        assertThat(truckListCaptor.getValue()).extracting(Truck::getVin).containsExactly("test-0001");
+    }
+
+    @Test
+    public void buyTrucks_rejectsUnreadableRecordsAndBlankVins_andKeepsReading() {
+        when(mockTruckRepository.findAll(anyCollectionOf(String.class))).thenReturn(Collections.emptyList());
+        Iterator<String> rows = Arrays.asList("test-0001", "unreadable", " ", "test-0002").iterator();
+        Iterator<Truck> trucks = new Iterator<Truck>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Truck next() {
+                String vin = rows.next();
+                if (vin.equals("unreadable")) {
+                    throw new IllegalArgumentException("Malformed CSV row: unreadable");
+                }
+                return new Truck(vin, 1000);
+            }
+        };
+
+        List<BatchItemResult> results = fleetTruckService.buyTrucks(trucks);
+
+        assertThat(results).extracting(BatchItemResult::getKey)
+            .containsExactly("test-0001", null, null, "test-0002");
+        assertThat(results).extracting(BatchItemResult::getError)
+            .containsExactly(null, "Malformed CSV row: unreadable", "Cannot buy a truck without a VIN", null);
+
+        verify(mockFleetBatchRepository).insertTrucks(truckListCaptor.capture());
+        assertThat(truckListCaptor.getValue()).extracting(Truck::getVin).containsExactly("test-0001", "test-0002");
+    }
+
+    @Test
+    public void returnFromInspections() {
+        Truck inInspection = new Truck("test-0001", 1000);
+        Truck rentable = new Truck("test-0002", 1000);
+        rentable.setStatus(TruckStatus.RENTABLE);
+        Truck concurrentlyReturned = new Truck("test-0004", 1000);
+        when(mockTruckRepository.findAll(anyCollectionOf(String.class)))
+            .thenReturn(Arrays.asList(inInspection, rentable, concurrentlyReturned));
+        when(mockFleetBatchRepository.returnFromInspections(any())).thenReturn(new boolean[]{true, false});
+
+        List<BatchItemResult> results = fleetTruckService.returnFromInspections(Arrays.asList(
+            new TruckInspection("test-0001", 2000, "some-notes"),
+            new TruckInspection("test-0002", 2000, "some-notes"),
+            new TruckInspection("test-0003", 2000, "some-notes"),
+            new TruckInspection("test-0004", 2000, "some-notes"),
+            new TruckInspection("test-0001", 3000, "some-notes"),
+            new TruckInspection("test-0005", 500, "some-notes")
+        ));
+
+        assertThat(results).extracting(BatchItemResult::getKey)
+            .containsExactly("test-0001", "test-0002", "test-0003", "test-0004", "test-0001", "test-0005");
+        assertThat(results).extracting(BatchItemResult::getError).containsExactly(
+            null,
+            "Cannot return truck from inspection while truck is RENTABLE",
+            "No truck found with VIN=test-0003",
+            "Truck with VIN=test-0004 changed during the request, try again",
+            "Duplicate VIN in request",
+            "No truck found with VIN=test-0005"
+        );
+
+        verify(mockFleetBatchRepository).returnFromInspections(truckInspectionListCaptor.capture());
+        assertThat(truckInspectionListCaptor.getValue())
+            .extracting(TruckInspection::getTruckVin)
+            .containsExactly("test-0001", "test-0004");
+        verify(mockEventPublisher).publishEvent(any(Object.class));
+    }
+
+    @Test
+    public void returnFromInspections_whenOdometerGoesBackwards() {
+        when(mockTruckRepository.findAll(anyCollectionOf(String.class)))
+            .thenReturn(Collections.singletonList(new Truck("test-0001", 5000)));
+
+        List<BatchItemResult> results = fleetTruckService.returnFromInspections(Collections.singletonList(
+            new TruckInspection("test-0001", 4000, "some-notes")
+        ));
+
+        assertThat(results).extracting(BatchItemResult::getError)
+            .containsExactly("Odometer reading cannot be less than previous reading");
+        verifyZeroInteractions(mockEventPublisher);
+    }
+
     @Test
     public void sendForInspection() {
-        // collaborator setup
-        Truck truck = new Truck("test-0001", 0);
-        truck.setStatus(TruckStatus.RENTABLE);
-        truck.setOdometerReading(1);
-        when(mockTruckRepository.findOne(any())).thenReturn(truck);
+        when(mockTruckRepository.updateStatus(any(), any(), any())).thenReturn(1);
 
         // method under test
-        fleetTruckService.sendForInspection(truck.getVin());
+        fleetTruckService.sendForInspection("test-0001");
 
         // verifications
-        InOrder inOrder = inOrder(mockTruckRepository);
-        inOrder.verify(mockTruckRepository).findOne(truck.getVin());
-        inOrder.verify(mockTruckRepository).save(truck);
+        verify(mockTruckRepository).updateStatus("test-0001", TruckStatus.RENTABLE, TruckStatus.IN_INSPECTION);
+        verifyNoMoreInteractions(mockTruckRepository);
+    }
+
+    @Test
+    public void sendForInspection_whenTruckNotRentable() {
+        Truck truck = new Truck("test-0001", 0);
+        truck.setStatus(TruckStatus.RENTED);
+        when(mockTruckRepository.findOne(any())).thenReturn(truck);
+
+        assertThatExceptionOfType(IllegalStateException.class)
+            .isThrownBy(() -> fleetTruckService.sendForInspection(truck.getVin()))
+            .withMessage("Cannot send truck for inspection while truck is RENTED");
+
+        verifyZeroInteractions(mockEventPublisher);
     }
 
     @Test
@@ -85,26 +226,39 @@ public class FleetTruckServiceTest {
     @Test
     public void returnFromInspection() {
         // collaborator setup
-        Truck truck = new Truck("test-0001", 0);
-        when(mockTruckRepository.findOne(any())).thenReturn(truck);
+        when(mockTruckRepository.updateStatusAndOdometer(any(), any(), any(), anyInt())).thenReturn(1);
 
         // method under test
-        fleetTruckService.returnFromInspection(truck.getVin(), "some-notes", 2);
+        fleetTruckService.returnFromInspection("test-0001", "some-notes", 2);
 
         // assertions + verifications
-        InOrder inOrder = inOrder(mockTruckRepository, mockTruckInspectionRepository);
-        inOrder.verify(mockTruckRepository).findOne(truck.getVin());
-        inOrder.verify(mockTruckRepository).save(truck);
-
-        assertThat(truck.getOdometerReading()).isEqualTo(2);
-
+        InOrder inOrder = inOrder(mockOdometerAccumulator, mockTruckRepository, mockTruckInspectionRepository);
+        inOrder.verify(mockOdometerAccumulator).flush("test-0001");
+        inOrder.verify(mockTruckRepository)
+            .updateStatusAndOdometer("test-0001", TruckStatus.IN_INSPECTION, TruckStatus.RENTABLE, 2);
         inOrder.verify(mockTruckInspectionRepository).save(truckInspectionCaptor.capture());
 
         TruckInspection createdEntry = truckInspectionCaptor.getValue();
         assertThat(createdEntry).isNotNull();
         assertThat(createdEntry.getOdometerReading()).isEqualTo(2);
         assertThat(createdEntry.getNotes()).isEqualTo("some-notes");
-        assertThat(createdEntry.getTruckVin()).isEqualTo(truck.getVin());
+        assertThat(createdEntry.getTruckVin()).isEqualTo("test-0001");
+
+        assertThat(inspectionSearchIndex.search("notes", 0, 10))
+            .extracting(InspectionSearchHit::getId)
+            .containsExactly(createdEntry.getId());
+    }
+
+    @Test
+    public void returnFromInspection_whenOdometerGoesBackwards() {
+        Truck truck = new Truck("test-0001", 5000);
+        when(mockTruckRepository.findOne(any())).thenReturn(truck);
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> fleetTruckService.returnFromInspection(truck.getVin(), "some-notes", 4000))
+            .withMessage("Odometer reading cannot be less than previous reading");
+
+        verifyZeroInteractions(mockTruckInspectionRepository);
     }
 
     @Test
@@ -128,4 +282,90 @@ public class FleetTruckServiceTest {
 
         verify(mockTruckSinceInspectionRepository).findAllTruckSinceInspections();
     }
+
+    @Test
+    public void findPage_startsFromFirstVin() {
+        Truck truck = new Truck("test-0001", 0);
+        when(mockTruckRepository.findAllByOrderByVinAsc(new PageRequest(0, 10)))
+            .thenReturn(Collections.singletonList(truck));
+
+        assertThat(fleetTruckService.findPage(null, 10)).containsExactly(truck);
+
+        verify(mockTruckRepository, never()).findByVinGreaterThanOrderByVinAsc(any(), any());
+    }
+
+    @Test
+    public void findPage_continuesAfterVin() {
+        Truck truck = new Truck("test-0002", 0);
+        when(mockTruckRepository.findByVinGreaterThanOrderByVinAsc("test-0001", new PageRequest(0, 10)))
+            .thenReturn(Collections.singletonList(truck));
+
+        assertThat(fleetTruckService.findPage("test-0001", 10)).containsExactly(truck);
+
+        verify(mockTruckRepository, never()).findAllByOrderByVinAsc(any());
+    }
+
+    @Test
+    public void findInspectionPage_startsWithArchivedInspections() {
+        Truck truck = new Truck("test-0001", 0);
+        when(mockTruckRepository.findOne(truck.getVin())).thenReturn(truck);
+        TruckInspection archived1 = new TruckInspection("test-0001", 1000, "some-notes");
+        TruckInspection archived2 = new TruckInspection("test-0001", 2000, "some-notes");
+        TruckInspection current = new TruckInspection("test-0001", 3000, "some-notes");
+        when(mockTruckInspectionArchiveRepository.findPage(truck.getVin(), null, 2))
+            .thenReturn(Arrays.asList(archived1, archived2));
+        when(mockTruckInspectionArchiveRepository.findPage(truck.getVin(), archived2.getId(), 2))
+            .thenReturn(Collections.emptyList());
+        when(mockTruckInspectionRepository.findByTruckVinOrderByOdometerReadingAscIdAsc(eq(truck.getVin()), any()))
+            .thenReturn(Collections.singletonList(current));
+
+        assertThat(fleetTruckService.findInspectionPage(truck.getVin(), null, 2)).containsExactly(archived1, archived2);
+        assertThat(fleetTruckService.findInspectionPage(truck.getVin(), archived2.getId(), 2)).containsExactly(current);
+    }
+
+    @Test
+    public void findInspectionPage_continuesAfterInspectionInTable() {
+        Truck truck = new Truck("test-0001", 0);
+        when(mockTruckRepository.findOne(truck.getVin())).thenReturn(truck);
+        TruckInspection lastSeen = new TruckInspection("test-0001", 3000, "some-notes");
+        TruckInspection next = new TruckInspection("test-0001", 4000, "some-notes");
+        when(mockTruckInspectionRepository.findOne(lastSeen.getId())).thenReturn(lastSeen);
+        when(mockTruckInspectionRepository.findByTruckVinAfter(any(), any(), any(), any()))
+            .thenReturn(Collections.singletonList(next));
+
+        assertThat(fleetTruckService.findInspectionPage(truck.getVin(), lastSeen.getId(), 10)).containsExactly(next);
+
+        verify(mockTruckInspectionRepository).findByTruckVinAfter(
+            eq(truck.getVin()),
+            eq(3000),
+            eq(lastSeen.getId()),
+            any()
+        );
+        // Archived inspections all come before it
+        verify(mockTruckInspectionArchiveRepository, never()).findPage(any(), any(), anyInt());
+    }
+
+    @Test
+    public void findInspectionPage_whenInspectionOfAnotherTruck() {
+        Truck truck = new Truck("test-0001", 0);
+        when(mockTruckRepository.findOne(truck.getVin())).thenReturn(truck);
+        TruckInspection otherTrucks = new TruckInspection("test-0002", 3000, "some-notes");
+        when(mockTruckInspectionRepository.findOne(otherTrucks.getId())).thenReturn(otherTrucks);
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> fleetTruckService.findInspectionPage(truck.getVin(), otherTrucks.getId(), 10))
+            .withMessage(String.format("No inspection found with id=%s for VIN=test-0001", otherTrucks.getId()));
+    }
+
+    @Test
+    public void findInspectionPage_whenInspectionUnknown() {
+        Truck truck = new Truck("test-0001", 0);
+        when(mockTruckRepository.findOne(truck.getVin())).thenReturn(truck);
+        UUID unknownId = UUID.randomUUID();
+        when(mockTruckInspectionArchiveRepository.findPage(truck.getVin(), unknownId, 10)).thenReturn(null);
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> fleetTruckService.findInspectionPage(truck.getVin(), unknownId, 10))
+            .withMessage(String.format("No inspection found with id=%s for VIN=test-0001", unknownId));
+    }
 }
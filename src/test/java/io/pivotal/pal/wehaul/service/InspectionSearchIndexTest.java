@@ -0,0 +1,107 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.pivotal.pal.wehaul.domain.InspectionSearchHit;
+import io.pivotal.pal.wehaul.domain.TruckInspection;
+import io.pivotal.pal.wehaul.repository.TruckInspectionArchiveRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InspectionSearchIndexTest {
+
+    @Mock
+    private TruckInspectionArchiveRepository mockTruckInspectionArchiveRepository;
+
+    private InspectionSearchIndex inspectionSearchIndex;
+
+    @Before
+    public void setUp() {
+        inspectionSearchIndex = new InspectionSearchIndex(mockTruckInspectionArchiveRepository, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void search_ranksCloserMatchesFirst() {
+        TruckInspection brakesOnly = new TruckInspection("test-0001", 1000, "Brakes worn");
+        TruckInspection brakesAndTires = new TruckInspection("test-0002", 1000, "Replaced brake pads, tires worn");
+        TruckInspection tiresOnly = new TruckInspection("test-0003", 1000, "Rotated tires and checked oil level");
+        TruckInspection neither = new TruckInspection("test-0004", 1000, "All good");
+        inspectionSearchIndex.index(brakesOnly);
+        inspectionSearchIndex.index(brakesAndTires);
+        inspectionSearchIndex.index(tiresOnly);
+        inspectionSearchIndex.index(neither);
+
+        assertThat(inspectionSearchIndex.search("brake", 0, 10))
+            .extracting(InspectionSearchHit::getTruckVin)
+            .containsExactly("test-0001", "test-0002");
+        assertThat(inspectionSearchIndex.search("brakes tire", 0, 10))
+            .extracting(InspectionSearchHit::getTruckVin)
+            .startsWith("test-0002")
+            .containsOnly("test-0001", "test-0002", "test-0003");
+        assertThat(inspectionSearchIndex.search("transmission", 0, 10)).isEmpty();
+    }
+
+    @Test
+    public void search_pagesThroughRankedHits() {
+        for (int i = 0; i < 5; i++) {
+            inspectionSearchIndex.index(new TruckInspection("test-000" + i, i, "tire " + i));
+        }
+
+        List<InspectionSearchHit> all = inspectionSearchIndex.search("tire", 0, 5);
+        List<InspectionSearchHit> firstPage = inspectionSearchIndex.search("tire", 0, 2);
+        List<InspectionSearchHit> lastPage = inspectionSearchIndex.search("tire", 4, 2);
+
+        assertThat(all).hasSize(5);
+        assertThat(firstPage).extracting(InspectionSearchHit::getId)
+            .containsExactly(all.get(0).getId(), all.get(1).getId());
+        assertThat(lastPage).extracting(InspectionSearchHit::getId)
+            .containsExactly(all.get(4).getId());
+        assertThat(inspectionSearchIndex.search("tire", 5, 2)).isEmpty();
+    }
+
+    @Test
+    public void search_whenQueryHasNoWords() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> inspectionSearchIndex.search(" ,. ", 0, 10))
+            .withMessage("Search query needs at least one word");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void rebuild_replacesIndexWithEveryInspection() {
+        TruckInspection inTable = new TruckInspection("test-0001", 2000, "tire pressure low");
+        TruckInspection archived = new TruckInspection("test-0001", 1000, "tire tread worn");
+        inspectionSearchIndex.index(new TruckInspection("test-0002", 1000, "tire since deleted"));
+        doAnswer(invocation -> {
+            Consumer<TruckInspection> consumer = (Consumer<TruckInspection>) invocation.getArguments()[0];
+            consumer.accept(inTable);
+            consumer.accept(archived);
+            // Seen again after being archived during the scan
+            consumer.accept(inTable);
+            return null;
+        }).when(mockTruckInspectionArchiveRepository).forEachInspection(any());
+
+        assertThat(inspectionSearchIndex.rebuild()).isEqualTo(2);
+
+        assertThat(inspectionSearchIndex.search("tire", 0, 10))
+            .extracting(InspectionSearchHit::getId)
+            .containsOnly(inTable.getId(), archived.getId());
+    }
+
+    @Test
+    public void tokenize_lowerCasesAndDropsPlurals() {
+        assertThat(InspectionSearchIndex.tokenize("Tires, BRAKES & glass; 4 bolts"))
+            .containsExactly("tire", "brake", "glass", "4", "bolt");
+    }
+}
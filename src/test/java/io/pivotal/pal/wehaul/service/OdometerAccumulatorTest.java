@@ -0,0 +1,171 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.pivotal.pal.wehaul.repository.FleetBatchRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OdometerAccumulatorTest {
+
+    @Mock
+    private FleetBatchRepository mockFleetBatchRepository;
+    @Captor
+    private ArgumentCaptor<Map<String, Long>> distancesCaptor;
+
+    private OdometerAccumulator odometerAccumulator;
+
+    @Before
+    public void setUp() {
+        odometerAccumulator = new OdometerAccumulator(mockFleetBatchRepository, true);
+    }
+
+    @Test
+    public void flush_sumsDistancesPerTruck() {
+        odometerAccumulator.add("test-0001", 10);
+        odometerAccumulator.add("test-0001", 5);
+        odometerAccumulator.add("test-0002", 7);
+
+        odometerAccumulator.flush();
+
+        verify(mockFleetBatchRepository).addOdometerDistances(distancesCaptor.capture());
+        assertThat(distancesCaptor.getValue())
+            .containsEntry("test-0001", 15L)
+            .containsEntry("test-0002", 7L)
+            .hasSize(2);
+
+        // nothing left to write
+        odometerAccumulator.flush();
+        verifyNoMoreInteractions(mockFleetBatchRepository);
+    }
+
+    @Test
+    public void flush_whenWriteFails_keepsDistances() {
+        odometerAccumulator.add("test-0001", 10);
+        doThrow(new QueryTimeoutException("timed out"))
+            .doNothing()
+            .when(mockFleetBatchRepository).addOdometerDistances(any());
+
+        odometerAccumulator.flush();
+        odometerAccumulator.add("test-0001", 5);
+        odometerAccumulator.flush();
+
+        verify(mockFleetBatchRepository, times(2)).addOdometerDistances(distancesCaptor.capture());
+        assertThat(distancesCaptor.getValue()).containsEntry("test-0001", 15L);
+    }
+
+    @Test
+    public void flushVin_writesOnlyThatTruck() {
+        odometerAccumulator.add("test-0001", 10);
+        odometerAccumulator.add("test-0002", 7);
+
+        odometerAccumulator.flush("test-0001");
+
+        verify(mockFleetBatchRepository).addOdometerDistances(Collections.singletonMap("test-0001", 10L));
+
+        odometerAccumulator.flush();
+        verify(mockFleetBatchRepository).addOdometerDistances(Collections.singletonMap("test-0002", 7L));
+    }
+
+    @Test
+    public void flushVin_whenWriteFails_rethrowsAndKeepsDistance() {
+        odometerAccumulator.add("test-0001", 10);
+        doThrow(new QueryTimeoutException("timed out"))
+            .when(mockFleetBatchRepository).addOdometerDistances(any());
+
+        assertThatExceptionOfType(QueryTimeoutException.class)
+            .isThrownBy(() -> odometerAccumulator.flush("test-0001"));
+
+        reset(mockFleetBatchRepository);
+        odometerAccumulator.flush();
+        verify(mockFleetBatchRepository).addOdometerDistances(Collections.singletonMap("test-0001", 10L));
+    }
+
+    @Test
+    public void flushVin_inTransactionThatRollsBack_keepsDistance() {
+        odometerAccumulator.add("test-0001", 10);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            odometerAccumulator.flush("test-0001");
+            TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        reset(mockFleetBatchRepository);
+        odometerAccumulator.flush();
+        verify(mockFleetBatchRepository).addOdometerDistances(Collections.singletonMap("test-0001", 10L));
+    }
+
+    @Test
+    public void flushVin_inTransactionThatCommits_doesNotWriteAgain() {
+        odometerAccumulator.add("test-0001", 10);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            odometerAccumulator.flush("test-0001");
+            TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        reset(mockFleetBatchRepository);
+        odometerAccumulator.flush();
+        verifyZeroInteractions(mockFleetBatchRepository);
+    }
+
+    @Test
+    public void flushVin_whileBatchFlushWritesSameTruck_waitsAndDoesNotWriteAgain() throws Exception {
+        odometerAccumulator.add("test-0001", 10);
+        CountDownLatch batchWriting = new CountDownLatch(1);
+        CountDownLatch batchMayCommit = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            batchWriting.countDown();
+            batchMayCommit.await();
+            return null;
+        }).when(mockFleetBatchRepository).addOdometerDistances(any());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> batchFlush = executor.submit(() -> odometerAccumulator.flush());
+            assertThat(batchWriting.await(5, TimeUnit.SECONDS)).isTrue();
+
+            Future<?> vinFlush = executor.submit(() -> odometerAccumulator.flush("test-0001"));
+            assertThatExceptionOfType(TimeoutException.class)
+                .isThrownBy(() -> vinFlush.get(200, TimeUnit.MILLISECONDS));
+
+            batchMayCommit.countDown();
+            batchFlush.get(5, TimeUnit.SECONDS);
+            vinFlush.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(mockFleetBatchRepository).addOdometerDistances(Collections.singletonMap("test-0001", 10L));
+        verifyNoMoreInteractions(mockFleetBatchRepository);
+    }
+}
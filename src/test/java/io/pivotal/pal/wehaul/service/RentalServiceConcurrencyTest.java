@@ -0,0 +1,87 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.pivotal.pal.wehaul.domain.Rental;
+import io.pivotal.pal.wehaul.domain.Truck;
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.repository.TruckRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DirtiesContext
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class RentalServiceConcurrencyTest {
+
+    private static final int TRUCKS = 64;
+    private static final int THREADS = 16;
+    private static final int RENTALS_PER_THREAD = 4;
+
+    @Autowired
+    private RentalService rentalService;
+
+    @Autowired
+    private TruckRepository truckRepository;
+
+    @Test
+    public void createRental_handsOutDistinctTrucksToConcurrentCallers() throws Exception {
+        List<Truck> trucks = new ArrayList<>();
+        for (int i = 0; i < TRUCKS; i++) {
+            Truck truck = new Truck(String.format("concurrent-%04d", i), 0);
+            truck.setStatus(TruckStatus.RENTABLE);
+            trucks.add(truck);
+        }
+        truckRepository.save(trucks);
+
+        Queue<Rental> rentals = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < RENTALS_PER_THREAD; j++) {
+                    try {
+                        rentals.add(rentalService.createRental("some-customer-name"));
+                    } catch (RuntimeException e) {
+                        // a lost race surfaces as a failed request, never as a double booking
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        Set<String> rentedVins = rentals.stream()
+            .map(Rental::getTruckVin)
+            .collect(Collectors.toSet());
+        assertThat(rentals).isNotEmpty();
+        assertThat(rentedVins).hasSameSizeAs(rentals);
+
+        Collection<String> reservedVins = new ArrayList<>();
+        truckRepository.findAll().forEach(truck -> {
+            if (truck.getStatus() == TruckStatus.RESERVED) {
+                reservedVins.add(truck.getVin());
+            }
+        });
+        assertThat(reservedVins).containsExactlyInAnyOrderElementsOf(rentedVins);
+    }
+}
@@ -0,0 +1,65 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.pivotal.pal.wehaul.domain.Rental;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.UUID;
+
+import static io.pivotal.pal.wehaul.jdbc.QueryBudget.expectAtMost;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Keeps the rental lifecycle to a fixed number of statements, so a change that adds a select per call shows
+ * up here rather than in production latency.
+ */
+@DirtiesContext
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class RentalServiceQueryBudgetTest {
+
+    @Autowired
+    private RentalService rentalService;
+
+    @Autowired
+    private FleetTruckService fleetTruckService;
+
+    @Test
+    public void rentalLifecycle_staysWithinItsQueryBudget() {
+        String vin = "budget-" + UUID.randomUUID().toString().substring(0, 8);
+        fleetTruckService.buyTruck(vin, 0);
+        fleetTruckService.returnFromInspection(vin, "ready", 0);
+
+        // Reserve a truck, then look up and insert the rental
+        Rental rental = expectAtMost(6, () -> rentalService.createRental("budget-customer"));
+        assertThat(rental).isNotNull();
+
+        // Find the rental, mark it picked up and move its truck on
+        expectAtMost(3, () -> rentalService.pickUp(rental.getConfirmationNumber()));
+        expectAtMost(3, () -> rentalService.dropOff(rental.getConfirmationNumber(), 42));
+    }
+
+    @Test
+    public void inspectionLifecycle_staysWithinItsQueryBudget() {
+        String vin = "budget-" + UUID.randomUUID().toString().substring(0, 8);
+
+        // Merge looks the truck up before inserting it
+        expectAtMost(2, () -> fleetTruckService.buyTruck(vin, 0));
+        expectAtMost(5, () -> fleetTruckService.returnFromInspection(vin, "ready", 0));
+
+        Rental rental = rentalService.createRental("budget-customer");
+        rentalService.pickUp(rental.getConfirmationNumber());
+        rentalService.dropOff(rental.getConfirmationNumber(), 42);
+
+        // The conditional status update only
+        expectAtMost(1, () -> fleetTruckService.sendForInspection(rental.getTruckVin()));
+        // Flush the buffered drop-off, update the truck, insert the inspection, then read and write its
+        // last-inspection projection row
+        // Any truck may have been rented, so read well past whatever its odometer shows
+        expectAtMost(5, () -> fleetTruckService.returnFromInspection(rental.getTruckVin(), "ready", 1_000_000));
+    }
+}
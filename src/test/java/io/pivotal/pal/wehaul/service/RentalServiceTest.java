@@ -1,8 +1,12 @@
 package io.pivotal.pal.wehaul.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.pivotal.pal.wehaul.domain.Rental;
 import io.pivotal.pal.wehaul.domain.Truck;
 import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.domain.TruckStatusChangedEvent;
+import io.pivotal.pal.wehaul.repository.FleetBatchRepository;
 import io.pivotal.pal.wehaul.repository.RentalRepository;
 import io.pivotal.pal.wehaul.repository.TruckRepository;
 import org.junit.Before;
@@ -10,14 +14,20 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -27,16 +37,41 @@ public class RentalServiceTest {
     private RentalRepository mockRentalRepository;
     @Mock
     private TruckRepository mockTruckRepository;
+    @Mock
+    private FleetBatchRepository mockFleetBatchRepository;
+    @Mock
+    private ApplicationEventPublisher mockEventPublisher;
     @Captor
     private ArgumentCaptor<Rental> rentalCaptor;
     @Captor
-    private ArgumentCaptor<Truck> truckCaptor;
+    private ArgumentCaptor<TruckStatusChangedEvent> eventCaptor;
 
+    private TruckStatusIndex truckStatusIndex;
+    private ReservationSweeper reservationSweeper;
+    private MeterRegistry meterRegistry;
     private RentalService rentalService;
 
     @Before
     public void setUp() {
-        rentalService = new RentalService(mockRentalRepository, mockTruckRepository);
+        truckStatusIndex = new TruckStatusIndex(mockTruckRepository);
+        meterRegistry = new SimpleMeterRegistry();
+        reservationSweeper = new ReservationSweeper(
+            mockFleetBatchRepository,
+            mockRentalRepository,
+            mockEventPublisher,
+            60000,
+            500,
+            meterRegistry
+        );
+        rentalService = new RentalService(
+            mockRentalRepository,
+            mockTruckRepository,
+            truckStatusIndex,
+            new OdometerAccumulator(mockFleetBatchRepository, false),
+            reservationSweeper,
+            mockEventPublisher,
+            meterRegistry
+        );
     }
 
     @Test
@@ -44,7 +79,9 @@ public class RentalServiceTest {
         Truck truck = new Truck("test-0001", 0);
         truck.setStatus(TruckStatus.RENTABLE);
         truck.setOdometerReading(1);
-        when(mockTruckRepository.findTop1ByStatus(any())).thenReturn(truck);
+        when(mockTruckRepository.findVinsByStatus(any(), any()))
+            .thenReturn(Collections.singletonList(truck.getVin()));
+        when(mockTruckRepository.updateStatus(any(), any(), any())).thenReturn(1);
 
         Rental rental = new Rental("some-customer-name", truck.getVin());
         when(mockRentalRepository.findOne(any())).thenReturn(rental);
@@ -52,62 +89,128 @@ public class RentalServiceTest {
         // method under test
         rentalService.createRental(rental.getCustomerName());
 
-        // Verify the truck and rental repo were used
-        verify(mockTruckRepository).findTop1ByStatus(TruckStatus.RENTABLE);
-        verify(mockTruckRepository).save(truckCaptor.capture());
+        // Truck should now be reserved, guarded on it still being rentable
+        verify(mockTruckRepository).findVinsByStatus(eq(TruckStatus.RENTABLE), any());
+        verify(mockTruckRepository).updateStatus(truck.getVin(), TruckStatus.RENTABLE, TruckStatus.RESERVED);
         verify(mockRentalRepository).save(rentalCaptor.capture());
 
-        // Truck should now be reserved
-        Truck savedTruck = truckCaptor.getValue();
-        assertThat(savedTruck.getStatus()).isEqualTo(TruckStatus.RESERVED);
-
         // Rental should now have confirmation number, and a ref to the truck by id
         Rental savedRental = rentalCaptor.getValue();
         assertThat(savedRental.getConfirmationNumber()).isNotNull();
         assertThat(savedRental.getTruckVin()).isEqualTo(truck.getVin());
+        assertThat(savedRental.getReservedAt()).isNotNull();
+        assertThat(reservationSweeper.getPendingCount()).isEqualTo(1);
+
+        verify(mockEventPublisher).publishEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().getPreviousStatus()).isEqualTo(TruckStatus.RENTABLE);
+        assertThat(eventCaptor.getValue().getStatus()).isEqualTo(TruckStatus.RESERVED);
+    }
+
+    @Test
+    public void create_claimsTruckFromIndex() {
+        truckStatusIndex.onStatusChanged(new TruckStatusChangedEvent("test-0001", null, TruckStatus.RENTABLE));
+        when(mockTruckRepository.updateStatus(any(), any(), any())).thenReturn(1);
+
+        rentalService.createRental("some-customer-name");
+
+        verify(mockTruckRepository).updateStatus("test-0001", TruckStatus.RENTABLE, TruckStatus.RESERVED);
+        verify(mockTruckRepository, never()).findVinsByStatus(any(), any());
+        verify(mockRentalRepository).save(rentalCaptor.capture());
+        assertThat(rentalCaptor.getValue().getTruckVin()).isEqualTo("test-0001");
+    }
+
+    @Test
+    public void create_whenCandidateTakenConcurrently() {
+        when(mockTruckRepository.findVinsByStatus(any(), any()))
+            .thenReturn(Arrays.asList("test-0001", "test-0002"));
+        when(mockTruckRepository.updateStatus(eq("test-0001"), any(), any())).thenReturn(0);
+        when(mockTruckRepository.updateStatus(eq("test-0002"), any(), any())).thenReturn(1);
+
+        rentalService.createRental("some-customer-name");
+
+        verify(mockRentalRepository).save(rentalCaptor.capture());
+        assertThat(rentalCaptor.getValue().getTruckVin()).isEqualTo("test-0002");
     }
 
     @Test
     public void create_whenNoTruckRentable() {
-        when(mockTruckRepository.findTop1ByStatus(any())).thenReturn(null);
+        when(mockTruckRepository.findVinsByStatus(any(), any())).thenReturn(Collections.emptyList());
 
         assertThatExceptionOfType(IllegalStateException.class)
             .isThrownBy(() -> rentalService.createRental("some-customer-name"))
             .withMessage("No trucks available to rent");
 
-        verify(mockTruckRepository).findTop1ByStatus(TruckStatus.RENTABLE);
+        verify(mockTruckRepository).findVinsByStatus(eq(TruckStatus.RENTABLE), any());
         verifyNoMoreInteractions(mockTruckRepository);
 
         verifyZeroInteractions(mockRentalRepository);
+
+        assertThat(meterRegistry.counter("wehaul.rentals.unavailable").count()).isEqualTo(1);
     }
 
     @Test
-    public void pickUp() {
-        // set up confirmed rental
-        Truck truck = new Truck("test-0001", 1000);
-        truck.setStatus(TruckStatus.RENTABLE);
-        truck.setOdometerReading(2000);
-        when(mockTruckRepository.findTop1ByStatus(any())).thenReturn(truck);
-        when(mockTruckRepository.findOne(any())).thenReturn(truck);
+    public void create_whenEveryCandidateTakenConcurrently() {
+        when(mockTruckRepository.findVinsByStatus(any(), any()))
+            .thenReturn(Collections.singletonList("test-0001"));
+        when(mockTruckRepository.updateStatus(anyString(), any(), any())).thenReturn(0);
 
-        Rental rental = new Rental("some-customer-name", truck.getVin());
-        when(mockRentalRepository.findOne(any())).thenReturn(rental);
+        assertThatExceptionOfType(IllegalStateException.class)
+            .isThrownBy(() -> rentalService.createRental("some-customer-name"))
+            .withMessage("No trucks available to rent");
 
-        rentalService.createRental(rental.getCustomerName());
+        verifyZeroInteractions(mockRentalRepository);
+    }
+
+    @Test
+    public void pickUp() {
+        Rental rental = new Rental("some-customer-name", "test-0001");
+        when(mockRentalRepository.findOne(any())).thenReturn(rental);
+        when(mockRentalRepository.markPickedUp(any())).thenReturn(1);
+        when(mockTruckRepository.updateStatus(any(), any(), any())).thenReturn(1);
 
         // method under test
         rentalService.pickUp(rental.getConfirmationNumber());
 
-        // assertions + verifications
-        assertThat(rental.getDistanceTraveled()).isEqualTo(0);
+        // verifications
+        InOrder inOrder = inOrder(mockRentalRepository, mockTruckRepository);
+        inOrder.verify(mockRentalRepository).findOne(rental.getConfirmationNumber());
+        inOrder.verify(mockRentalRepository).markPickedUp(rental.getConfirmationNumber());
+        inOrder.verify(mockTruckRepository).updateStatus("test-0001", TruckStatus.RESERVED, TruckStatus.RENTED);
+
+        verify(mockTruckRepository, never()).save(any(Truck.class));
+        verify(mockEventPublisher).publishEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().getStatus()).isEqualTo(TruckStatus.RENTED);
+    }
+
+    @Test
+    public void pickUp_whenAlreadyPickedUp() {
+        Rental rental = new Rental("some-customer-name", "test-0001");
+        when(mockRentalRepository.findOne(any())).thenReturn(rental);
+        when(mockRentalRepository.markPickedUp(any())).thenReturn(0);
+
+        assertThatExceptionOfType(IllegalStateException.class)
+            .isThrownBy(() -> rentalService.pickUp(rental.getConfirmationNumber()))
+            .withMessage("Rental has already been picked up");
+
+        verifyZeroInteractions(mockTruckRepository);
+    }
+
+    @Test
+    public void pickUp_whenTruckNotReserved() {
+        Truck truck = new Truck("test-0001", 0);
+        truck.setStatus(TruckStatus.RENTABLE);
+        when(mockTruckRepository.findOne(any())).thenReturn(truck);
 
-        verify(mockRentalRepository).findOne(rental.getConfirmationNumber());
-        verify(mockRentalRepository).save(rental);
+        Rental rental = new Rental("some-customer-name", truck.getVin());
+        when(mockRentalRepository.findOne(any())).thenReturn(rental);
+        when(mockRentalRepository.markPickedUp(any())).thenReturn(1);
+        when(mockTruckRepository.updateStatus(any(), any(), any())).thenReturn(0);
 
-        assertThat(truck.getStatus()).isEqualTo(TruckStatus.RENTED);
+        assertThatExceptionOfType(IllegalStateException.class)
+            .isThrownBy(() -> rentalService.pickUp(rental.getConfirmationNumber()))
+            .withMessage("Cannot pick up truck while truck is RENTABLE");
 
-        verify(mockTruckRepository).findOne(truck.getVin());
-        verify(mockTruckRepository, times(2)).save(truck);
+        verifyZeroInteractions(mockEventPublisher);
     }
 
     @Test
@@ -126,32 +229,101 @@ public class RentalServiceTest {
     @Test
     public void dropOff() {
         // set up rental to picked up state
-        Truck truck = new Truck("test-0001", 0);
-        truck.setStatus(TruckStatus.RENTABLE);
-        truck.setOdometerReading(1);
-        when(mockTruckRepository.findTop1ByStatus(any())).thenReturn(truck);
-        when(mockTruckRepository.findOne(any())).thenReturn(truck);
-
-        Rental rental = new Rental("some-customer-name", truck.getVin());
+        Rental rental = new Rental("some-customer-name", "test-0001");
+        rental.setDistanceTraveled(0);
         when(mockRentalRepository.findOne(any())).thenReturn(rental);
-
-        rentalService.createRental("some-customer-name");
-        rentalService.pickUp(rental.getConfirmationNumber());
+        when(mockRentalRepository.markDroppedOff(any(), anyInt())).thenReturn(1);
+        when(mockTruckRepository.updateStatusAndAddDistance(any(), any(), any(), anyInt())).thenReturn(1);
 
         // method under test
         int distanceTraveled = 1000000;
         rentalService.dropOff(rental.getConfirmationNumber(), distanceTraveled);
 
         // assertions + verifications
-        assertThat(rental.getDistanceTraveled()).isEqualTo(distanceTraveled);
+        verify(mockRentalRepository).markDroppedOff(rental.getConfirmationNumber(), distanceTraveled);
+
+        // truck is made rentable and its odometer advanced in the same statement
+        verify(mockTruckRepository).updateStatusAndAddDistance(
+            "test-0001",
+            TruckStatus.RENTED,
+            TruckStatus.RENTABLE,
+            distanceTraveled
+        );
+        verify(mockTruckRepository, never()).findOne(any());
+        verify(mockTruckRepository, never()).save(any(Truck.class));
+        verify(mockEventPublisher).publishEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().getStatus()).isEqualTo(TruckStatus.RENTABLE);
+    }
 
-        verify(mockTruckRepository, times(3)).save(truckCaptor.capture());
-        verify(mockRentalRepository, times(3)).save(rentalCaptor.capture());
+    @Test
+    public void dropOff_whenBuffered() {
+        rentalService = new RentalService(
+            mockRentalRepository,
+            mockTruckRepository,
+            truckStatusIndex,
+            new OdometerAccumulator(mockFleetBatchRepository, true),
+            reservationSweeper,
+            mockEventPublisher,
+            meterRegistry
+        );
+
+        Rental rental = new Rental("some-customer-name", "test-0001");
+        rental.setDistanceTraveled(0);
+        when(mockRentalRepository.findOne(any())).thenReturn(rental);
+        when(mockRentalRepository.markDroppedOff(any(), anyInt())).thenReturn(1);
+        when(mockTruckRepository.updateStatus(any(), any(), any())).thenReturn(1);
 
-        // assert on truck is Rentable
-        Truck savedTruck = truckCaptor.getValue();
-        assertThat(savedTruck.getStatus()).isEqualTo(TruckStatus.RENTABLE);
-        assertThat(savedTruck.getOdometerReading()).isEqualTo(1000000 + 1);
+        rentalService.dropOff(rental.getConfirmationNumber(), 10);
+
+        verify(mockTruckRepository).updateStatus("test-0001", TruckStatus.RENTED, TruckStatus.RENTABLE);
+        verify(mockTruckRepository, never()).updateStatusAndAddDistance(any(), any(), any(), anyInt());
+        verifyZeroInteractions(mockFleetBatchRepository);
+    }
+
+    @Test
+    public void dropOff_whenTruckNotRented() {
+        Truck truck = new Truck("test-0001", 1);
+        truck.setStatus(TruckStatus.IN_INSPECTION);
+        when(mockTruckRepository.findOne(any())).thenReturn(truck);
+
+        Rental rental = new Rental("some-customer-name", truck.getVin());
+        rental.setDistanceTraveled(0);
+        when(mockRentalRepository.findOne(any())).thenReturn(rental);
+        when(mockRentalRepository.markDroppedOff(any(), anyInt())).thenReturn(1);
+        when(mockTruckRepository.updateStatusAndAddDistance(any(), any(), any(), anyInt())).thenReturn(0);
+
+        assertThatExceptionOfType(IllegalStateException.class)
+            .isThrownBy(() -> rentalService.dropOff(rental.getConfirmationNumber(), 10))
+            .withMessage("Cannot dropOff truck while truck is IN_INSPECTION");
+
+        verifyZeroInteractions(mockEventPublisher);
+    }
+
+    @Test
+    public void dropOff_whenNotPickedUp() {
+        Rental rental = new Rental("some-customer-name", "test-0001");
+        when(mockRentalRepository.findOne(any())).thenReturn(rental);
+        when(mockRentalRepository.markDroppedOff(any(), anyInt())).thenReturn(0);
+
+        assertThatExceptionOfType(IllegalStateException.class)
+            .isThrownBy(() -> rentalService.dropOff(rental.getConfirmationNumber(), 10))
+            .withMessage("Cannot drop off before picking up rental");
+
+        verifyZeroInteractions(mockTruckRepository);
+    }
+
+    @Test
+    public void dropOff_whenAlreadyDroppedOff() {
+        Rental rental = new Rental("some-customer-name", "test-0001");
+        rental.setDistanceTraveled(10);
+        when(mockRentalRepository.findOne(any())).thenReturn(rental);
+        when(mockRentalRepository.markDroppedOff(any(), anyInt())).thenReturn(0);
+
+        assertThatExceptionOfType(IllegalStateException.class)
+            .isThrownBy(() -> rentalService.dropOff(rental.getConfirmationNumber(), 10))
+            .withMessage("Rental is already dropped off");
+
+        verifyZeroInteractions(mockTruckRepository);
     }
 
     @Test
@@ -167,4 +339,66 @@ public class RentalServiceTest {
         verifyNoMoreInteractions(mockRentalRepository);
         verifyZeroInteractions(mockTruckRepository);
     }
+
+    @Test
+    public void findPage_startsFromFirstConfirmationNumber() {
+        Rental rental = new Rental("some-customer-name", "test-0001");
+        when(mockRentalRepository.findAllByOrderByConfirmationNumberAsc(new PageRequest(0, 10)))
+            .thenReturn(Collections.singletonList(rental));
+
+        assertThat(rentalService.findPage(null, 10)).containsExactly(rental);
+
+        verify(mockRentalRepository, never()).findByConfirmationNumberGreaterThanOrderByConfirmationNumberAsc(any(), any());
+    }
+
+    @Test
+    public void findPage_continuesAfterConfirmationNumber() {
+        Rental rental = new Rental("some-customer-name", "test-0001");
+        UUID after = UUID.randomUUID();
+        when(mockRentalRepository.findByConfirmationNumberGreaterThanOrderByConfirmationNumberAsc(
+            after,
+            new PageRequest(0, 10)
+        )).thenReturn(Collections.singletonList(rental));
+
+        assertThat(rentalService.findPage(after, 10)).containsExactly(rental);
+
+        verify(mockRentalRepository, never()).findAllByOrderByConfirmationNumberAsc(any());
+    }
+
+    @Test
+    public void findPageByCustomerNamePrefix_escapesWildcards() {
+        Rental rental = new Rental("50%_off!", "test-0001");
+        when(mockRentalRepository.findByCustomerNamePattern(anyString(), any()))
+            .thenReturn(Collections.singletonList(rental));
+
+        assertThat(rentalService.findPageByCustomerNamePrefix("50%_off!", null, 10)).containsExactly(rental);
+
+        verify(mockRentalRepository).findByCustomerNamePattern(eq("50!%!_off!!%"), any());
+    }
+
+    @Test
+    public void findPageByCustomerNamePrefix_continuesFromLastRentalSeen() {
+        Rental lastSeen = new Rental("smith", "test-0001");
+        Rental next = new Rental("smithers", "test-0002");
+        when(mockRentalRepository.findOne(lastSeen.getConfirmationNumber())).thenReturn(lastSeen);
+        when(mockRentalRepository.findByCustomerNamePatternAfter(anyString(), anyString(), any(), any()))
+            .thenReturn(Collections.singletonList(next));
+
+        assertThat(rentalService.findPageByCustomerNamePrefix("smi", lastSeen.getConfirmationNumber(), 10))
+            .containsExactly(next);
+
+        verify(mockRentalRepository).findByCustomerNamePatternAfter(
+            eq("smi%"),
+            eq("smith"),
+            eq(lastSeen.getConfirmationNumber()),
+            any()
+        );
+    }
+
+    @Test
+    public void findPageByCustomerNamePrefix_whenPrefixEmpty() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> rentalService.findPageByCustomerNamePrefix("", null, 10))
+            .withMessage("Customer name prefix cannot be empty");
+    }
 }
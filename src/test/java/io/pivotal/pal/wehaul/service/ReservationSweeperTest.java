@@ -0,0 +1,122 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.pivotal.pal.wehaul.domain.Rental;
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.domain.TruckStatusChangedEvent;
+import io.pivotal.pal.wehaul.repository.FleetBatchRepository;
+import io.pivotal.pal.wehaul.repository.RentalRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReservationSweeperTest {
+
+    @Mock
+    private FleetBatchRepository mockFleetBatchRepository;
+    @Mock
+    private RentalRepository mockRentalRepository;
+    @Mock
+    private ApplicationEventPublisher mockEventPublisher;
+    @Captor
+    private ArgumentCaptor<List<Rental>> rentalListCaptor;
+    @Captor
+    private ArgumentCaptor<TruckStatusChangedEvent> eventCaptor;
+
+    private MeterRegistry meterRegistry;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void sweep_releasesExpiredReservations() {
+        ReservationSweeper reservationSweeper = sweeperWithTtl(0);
+        Rental expired = new Rental("some-customer-name", "test-0001");
+        Rental pickedUp = new Rental("some-customer-name", "test-0002");
+        reservationSweeper.track(expired);
+        reservationSweeper.track(pickedUp);
+        when(mockFleetBatchRepository.expireReservations(any())).thenReturn(new boolean[]{true, false});
+
+        int released = reservationSweeper.sweep();
+
+        assertThat(released).isEqualTo(1);
+        verify(mockFleetBatchRepository).expireReservations(rentalListCaptor.capture());
+        assertThat(rentalListCaptor.getValue()).hasSize(2);
+
+        verify(mockEventPublisher).publishEvent(eventCaptor.capture());
+        TruckStatusChangedEvent event = eventCaptor.getValue();
+        assertThat(event.getVin()).isEqualTo(rentalListCaptor.getValue().get(0).getTruckVin());
+        assertThat(event.getPreviousStatus()).isEqualTo(TruckStatus.RESERVED);
+        assertThat(event.getStatus()).isEqualTo(TruckStatus.RENTABLE);
+
+        assertThat(reservationSweeper.getPendingCount()).isEqualTo(0);
+        assertThat(meterRegistry.counter("wehaul.reservations.released").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void sweep_leavesReservationsNotYetDue() {
+        ReservationSweeper reservationSweeper = sweeperWithTtl(60000);
+        reservationSweeper.track(new Rental("some-customer-name", "test-0001"));
+
+        assertThat(reservationSweeper.sweep()).isEqualTo(0);
+
+        verifyZeroInteractions(mockFleetBatchRepository, mockEventPublisher);
+        assertThat(reservationSweeper.getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void sweep_whenDatabaseFails_keepsReservations() {
+        ReservationSweeper reservationSweeper = sweeperWithTtl(0);
+        reservationSweeper.track(new Rental("some-customer-name", "test-0001"));
+        when(mockFleetBatchRepository.expireReservations(any()))
+            .thenThrow(new QueryTimeoutException("timed out"))
+            .thenReturn(new boolean[]{true});
+
+        assertThat(reservationSweeper.sweep()).isEqualTo(0);
+        assertThat(reservationSweeper.getPendingCount()).isEqualTo(1);
+
+        assertThat(reservationSweeper.sweep()).isEqualTo(1);
+        assertThat(reservationSweeper.getPendingCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void load_tracksOutstandingReservations() {
+        ReservationSweeper reservationSweeper = sweeperWithTtl(60000);
+        when(mockRentalRepository.findOutstandingReservations()).thenReturn(Arrays.asList(
+            new Rental("some-customer-name", "test-0001"),
+            new Rental("some-customer-name", "test-0002")
+        ));
+
+        reservationSweeper.load();
+
+        assertThat(reservationSweeper.getPendingCount()).isEqualTo(2);
+    }
+
+    private ReservationSweeper sweeperWithTtl(long ttlMillis) {
+        return new ReservationSweeper(
+            mockFleetBatchRepository,
+            mockRentalRepository,
+            mockEventPublisher,
+            ttlMillis,
+            500,
+            meterRegistry
+        );
+    }
+}
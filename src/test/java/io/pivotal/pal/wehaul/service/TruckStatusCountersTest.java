@@ -0,0 +1,77 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.domain.TruckStatusChangedEvent;
+import io.pivotal.pal.wehaul.repository.TruckRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TruckStatusCountersTest {
+
+    @Mock
+    private TruckRepository mockTruckRepository;
+
+    private TruckStatusCounters truckStatusCounters;
+
+    @Before
+    public void setUp() {
+        truckStatusCounters = new TruckStatusCounters(mockTruckRepository);
+    }
+
+    @Test
+    public void onStatusChanged() {
+        truckStatusCounters.onStatusChanged(new TruckStatusChangedEvent("test-0001", null, TruckStatus.IN_INSPECTION));
+        truckStatusCounters.onStatusChanged(new TruckStatusChangedEvent("test-0002", null, TruckStatus.IN_INSPECTION));
+        truckStatusCounters.onStatusChanged(
+            new TruckStatusChangedEvent("test-0001", TruckStatus.IN_INSPECTION, TruckStatus.RENTABLE)
+        );
+
+        assertThat(truckStatusCounters.counts())
+            .containsEntry(TruckStatus.IN_INSPECTION, 1L)
+            .containsEntry(TruckStatus.RENTABLE, 1L)
+            .containsEntry(TruckStatus.RESERVED, 0L)
+            .containsEntry(TruckStatus.RENTED, 0L);
+    }
+
+    @Test
+    public void reconcile() {
+        when(mockTruckRepository.countByStatus()).thenReturn(Arrays.asList(
+            new Object[]{TruckStatus.RENTABLE, 3L},
+            new Object[]{TruckStatus.RENTED, 1L}
+        ));
+        truckStatusCounters.onStatusChanged(new TruckStatusChangedEvent("test-0001", null, TruckStatus.RENTABLE));
+        truckStatusCounters.onStatusChanged(new TruckStatusChangedEvent("test-0002", null, TruckStatus.RESERVED));
+
+        long drift = truckStatusCounters.reconcile();
+
+        assertThat(drift).isEqualTo(4);
+        assertThat(truckStatusCounters.counts())
+            .containsEntry(TruckStatus.RENTABLE, 3L)
+            .containsEntry(TruckStatus.RESERVED, 0L)
+            .containsEntry(TruckStatus.RENTED, 1L);
+        assertThat(truckStatusCounters.reconcile()).isEqualTo(0);
+    }
+
+    @Test
+    public void count_neverNegative() {
+        when(mockTruckRepository.countByStatus()).thenReturn(Collections.emptyList());
+        truckStatusCounters.reconcile();
+
+        truckStatusCounters.onStatusChanged(
+            new TruckStatusChangedEvent("test-0001", TruckStatus.RENTED, TruckStatus.RENTABLE)
+        );
+
+        assertThat(truckStatusCounters.count(TruckStatus.RENTED)).isEqualTo(0);
+        assertThat(truckStatusCounters.count(TruckStatus.RENTABLE)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,253 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.domain.TruckStatusChange;
+import io.pivotal.pal.wehaul.domain.TruckStatusChangedEvent;
+import io.pivotal.pal.wehaul.domain.TruckStatusSnapshot;
+import io.pivotal.pal.wehaul.repository.TruckRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TruckStatusFeedTest {
+
+    @Mock
+    private TruckRepository mockTruckRepository;
+
+    private TruckStatusFeed truckStatusFeed;
+
+    @Before
+    public void setUp() {
+        when(mockTruckRepository.findAllVinsAndStatuses()).thenReturn(Arrays.asList(
+            new Object[]{"test-0001", TruckStatus.RENTABLE},
+            new Object[]{"test-0002", TruckStatus.IN_INSPECTION}
+        ));
+        truckStatusFeed = new TruckStatusFeed(mockTruckRepository, 4, 2, 1, 100, new SimpleMeterRegistry());
+        truckStatusFeed.load();
+    }
+
+    @After
+    public void tearDown() {
+        truckStatusFeed.shutdown();
+    }
+
+    @Test
+    public void subscribe_sendsSnapshotThenChanges() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        truckStatusFeed.subscribe(null, sink);
+
+        TruckStatusSnapshot snapshot = (TruckStatusSnapshot) sink.next();
+        assertThat(snapshot.getSequence()).isEqualTo(0);
+        assertThat(snapshot.getStatuses())
+            .containsEntry("test-0001", TruckStatus.RENTABLE)
+            .containsEntry("test-0002", TruckStatus.IN_INSPECTION);
+
+        truckStatusFeed.onStatusChanged(
+            new TruckStatusChangedEvent("test-0001", TruckStatus.RENTABLE, TruckStatus.RENTED)
+        );
+
+        TruckStatusChange change = (TruckStatusChange) sink.next();
+        assertThat(change.getSequence()).isEqualTo(1);
+        assertThat(change.getVin()).isEqualTo("test-0001");
+        assertThat(change.getPreviousStatus()).isEqualTo(TruckStatus.RENTABLE);
+        assertThat(change.getStatus()).isEqualTo(TruckStatus.RENTED);
+    }
+
+    @Test
+    public void subscribe_withResumeToken_sendsOnlyMissedChanges() throws Exception {
+        truckStatusFeed.onStatusChanged(
+            new TruckStatusChangedEvent("test-0001", TruckStatus.RENTABLE, TruckStatus.RENTED)
+        );
+        truckStatusFeed.onStatusChanged(
+            new TruckStatusChangedEvent("test-0002", TruckStatus.IN_INSPECTION, TruckStatus.RENTABLE)
+        );
+
+        RecordingSink sink = new RecordingSink();
+        truckStatusFeed.subscribe(truckStatusFeed.resumeToken(1), sink);
+
+        TruckStatusChange change = (TruckStatusChange) sink.next();
+        assertThat(change.getSequence()).isEqualTo(2);
+        assertThat(change.getVin()).isEqualTo("test-0002");
+        assertThat(sink.poll()).isNull();
+    }
+
+    @Test
+    public void subscribe_whenResumeTokenTooOld_sendsSnapshot() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            truckStatusFeed.onStatusChanged(new TruckStatusChangedEvent(
+                "test-0001",
+                i % 2 == 0 ? TruckStatus.RENTABLE : TruckStatus.RENTED,
+                i % 2 == 0 ? TruckStatus.RENTED : TruckStatus.RENTABLE
+            ));
+        }
+
+        RecordingSink sink = new RecordingSink();
+        truckStatusFeed.subscribe(truckStatusFeed.resumeToken(1), sink);
+
+        TruckStatusSnapshot snapshot = (TruckStatusSnapshot) sink.next();
+        assertThat(snapshot.getSequence()).isEqualTo(6);
+        assertThat(snapshot.getStatuses()).containsEntry("test-0001", TruckStatus.RENTABLE);
+    }
+
+    @Test
+    public void subscribe_withResumeTokenFromEarlierRun_sendsSnapshot() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        truckStatusFeed.subscribe("1:0", sink);
+
+        assertThat(sink.next()).isInstanceOf(TruckStatusSnapshot.class);
+    }
+
+    @Test
+    public void slowSubscriber_getsMergedChanges() throws Exception {
+        BlockingSink sink = new BlockingSink();
+        truckStatusFeed.subscribe(null, sink);
+        sink.awaitFirstEvent();
+
+        truckStatusFeed.onStatusChanged(
+            new TruckStatusChangedEvent("test-0001", TruckStatus.RENTABLE, TruckStatus.RENTED)
+        );
+        truckStatusFeed.onStatusChanged(
+            new TruckStatusChangedEvent("test-0001", TruckStatus.RENTED, TruckStatus.RENTABLE)
+        );
+        sink.release();
+
+        assertThat(sink.next()).isInstanceOf(TruckStatusSnapshot.class);
+        TruckStatusChange change = (TruckStatusChange) sink.next();
+        assertThat(change.getSequence()).isEqualTo(2);
+        assertThat(change.getPreviousStatus()).isEqualTo(TruckStatus.RENTABLE);
+        assertThat(change.getStatus()).isEqualTo(TruckStatus.RENTABLE);
+        assertThat(sink.poll()).isNull();
+    }
+
+    @Test
+    public void slowSubscriber_whenTooFarBehind_getsNewSnapshot() throws Exception {
+        BlockingSink sink = new BlockingSink();
+        truckStatusFeed.subscribe(null, sink);
+        sink.awaitFirstEvent();
+
+        List<String> vins = Arrays.asList("test-0001", "test-0002", "test-0003");
+        for (String vin : vins) {
+            truckStatusFeed.onStatusChanged(new TruckStatusChangedEvent(vin, null, TruckStatus.IN_INSPECTION));
+        }
+        sink.release();
+
+        assertThat(sink.next()).isInstanceOf(TruckStatusSnapshot.class);
+        TruckStatusSnapshot resync = (TruckStatusSnapshot) sink.next();
+        assertThat(resync.getSequence()).isEqualTo(3);
+        assertThat(resync.getStatuses()).containsKeys("test-0001", "test-0002", "test-0003");
+        assertThat(sink.poll()).isNull();
+    }
+
+    @Test
+    public void subscriber_whenSendFails_isRemoved() throws Exception {
+        CountDownLatch failed = new CountDownLatch(1);
+        truckStatusFeed.subscribe(null, new TruckStatusFeed.Sink() {
+            @Override
+            public void snapshot(TruckStatusSnapshot snapshot) throws IOException {
+                failed.countDown();
+                throw new IOException("connection reset");
+            }
+
+            @Override
+            public void change(TruckStatusChange change) {
+            }
+        });
+
+        assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 50 && truckStatusFeed.getSubscriberCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(truckStatusFeed.getSubscriberCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void stalledSubscriber_isDroppedWithoutHoldingUpOthers() throws Exception {
+        // Takes the only sender thread
+        BlockingSink stalled = new BlockingSink();
+        truckStatusFeed.subscribe(null, stalled);
+        stalled.awaitFirstEvent();
+        RecordingSink sink = new RecordingSink();
+        truckStatusFeed.subscribe(null, sink);
+
+        try {
+            Thread.sleep(200);
+            truckStatusFeed.dropStalledSubscribers();
+
+            assertThat(sink.next()).isInstanceOf(TruckStatusSnapshot.class);
+            truckStatusFeed.onStatusChanged(
+                new TruckStatusChangedEvent("test-0001", TruckStatus.RENTABLE, TruckStatus.RENTED)
+            );
+            assertThat(((TruckStatusChange) sink.next()).getSequence()).isEqualTo(1);
+            assertThat(truckStatusFeed.getSubscriberCount()).isEqualTo(1);
+        } finally {
+            stalled.release();
+        }
+    }
+
+    private static class RecordingSink implements TruckStatusFeed.Sink {
+
+        private final BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+
+        @Override
+        public void snapshot(TruckStatusSnapshot snapshot) throws IOException {
+            events.add(snapshot);
+        }
+
+        @Override
+        public void change(TruckStatusChange change) throws IOException {
+            events.add(change);
+        }
+
+        Object next() throws InterruptedException {
+            Object event = events.poll(5, TimeUnit.SECONDS);
+            assertThat(event).isNotNull();
+            return event;
+        }
+
+        Object poll() throws InterruptedException {
+            return events.poll(100, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Holds up the first event, so changes pile up in the subscription's buffer meanwhile
+    private static class BlockingSink extends RecordingSink {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public void snapshot(TruckStatusSnapshot snapshot) throws IOException {
+            entered.countDown();
+            try {
+                released.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.snapshot(snapshot);
+        }
+
+        void awaitFirstEvent() throws InterruptedException {
+            assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+
+        void release() {
+            released.countDown();
+        }
+    }
+}
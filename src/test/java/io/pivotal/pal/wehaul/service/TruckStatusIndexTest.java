@@ -0,0 +1,79 @@
+package io.pivotal.pal.wehaul.service;
+
+import io.pivotal.pal.wehaul.domain.TruckStatus;
+import io.pivotal.pal.wehaul.domain.TruckStatusChangedEvent;
+import io.pivotal.pal.wehaul.repository.TruckRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TruckStatusIndexTest {
+
+    @Mock
+    private TruckRepository mockTruckRepository;
+
+    private TruckStatusIndex truckStatusIndex;
+
+    @Before
+    public void setUp() {
+        truckStatusIndex = new TruckStatusIndex(mockTruckRepository);
+    }
+
+    @Test
+    public void reconcile() {
+        when(mockTruckRepository.findAllVinsAndStatuses()).thenReturn(Arrays.asList(
+            new Object[]{"test-0001", TruckStatus.RENTABLE},
+            new Object[]{"test-0002", TruckStatus.IN_INSPECTION}
+        ));
+        truckStatusIndex.onStatusChanged(new TruckStatusChangedEvent("test-0003", null, TruckStatus.RENTED));
+
+        int drift = truckStatusIndex.reconcile();
+
+        assertThat(drift).isEqualTo(3);
+        assertThat(truckStatusIndex.vins(TruckStatus.RENTABLE)).containsExactly("test-0001");
+        assertThat(truckStatusIndex.vins(TruckStatus.IN_INSPECTION)).containsExactly("test-0002");
+        assertThat(truckStatusIndex.count(TruckStatus.RENTED)).isEqualTo(0);
+        assertThat(truckStatusIndex.reconcile()).isEqualTo(0);
+    }
+
+    @Test
+    public void claimRentable_handsOutEachTruckOnce() {
+        truckStatusIndex.onStatusChanged(new TruckStatusChangedEvent("test-0001", null, TruckStatus.RENTABLE));
+        truckStatusIndex.onStatusChanged(new TruckStatusChangedEvent("test-0002", null, TruckStatus.RENTABLE));
+
+        assertThat(Arrays.asList(truckStatusIndex.claimRentable(), truckStatusIndex.claimRentable()))
+            .containsExactlyInAnyOrder("test-0001", "test-0002");
+        assertThat(truckStatusIndex.claimRentable()).isNull();
+    }
+
+    @Test
+    public void claimRentable_skipsTrucksThatLeftRentable() {
+        truckStatusIndex.onStatusChanged(new TruckStatusChangedEvent("test-0001", null, TruckStatus.RENTABLE));
+        truckStatusIndex.onStatusChanged(
+            new TruckStatusChangedEvent("test-0001", TruckStatus.RENTABLE, TruckStatus.IN_INSPECTION)
+        );
+
+        assertThat(truckStatusIndex.claimRentable()).isNull();
+        assertThat(truckStatusIndex.vins(TruckStatus.IN_INSPECTION)).containsExactly("test-0001");
+    }
+
+    @Test
+    public void onStatusChangeRolledBack_returnsClaimedTruck() {
+        truckStatusIndex.onStatusChanged(new TruckStatusChangedEvent("test-0001", null, TruckStatus.RENTABLE));
+        String vin = truckStatusIndex.claimRentable();
+
+        truckStatusIndex.onStatusChangeRolledBack(
+            new TruckStatusChangedEvent(vin, TruckStatus.RENTABLE, TruckStatus.RESERVED)
+        );
+
+        assertThat(truckStatusIndex.claimRentable()).isEqualTo("test-0001");
+    }
+}